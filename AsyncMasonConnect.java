@@ -0,0 +1,436 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Answers hasFriendship and exists asynchronously. Queries that come in close
+ * together are gathered into one batch, which is answered by a worker thread
+ * under a single lock of the network, with the friendship checks sorted by the
+ * first user so the same neighbors are looked at one after another. A batch is
+ * sent when it is full, or when its oldest query has waited the longest delay
+ * allowed, whichever comes first.
+ *
+ * @author Rahima Adnan
+ */
+public class AsyncMasonConnect implements AutoCloseable {
+    /**
+     * The network being asked.
+     */
+    private final MasonConnect network;
+
+    /**
+     * The most queries in one batch.
+     */
+    private final int maxBatchSize;
+
+    /**
+     * The longest a query waits for its batch to fill, in nanoseconds.
+     */
+    private final long maxDelay;
+
+    /**
+     * The threads that answer the batches.
+     */
+    private final ExecutorService workers;
+
+    /**
+     * Sends batches that did not fill in time.
+     */
+    private final ScheduledExecutorService timer;
+
+    /**
+     * The batch being filled, guarded by this.
+     */
+    private Batch filling;
+
+    /**
+     * True once closed, guarded by this.
+     */
+    private boolean closed;
+
+    /**
+     * How many batches were sent.
+     */
+    private final LongAdder batches = new LongAdder();
+
+    /**
+     * How many queries were sent.
+     */
+    private final LongAdder queries = new LongAdder();
+
+    /**
+     * How many batches were sent because they were full.
+     */
+    private final LongAdder fullBatches = new LongAdder();
+
+    /**
+     * Constructor with batches of up to 256 queries waiting at most 200
+     * microseconds, answered by one worker per processor.
+     *
+     * @param network the network to ask, made for many threads.
+     */
+    public AsyncMasonConnect(MasonConnect network) {
+        this(network, 256, 200_000, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Simple constructor.
+     *
+     * @param network      the network to ask, made for many threads.
+     * @param maxBatchSize the most queries in one batch.
+     * @param maxDelay     the longest a query waits for its batch to fill, in
+     *                     nanoseconds.
+     * @param workers      how many threads answer batches.
+     */
+    public AsyncMasonConnect(MasonConnect network, int maxBatchSize, long maxDelay, int workers) {
+        if (maxBatchSize < 1 || maxDelay < 0 || workers < 1) {
+            throw new IllegalArgumentException("batch size and workers must be positive, delay not negative");
+        }
+        this.network = network;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelay = maxDelay;
+        this.workers = Executors.newFixedThreadPool(workers, task -> {
+            Thread thread = new Thread(task, "async-mason-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "async-mason-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Checks whether two users are friends.
+     *
+     * @param a the first user.
+     * @param b the second user.
+     * @return completes with true if they are friends, false otherwise.
+     */
+    public CompletableFuture<Boolean> hasFriendship(Profile a, Profile b) {
+        return submit(a, b);
+    }
+
+    /**
+     * Checks whether a user exists.
+     *
+     * @param user the user.
+     * @return completes with true if the user exists, false otherwise.
+     */
+    public CompletableFuture<Boolean> exists(Profile user) {
+        return submit(user, null);
+    }
+
+    /**
+     * Gets how many batches were sent.
+     *
+     * @return the number of batches.
+     */
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    /**
+     * Gets how many queries were sent.
+     *
+     * @return the number of queries.
+     */
+    public long getQueries() {
+        return queries.sum();
+    }
+
+    /**
+     * Gets how many batches were sent because they were full, rather than because
+     * their time ran out.
+     *
+     * @return the number of full batches.
+     */
+    public long getFullBatches() {
+        return fullBatches.sum();
+    }
+
+    /**
+     * Gets how full the batches were on average, between 0 and 1.
+     *
+     * @return the average number of queries in a batch over the most allowed, 0
+     *         if no batch was sent.
+     */
+    public double getBatchFill() {
+        long sent = batches.sum();
+        return (sent == 0) ? 0 : (double) queries.sum() / sent / maxBatchSize;
+    }
+
+    /**
+     * Sends what is waiting, answers everything already sent and lets the threads
+     * go. Queries made after this fail.
+     */
+    @Override
+    public void close() {
+        Batch last;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            last = filling;
+            filling = null;
+        }
+        if (last != null) {
+            send(last, false);
+        }
+        timer.shutdownNow();
+        workers.shutdown();
+        try {
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Adds a query to the batch being filled, sending the batch if it is now full.
+     *
+     * @param first  the user, or the first user of a friendship.
+     * @param second the second user of a friendship, null for exists.
+     * @return completes with the answer.
+     */
+    private CompletableFuture<Boolean> submit(Profile first, Profile second) {
+        CompletableFuture<Boolean> answer = new CompletableFuture<>();
+        Batch full = null;
+        synchronized (this) {
+            if (closed) {
+                answer.completeExceptionally(new IllegalStateException("closed"));
+                return answer;
+            }
+            if (filling == null) { // the first query starts the clock
+                Batch batch = new Batch(maxBatchSize);
+                filling = batch;
+                timer.schedule(() -> expire(batch), maxDelay, TimeUnit.NANOSECONDS);
+            }
+            filling.add(first, second, answer);
+            if (filling.size == maxBatchSize) {
+                full = filling;
+                filling = null;
+            }
+        }
+        if (full != null) {
+            send(full, true);
+        }
+        return answer;
+    }
+
+    /**
+     * Sends a batch whose time ran out, unless it was already sent full.
+     *
+     * @param batch the batch.
+     */
+    private void expire(Batch batch) {
+        synchronized (this) {
+            if (filling != batch) {
+                return;
+            }
+            filling = null;
+        }
+        send(batch, false);
+    }
+
+    /**
+     * Hands a batch to the workers. If they were already let go, the batch fails.
+     *
+     * @param batch the batch.
+     * @param full  true if it is sent because it is full.
+     */
+    private void send(Batch batch, boolean full) {
+        batches.increment();
+        queries.add(batch.size);
+        if (full) {
+            fullBatches.increment();
+        }
+        try {
+            workers.execute(() -> answer(batch));
+        } catch (RejectedExecutionException e) { // closed while the batch was on its way
+            for (CompletableFuture<Boolean> answer : batch.answers) {
+                answer.completeExceptionally(new IllegalStateException("closed", e));
+            }
+        }
+    }
+
+    /**
+     * Answers every query of a batch, the friendship checks together and the
+     * exists checks together.
+     *
+     * @param batch the batch.
+     */
+    private void answer(Batch batch) {
+        try {
+            int pairs = 0;
+            for (int i = 0; i < batch.size; i++) {
+                if (batch.seconds[i] != null) {
+                    pairs++;
+                }
+            }
+            Profile[] firsts = new Profile[pairs];
+            Profile[] seconds = new Profile[pairs];
+            Profile[] users = new Profile[batch.size - pairs];
+            for (int i = 0, p = 0, u = 0; i < batch.size; i++) {
+                if (batch.seconds[i] != null) {
+                    firsts[p] = batch.firsts[i];
+                    seconds[p++] = batch.seconds[i];
+                } else {
+                    users[u++] = batch.firsts[i];
+                }
+            }
+            boolean[] friends = new boolean[pairs];
+            boolean[] existing = new boolean[users.length];
+            if (pairs > 0) {
+                network.hasFriendships(firsts, seconds, friends);
+            }
+            if (users.length > 0) {
+                network.existAll(users, existing);
+            }
+            for (int i = 0, p = 0, u = 0; i < batch.size; i++) {
+                batch.answers.get(i).complete(batch.seconds[i] != null ? friends[p++] : existing[u++]);
+            }
+        } catch (RuntimeException e) {
+            for (CompletableFuture<Boolean> answer : batch.answers) {
+                answer.completeExceptionally(e);
+            }
+        }
+    }
+
+    // INNER CLASS BELOW
+    // ___________________________________________________________________________________
+    /**
+     * The queries gathered to be answered together.
+     */
+    private static class Batch {
+        /**
+         * The user, or first user of a friendship, of every query.
+         */
+        private final Profile[] firsts;
+
+        /**
+         * The second user of every friendship query, null for exists.
+         */
+        private final Profile[] seconds;
+
+        /**
+         * Where every answer goes.
+         */
+        private final List<CompletableFuture<Boolean>> answers;
+
+        /**
+         * How many queries there are.
+         */
+        private int size;
+
+        /**
+         * Simple constructor.
+         *
+         * @param capacity the most queries.
+         */
+        private Batch(int capacity) {
+            firsts = new Profile[capacity];
+            seconds = new Profile[capacity];
+            answers = new ArrayList<>(capacity);
+        }
+
+        /**
+         * Adds a query.
+         *
+         * @param first  the user, or the first user of a friendship.
+         * @param second the second user of a friendship, null for exists.
+         * @param answer where the answer goes.
+         */
+        private void add(Profile first, Profile second, CompletableFuture<Boolean> answer) {
+            firsts[size] = first;
+            seconds[size] = second;
+            answers.add(answer);
+            size++;
+        }
+    }
+
+    /**
+     * Just for checking. Asks the same random friendship and exists queries
+     * directly and through the batches, checks the answers agree, and prints the
+     * time of each and how full the batches were.
+     *
+     * @param args optional number of users, queries and the batch size.
+     */
+    public static void main(String[] args) {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int batchSize = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+
+        MasonConnect network = new MasonConnect(64);
+        Profile[] profiles = new Profile[users + 100]; // the last 100 never join
+        for (int i = 0; i < profiles.length; i++) {
+            profiles[i] = new Profile("user" + i, "status " + i);
+            if (i < users) {
+                network.addUser(profiles[i]);
+            }
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        Profile[][] made = new Profile[users * 10][];
+        for (int i = 0; i < made.length; i++) {
+            made[i] = new Profile[] {profiles[random.nextInt(users)], profiles[random.nextInt(users)]};
+            network.createFriendship(made[i][0], made[i][1]);
+        }
+        Profile[] firsts = new Profile[count];
+        Profile[] seconds = new Profile[count];
+        for (int i = 0; i < count; i++) {
+            int choice = random.nextInt(4);
+            if (choice < 2) { // a pair that was made friends, unless it was the same user
+                Profile[] pair = made[random.nextInt(made.length)];
+                firsts[i] = pair[0];
+                seconds[i] = pair[1];
+            } else {
+                firsts[i] = profiles[random.nextInt(profiles.length)];
+                if (choice == 2) { // a random pair, almost never friends
+                    seconds[i] = profiles[random.nextInt(profiles.length)];
+                }
+            }
+        }
+
+        boolean[] expected = new boolean[count];
+        long begin = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            expected[i] = (seconds[i] == null) ? network.exists(firsts[i])
+                    : network.hasFriendship(firsts[i], seconds[i]);
+        }
+        long direct = System.nanoTime() - begin;
+
+        List<CompletableFuture<Boolean>> answers = new ArrayList<>(count);
+        begin = System.nanoTime();
+        try (AsyncMasonConnect async = new AsyncMasonConnect(network, batchSize, 200_000,
+                Runtime.getRuntime().availableProcessors())) {
+            for (int i = 0; i < count; i++) {
+                answers.add((seconds[i] == null) ? async.exists(firsts[i])
+                        : async.hasFriendship(firsts[i], seconds[i]));
+            }
+            CompletableFuture.allOf(answers.toArray(new CompletableFuture<?>[0])).join();
+            long batched = System.nanoTime() - begin;
+
+            int wrong = 0;
+            for (int i = 0; i < count; i++) {
+                if (answers.get(i).join() != expected[i]) {
+                    wrong++;
+                }
+            }
+            System.out.println(count + " queries, " + wrong + " wrong");
+            System.out.printf("direct %.1f ns/query, batched %.1f ns/query%n", (double) direct / count,
+                    (double) batched / count);
+            System.out.printf("%d batches, %d full, average fill %.2f%n", async.getBatches(),
+                    async.getFullBatches(), async.getBatchFill());
+        }
+    }
+
+}
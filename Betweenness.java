@@ -0,0 +1,299 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Estimates betweenness centrality, how many shortest paths between other
+ * vertices go through a vertex, over a graph snapshot. Exact betweenness needs a
+ * breadth-first search from every vertex (Brandes), so only a sample of
+ * sources is used and the result is scaled up. The sample is just big enough
+ * that, by Hoeffding's bound, every normalized score is within epsilon of the
+ * exact one with probability at least 1 - delta; when that is more than the
+ * number of vertices, every vertex is used and the answer is exact. The searches
+ * run as one task per thread of a ForkJoinPool, each with its own distance,
+ * path count and dependency arrays and its own running totals, which are added
+ * together at the end. A failure in any task is thrown to the caller. Edges
+ * are unweighted and parallel edges count as separate paths.
+ *
+ * @param <T> our generic.
+ * @author Rahima Adnan
+ */
+public class Betweenness<T> {
+    /**
+     * The graph to look at.
+     */
+    private final GraphSnapshot<T> snapshot;
+
+    /**
+     * The pool the searches run in.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * How many sources the last estimate used.
+     */
+    private int samples;
+
+    /**
+     * Constructor that runs in the common pool.
+     *
+     * @param snapshot the graph to look at.
+     */
+    public Betweenness(GraphSnapshot<T> snapshot) {
+        this(snapshot, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Simple constructor.
+     *
+     * @param snapshot the graph to look at.
+     * @param pool     the pool to run in.
+     */
+    public Betweenness(GraphSnapshot<T> snapshot, ForkJoinPool pool) {
+        this.snapshot = snapshot;
+        this.pool = pool;
+    }
+
+    /**
+     * Gets how many sources the last estimate used.
+     *
+     * @return the number of sources.
+     */
+    public int getSampleCount() {
+        return samples;
+    }
+
+    /**
+     * Gets how many sources are needed for an error bound.
+     *
+     * @param vertices the number of vertices.
+     * @param epsilon  the largest error of a normalized score, for example 0.05.
+     * @param delta    the chance the bound may fail, for example 0.1.
+     * @return ceil(ln(2 * vertices / delta) / (2 * epsilon^2)), at most vertices.
+     */
+    public static int sampleCount(int vertices, double epsilon, double delta) {
+        if (vertices == 0) {
+            return 0;
+        }
+        double needed = Math.ceil(Math.log(2.0 * vertices / delta) / (2 * epsilon * epsilon));
+        return (int) Math.min(vertices, needed);
+    }
+
+    /**
+     * Estimates the betweenness of every vertex.
+     *
+     * @param epsilon the largest error of a normalized score, for example 0.05.
+     * @param delta   the chance the bound may fail, for example 0.1.
+     * @return the estimated number of shortest paths between pairs of other
+     *         vertices that go through each vertex, by snapshot id. A path shared
+     *         with another shortest path between the same pair counts as a
+     *         fraction.
+     */
+    public synchronized double[] estimate(double epsilon, double delta) {
+        int size = snapshot.getNumberOfVertices();
+        samples = sampleCount(size, epsilon, delta);
+        double[] result = new double[size];
+        if (samples == 0) {
+            return result;
+        }
+
+        // the first samples vertices of a random order, so no source is used twice
+        int[] sources = new int[size];
+        for (int i = 0; i < size; i++) {
+            sources[i] = i;
+        }
+        SplittableRandom random = new SplittableRandom();
+        for (int i = 0; i < samples; i++) {
+            int j = i + random.nextInt(size - i);
+            int temp = sources[i];
+            sources[i] = sources[j];
+            sources[j] = temp;
+        }
+
+        AtomicInteger next = new AtomicInteger();
+        int workers = Math.min(pool.getParallelism(), samples);
+        Worker[] running = new Worker[workers];
+        for (int w = 0; w < workers; w++) {
+            running[w] = new Worker(snapshot.offsets(), snapshot.neighbors(), sources, samples, next);
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(running))); // throws what any worker threw
+
+        // each pair was seen from both ends, and only samples of size sources were used
+        double scale = (double) size / samples / 2;
+        for (Worker worker : running) {
+            for (int v = 0; v < size; v++) {
+                result[v] += worker.totals[v] * scale;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the vertices that lie on the most shortest paths, the ones that
+     * connect otherwise separate groups.
+     *
+     * @param k       how many vertices to return at most.
+     * @param epsilon the largest error of a normalized score.
+     * @param delta   the chance the bound may fail.
+     * @return the vertices, the highest betweenness first. Vertices on no
+     *         shortest path are left out.
+     */
+    public List<T> getTopBridges(int k, double epsilon, double delta) {
+        double[] scores = estimate(epsilon, delta);
+        TopK best = new TopK(k);
+        for (int id = 0; id < scores.length; id++) {
+            if (scores[id] > 0) {
+                best.offer(id, scores[id]);
+            }
+        }
+        List<T> result = new ArrayList<>();
+        for (int id : best.drainBestFirst()) {
+            result.add(snapshot.labelOf(id));
+        }
+        return result;
+    }
+
+    // INNER CLASS BELOW
+    // ___________________________________________________________________________________
+    /**
+     * Takes sources one at a time until there are none left, and adds up the
+     * dependencies of every search in its own totals.
+     */
+    @SuppressWarnings("serial")
+    private static class Worker extends RecursiveAction {
+        /**
+         * Where the neighbors of each vertex start.
+         */
+        private final int[] offsets;
+
+        /**
+         * The neighbors of every vertex.
+         */
+        private final int[] neighbors;
+
+        /**
+         * The sources, shared by every worker.
+         */
+        private final int[] sources;
+
+        /**
+         * How many of the sources to use.
+         */
+        private final int samples;
+
+        /**
+         * The position of the next source to take, shared by every worker.
+         */
+        private final AtomicInteger next;
+
+        /**
+         * The sum of the dependencies of every vertex over the searches of this
+         * worker.
+         */
+        private final double[] totals;
+
+        /**
+         * How many edges each vertex is from the source, -1 if not reached.
+         */
+        private final int[] distances;
+
+        /**
+         * How many shortest paths from the source end at each vertex.
+         */
+        private final double[] sigma;
+
+        /**
+         * The dependency of the source on each vertex.
+         */
+        private final double[] dependency;
+
+        /**
+         * The vertices in the order they were reached.
+         */
+        private final int[] order;
+
+        /**
+         * Simple constructor.
+         *
+         * @param offsets   where the neighbors of each vertex start.
+         * @param neighbors the neighbors of every vertex.
+         * @param sources   the sources.
+         * @param samples   how many of the sources to use.
+         * @param next      the position of the next source.
+         */
+        private Worker(int[] offsets, int[] neighbors, int[] sources, int samples, AtomicInteger next) {
+            int size = offsets.length - 1;
+            this.offsets = offsets;
+            this.neighbors = neighbors;
+            this.sources = sources;
+            this.samples = samples;
+            this.next = next;
+            totals = new double[size];
+            distances = new int[size];
+            sigma = new double[size];
+            dependency = new double[size];
+            order = new int[size];
+            Arrays.fill(distances, -1);
+        }
+
+        /**
+         * Runs searches until every source is taken.
+         */
+        protected void compute() {
+            for (int i = next.getAndIncrement(); i < samples; i = next.getAndIncrement()) {
+                search(sources[i]);
+            }
+        }
+
+        /**
+         * Runs one breadth-first search and accumulates the dependencies from the
+         * farthest vertices back, as Brandes does.
+         *
+         * @param source where to start.
+         */
+        private void search(int source) {
+            int head = 0;
+            int tail = 0;
+            order[tail++] = source;
+            distances[source] = 0;
+            sigma[source] = 1;
+            while (head < tail) { // the order doubles as the queue
+                int u = order[head++];
+                for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                    int v = neighbors[e];
+                    if (distances[v] == -1) { // first time
+                        distances[v] = distances[u] + 1;
+                        order[tail++] = v;
+                    }
+                    if (distances[v] == distances[u] + 1) { // u is just before v on a shortest path
+                        sigma[v] += sigma[u];
+                    }
+                }
+            }
+
+            for (int i = tail - 1; i > 0; i--) { // farthest first, the source is order[0]
+                int w = order[i];
+                for (int e = offsets[w]; e < offsets[w + 1]; e++) {
+                    int v = neighbors[e];
+                    if (distances[v] == distances[w] - 1) { // v is just before w
+                        dependency[v] += sigma[v] / sigma[w] * (1 + dependency[w]);
+                    }
+                }
+                totals[w] += dependency[w];
+            }
+
+            for (int i = 0; i < tail; i++) { // only the reached vertices need resetting
+                int v = order[i];
+                distances[v] = -1;
+                sigma[v] = 0;
+                dependency[v] = 0;
+            }
+        }
+    }
+
+}
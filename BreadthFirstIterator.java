@@ -0,0 +1,149 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A breadth-first traversal that only does work when it is asked for the next
+ * vertex. A vertex's neighbors are looked at when the vertex itself is returned,
+ * so a consumer that stops after a few vertices never pays for the rest of the
+ * graph. Changes made to the graph while iterating may or may not be seen.
+ *
+ * @param <T> our generic.
+ * @author Rahima Adnan
+ */
+public class BreadthFirstIterator<T> implements Iterator<T> {
+    /**
+     * The graph to traverse.
+     */
+    private final Graph<T> graph;
+
+    /**
+     * Vertices deeper than this are not returned.
+     */
+    private final int maxDepth;
+
+    /**
+     * Ids waiting to be returned, in order. Slots before head are done.
+     */
+    private int[] queue;
+
+    /**
+     * The next id to return.
+     */
+    private int head;
+
+    /**
+     * Where the next id found goes.
+     */
+    private int tail;
+
+    /**
+     * The first queue position of the level after the one being returned.
+     */
+    private int levelEnd;
+
+    /**
+     * The depth of the vertices before levelEnd that are not returned yet.
+     */
+    private int levelDepth;
+
+    /**
+     * The depth of the vertex that was returned last.
+     */
+    private int lastDepth;
+
+    /**
+     * Every id that was queued.
+     */
+    private final IntHashSet seen;
+
+    /**
+     * Simple constructor.
+     *
+     * @param graph    the graph to traverse.
+     * @param origin   where to start.
+     * @param maxDepth vertices deeper than this are not returned.
+     */
+    BreadthFirstIterator(Graph<T> graph, T origin, int maxDepth) {
+        this.graph = graph;
+        this.maxDepth = maxDepth;
+        queue = new int[16];
+        seen = new IntHashSet();
+        head = 0;
+        tail = 0;
+        lastDepth = -1;
+
+        int start = graph.idOf(origin);
+        if (start != -1 && maxDepth >= 0) { // otherwise there is nothing to return
+            queue[tail++] = start;
+            seen.add(start);
+        }
+        levelEnd = tail;
+        levelDepth = 0;
+    }
+
+    /**
+     * To check if there is value next.
+     *
+     * @return a boolean true or false.
+     */
+    public boolean hasNext() {
+        while (head < tail && graph.vertexAt(queue[head]) == null) { // removed while we were iterating
+            advance();
+        }
+        return head < tail;
+    }
+
+    /**
+     * Takes the next id off the queue, keeping track of the level.
+     *
+     * @return the id.
+     */
+    private int advance() {
+        if (head == levelEnd) { // moving on to the next level
+            levelEnd = tail;
+            levelDepth++;
+        }
+        return queue[head++];
+    }
+
+    /**
+     * This method grabs the next vertex and queues its unseen neighbors.
+     *
+     * @return the next value.
+     */
+    public T next() {
+        if (hasNext() == false) { // nothing is next
+            throw new NoSuchElementException();
+        }
+        int current = advance();
+        lastDepth = levelDepth;
+        Vertex<T> vertex = graph.vertexAt(current);
+
+        if (levelDepth < maxDepth) { // its neighbors are still within reach
+            int[] neighborIds = vertex.neighborIds();
+            int degree = vertex.getNumberOfNeighbors();
+            for (int i = 0; i < degree; i++) {
+                int neighbor = neighborIds[i];
+                if (seen.add(neighbor)) {
+                    if (tail == queue.length) {
+                        queue = Arrays.copyOf(queue, tail * 2);
+                    }
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+        return vertex.getLabel();
+    }
+
+    /**
+     * Gets the depth of the vertex next() returned last, that is how many edges
+     * it is from the origin.
+     *
+     * @return the depth, -1 before the first call to next.
+     */
+    public int depth() {
+        return lastDepth;
+    }
+
+}
@@ -0,0 +1,265 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps track of the connected components of a graph with a union-find
+ * structure over vertex ids (path compression and union by rank). Adding an
+ * edge only lists one of its ends without locking, since edges are added by
+ * many threads at once, and the next query merges the components of every
+ * listed id with those of its neighbors. Queries must not run while edges
+ * change. Removing an edge may split a
+ * component, which union-find can not undo, so the index is only marked stale
+ * and rebuilt from the edges the next time someone needs an exact answer.
+ * Shortest path searches also rebuild it, but only once the searches made while
+ * it was stale have together visited about as many vertices as a rebuild
+ * touches, so the rebuild is paid for by work that was done anyway.
+ *
+ * @author Rahima Adnan
+ */
+class ComponentIndex {
+    /**
+     * The parent of each id, an id is a root when it is its own parent.
+     */
+    private int[] parents;
+
+    /**
+     * An upper bound on the height of the tree under each root.
+     */
+    private byte[] ranks;
+
+    /**
+     * The number of vertices in the component of each root.
+     */
+    private int[] sizes;
+
+    /**
+     * True when an edge or vertex was removed since the last rebuild.
+     */
+    private volatile boolean stale;
+
+    /**
+     * How many vertices searches have visited since the index went stale.
+     */
+    private final LongAdder staleWork = new LongAdder();
+
+    /**
+     * The ids that got an edge since the last query.
+     */
+    private final DirtyIds linked = new DirtyIds();
+
+    /**
+     * Simple constructor.
+     */
+    ComponentIndex() {
+        parents = new int[16];
+        ranks = new byte[16];
+        sizes = new int[16];
+        stale = false;
+    }
+
+    /**
+     * Makes an id a component of its own.
+     *
+     * @param id the id of the new vertex.
+     */
+    synchronized void addVertex(int id) {
+        if (id >= parents.length) { // grow
+            int bigger = Math.max(id + 1, parents.length * 2);
+            parents = Arrays.copyOf(parents, bigger);
+            ranks = Arrays.copyOf(ranks, bigger);
+            sizes = Arrays.copyOf(sizes, bigger);
+            linked.ensureCapacity(bigger);
+        }
+        parents[id] = id;
+        ranks[id] = 0;
+        sizes[id] = 1;
+    }
+
+    /**
+     * Notes that an edge was added between two ids, so their components are
+     * merged by the next query.
+     *
+     * @param a the first id.
+     * @param b the second id.
+     */
+    void union(int a, int b) {
+        if (stale == false) { // a stale index will be rebuilt anyway
+            linked.add(a); // the edge is among the neighbors of a
+        }
+    }
+
+    /**
+     * Merges the components of two ids.
+     *
+     * @param a the first id.
+     * @param b the second id.
+     */
+    private void link(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB) {
+            return;
+        }
+        if (ranks[rootA] < ranks[rootB]) { // hang the shorter tree under the taller one
+            int temp = rootA;
+            rootA = rootB;
+            rootB = temp;
+        }
+        parents[rootB] = rootA;
+        sizes[rootA] += sizes[rootB];
+        if (ranks[rootA] == ranks[rootB]) {
+            ranks[rootA]++;
+        }
+    }
+
+    /**
+     * Notes that an edge or a vertex with edges was removed, so components may
+     * have split.
+     */
+    void markStale() {
+        stale = true;
+    }
+
+    /**
+     * Forgets every vertex.
+     */
+    synchronized void clear() {
+        stale = false;
+        staleWork.reset();
+        linked.clear();
+    }
+
+    /**
+     * Finds the root of an id, pointing every other node on the way at its
+     * grandparent (path halving).
+     *
+     * @param id the id.
+     * @return the root.
+     */
+    private int find(int id) {
+        while (parents[id] != id) {
+            parents[id] = parents[parents[id]];
+            id = parents[id];
+        }
+        return id;
+    }
+
+    /**
+     * Sees whether two ids are known to be in different components. A stale index
+     * is rebuilt first once the searches since it went stale have paid for it,
+     * otherwise it can not tell.
+     *
+     * @param <T>   our generic.
+     * @param graph the graph this index belongs to.
+     * @param a     the first id.
+     * @param b     the second id.
+     * @return true if they are surely not connected, false if they are connected
+     *         or the index is stale.
+     */
+    <T> boolean knownDisconnected(Graph<T> graph, int a, int b) {
+        if (stale && staleWork.sum() < graph.idCapacity() + (long) graph.getNumberOfEdges()) {
+            return false; // not worth a rebuild yet
+        }
+        synchronized (this) {
+            catchUp(graph);
+            return find(a) != find(b);
+        }
+    }
+
+    /**
+     * Counts the vertices a search visited while the index was stale, towards the
+     * next rebuild.
+     *
+     * @param visited how many vertices the search visited.
+     */
+    void chargeSearch(int visited) {
+        if (stale) {
+            staleWork.add(visited);
+        }
+    }
+
+    /**
+     * Gets the root of the component of an id, rebuilding first if needed.
+     *
+     * @param <T>   our generic.
+     * @param graph the graph this index belongs to.
+     * @param id    the id.
+     * @return the root id, the same for every vertex of the component until the
+     *         graph changes.
+     */
+    synchronized <T> int componentOf(Graph<T> graph, int id) {
+        catchUp(graph);
+        return find(id);
+    }
+
+    /**
+     * Gets the number of vertices in the component of an id, rebuilding first if
+     * needed.
+     *
+     * @param <T>   our generic.
+     * @param graph the graph this index belongs to.
+     * @param id    the id.
+     * @return the size of the component.
+     */
+    synchronized <T> int componentSize(Graph<T> graph, int id) {
+        catchUp(graph);
+        return sizes[find(id)];
+    }
+
+    /**
+     * Starts over from the edges of the graph if something was removed, and
+     * otherwise merges the listed ids with their neighbors.
+     *
+     * @param <T>   our generic.
+     * @param graph the graph this index belongs to.
+     */
+    private <T> void catchUp(Graph<T> graph) {
+        if (stale) {
+            rebuild(graph);
+            return;
+        }
+        for (int i = 0; i < linked.size(); i++) {
+            int id = linked.get(i);
+            Vertex<T> vertex = graph.vertexAt(id);
+            if (vertex == null) {
+                continue;
+            }
+            int[] neighborIds = vertex.neighborIds();
+            for (int j = 0; j < vertex.getNumberOfNeighbors(); j++) {
+                link(id, neighborIds[j]);
+            }
+        }
+        linked.clear();
+    }
+
+    /**
+     * Starts over from the edges of the graph.
+     *
+     * @param <T>   our generic.
+     * @param graph the graph this index belongs to.
+     */
+    private <T> void rebuild(Graph<T> graph) {
+        stale = false;
+        staleWork.reset();
+        linked.clear();
+        int capacity = graph.idCapacity();
+        for (int id = 0; id < capacity; id++) {
+            if (graph.vertexAt(id) != null) {
+                addVertex(id);
+            }
+        }
+        for (int id = 0; id < capacity; id++) {
+            Vertex<T> vertex = graph.vertexAt(id);
+            if (vertex == null) {
+                continue;
+            }
+            int[] neighborIds = vertex.neighborIds();
+            for (int i = 0; i < vertex.getNumberOfNeighbors(); i++) {
+                if (neighborIds[i] > id) { // each edge once
+                    link(id, neighborIds[i]);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,357 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Keeps the degree of every vertex id in buckets, one bucket per degree, so the
+ * most connected vertices and the number of vertices with a given degree are
+ * known without looking at every vertex. The vertices of a bucket form a doubly
+ * linked list, and the non-empty buckets form a doubly linked list ordered by
+ * degree, the same way an LFU cache keeps its frequencies. An edge changes a
+ * degree by one, which moves a vertex to the next or previous bucket in O(1).
+ * Edges are added and removed by many threads at once, so they only add to a
+ * pending change of each id without locking, and the next query moves the
+ * changed ids to their buckets. Queries must not run while edges change.
+ *
+ * @author Rahima Adnan
+ */
+class DegreeIndex {
+    /**
+     * The degree of every id, -1 for ids that are not in use.
+     */
+    private int[] degrees;
+
+    /**
+     * The next id in the same bucket, -1 at the end.
+     */
+    private int[] nextInBucket;
+
+    /**
+     * The previous id in the same bucket, -1 at the start.
+     */
+    private int[] previousInBucket;
+
+    /**
+     * The first id of the bucket of every degree, -1 if it is empty.
+     */
+    private int[] heads;
+
+    /**
+     * The number of ids in the bucket of every degree.
+     */
+    private int[] counts;
+
+    /**
+     * The next bigger degree with a non-empty bucket, only for non-empty buckets.
+     */
+    private int[] higher;
+
+    /**
+     * The next smaller degree with a non-empty bucket, only for non-empty buckets.
+     */
+    private int[] lower;
+
+    /**
+     * The biggest degree with a non-empty bucket, -1 if there are no ids.
+     */
+    private int maxDegree;
+
+    /**
+     * The smallest degree with a non-empty bucket, -1 if there are no ids.
+     */
+    private int minDegree;
+
+    /**
+     * How many ids are in use.
+     */
+    private int size;
+
+    /**
+     * How much the degree of every id changed since the last query.
+     */
+    private AtomicIntegerArray pending;
+
+    /**
+     * The ids with a pending change.
+     */
+    private final DirtyIds changed = new DirtyIds();
+
+    /**
+     * Simple constructor.
+     */
+    DegreeIndex() {
+        degrees = new int[16];
+        nextInBucket = new int[16];
+        previousInBucket = new int[16];
+        heads = new int[16];
+        counts = new int[16];
+        higher = new int[16];
+        lower = new int[16];
+        pending = new AtomicIntegerArray(16);
+        clear();
+    }
+
+    /**
+     * Forgets every id.
+     */
+    synchronized void clear() {
+        for (int i = 0; i < changed.size(); i++) {
+            pending.set(changed.get(i), 0);
+        }
+        changed.clear();
+        Arrays.fill(degrees, -1);
+        Arrays.fill(heads, -1);
+        Arrays.fill(counts, 0);
+        maxDegree = -1;
+        minDegree = -1;
+        size = 0;
+    }
+
+    /**
+     * Adds an id with degree 0.
+     *
+     * @param id the id of the new vertex.
+     */
+    synchronized void addVertex(int id) {
+        if (id >= degrees.length) { // grow
+            int bigger = Math.max(id + 1, degrees.length * 2);
+            int old = degrees.length;
+            degrees = Arrays.copyOf(degrees, bigger);
+            Arrays.fill(degrees, old, bigger, -1);
+            nextInBucket = Arrays.copyOf(nextInBucket, bigger);
+            previousInBucket = Arrays.copyOf(previousInBucket, bigger);
+            AtomicIntegerArray biggerPending = new AtomicIntegerArray(bigger);
+            for (int i = 0; i < old; i++) {
+                biggerPending.set(i, pending.get(i));
+            }
+            pending = biggerPending;
+            changed.ensureCapacity(bigger);
+        }
+        insert(id, 0, -1);
+        size++;
+    }
+
+    /**
+     * Forgets an id. Its edges must already be gone from the other ids.
+     *
+     * @param id the id of the removed vertex.
+     */
+    synchronized void removeVertex(int id) {
+        catchUp();
+        int degree = degrees[id];
+        if (degree != -1) {
+            unlink(id, degree);
+            degrees[id] = -1;
+            size--;
+        }
+    }
+
+    /**
+     * Adds one to the degree of an id, once the next query comes.
+     *
+     * @param id the id.
+     */
+    void increment(int id) {
+        pending.getAndIncrement(id);
+        changed.add(id);
+    }
+
+    /**
+     * Takes one from the degree of an id, once the next query comes.
+     *
+     * @param id the id.
+     */
+    void decrement(int id) {
+        pending.getAndDecrement(id);
+        changed.add(id);
+    }
+
+    /**
+     * Gets the degree of an id.
+     *
+     * @param id the id.
+     * @return the degree, -1 if the id is not in use.
+     */
+    synchronized int degreeOf(int id) {
+        catchUp();
+        if (id < 0 || id >= degrees.length) {
+            return -1;
+        }
+        return degrees[id];
+    }
+
+    /**
+     * Gets the biggest degree.
+     *
+     * @return the biggest degree, -1 if there are no ids.
+     */
+    synchronized int getMaxDegree() {
+        catchUp();
+        return maxDegree;
+    }
+
+    /**
+     * Gets how many ids have a degree.
+     *
+     * @param degree the degree.
+     * @return the number of ids.
+     */
+    synchronized int countWithDegree(int degree) {
+        catchUp();
+        if (degree < 0 || degree >= counts.length) {
+            return 0;
+        }
+        return counts[degree];
+    }
+
+    /**
+     * Gets the number of ids with every degree from 0 to the biggest degree.
+     *
+     * @return the counts by degree.
+     */
+    synchronized int[] histogram() {
+        catchUp();
+        return Arrays.copyOf(counts, maxDegree + 1);
+    }
+
+    /**
+     * Gets the ids with the biggest degrees. Ids with the same degree come in no
+     * particular order. Only the buckets that are used are visited.
+     *
+     * @param k how many ids to return at most.
+     * @return the ids, the biggest degree first.
+     */
+    synchronized int[] top(int k) {
+        catchUp();
+        int[] result = new int[Math.max(0, Math.min(k, size))]; // never bigger than the ids there are
+        int found = 0;
+        for (int degree = maxDegree; degree != -1 && found < result.length; degree = lower[degree]) {
+            for (int id = heads[degree]; id != -1 && found < result.length; id = nextInBucket[id]) {
+                result[found++] = id;
+            }
+        }
+        return (found == result.length) ? result : Arrays.copyOf(result, found);
+    }
+
+    /**
+     * Moves every id with a pending change to the bucket of its new degree.
+     */
+    private void catchUp() {
+        for (int i = 0; i < changed.size(); i++) {
+            int id = changed.get(i);
+            int change = pending.getAndSet(id, 0);
+            if (change != 0 && degrees[id] != -1) {
+                move(id, degrees[id] + change);
+            }
+        }
+        changed.clear();
+    }
+
+    /**
+     * Moves an id to the bucket of another degree. The buckets in between are
+     * walked to find where a new bucket goes, which is one step for a change of
+     * one.
+     *
+     * @param id     the id.
+     * @param degree its new degree.
+     */
+    private void move(int id, int degree) {
+        int old = degrees[id];
+        boolean emptied = unlink(id, old);
+        int below = emptied ? lower[old] : old; // the links of an emptied bucket are kept
+        if (degree > old) {
+            for (int up = (below == -1) ? minDegree : higher[below]; up != -1 && up < degree; up = higher[up]) {
+                below = up;
+            }
+        } else {
+            while (below != -1 && below >= degree) {
+                below = lower[below];
+            }
+        }
+        insert(id, degree, below);
+    }
+
+    /**
+     * Takes an id out of its bucket, and the bucket out of the list if it is
+     * empty now. The links of an emptied bucket are kept so its neighbors can
+     * still be found.
+     *
+     * @param id     the id.
+     * @param degree its degree.
+     * @return true if the bucket is empty now.
+     */
+    private boolean unlink(int id, int degree) {
+        int next = nextInBucket[id];
+        int previous = previousInBucket[id];
+        if (previous == -1) {
+            heads[degree] = next;
+        } else {
+            nextInBucket[previous] = next;
+        }
+        if (next != -1) {
+            previousInBucket[next] = previous;
+        }
+        counts[degree]--;
+        if (counts[degree] > 0) {
+            return false;
+        }
+
+        int up = higher[degree];
+        int down = lower[degree];
+        if (up == -1) {
+            maxDegree = down;
+        } else {
+            lower[up] = down;
+        }
+        if (down == -1) {
+            minDegree = up;
+        } else {
+            higher[down] = up;
+        }
+        return true;
+    }
+
+    /**
+     * Puts an id into the bucket of a degree. If that bucket is empty it is put
+     * into the list right after a given non-empty bucket.
+     *
+     * @param id     the id.
+     * @param degree its new degree.
+     * @param below  the non-empty degree just below the new one, -1 for the
+     *               bottom of the list. Only used when the bucket is empty.
+     */
+    private void insert(int id, int degree, int below) {
+        if (degree >= heads.length) { // grow
+            int bigger = Math.max(degree + 1, heads.length * 2);
+            int old = heads.length;
+            heads = Arrays.copyOf(heads, bigger);
+            Arrays.fill(heads, old, bigger, -1);
+            counts = Arrays.copyOf(counts, bigger);
+            higher = Arrays.copyOf(higher, bigger);
+            lower = Arrays.copyOf(lower, bigger);
+        }
+        if (counts[degree] == 0) { // a new bucket in the list
+            int above = (below == -1) ? minDegree : higher[below];
+            lower[degree] = below;
+            higher[degree] = above;
+            if (below == -1) {
+                minDegree = degree;
+            } else {
+                higher[below] = degree;
+            }
+            if (above == -1) {
+                maxDegree = degree;
+            } else {
+                lower[above] = degree;
+            }
+        }
+        degrees[id] = degree;
+        previousInBucket[id] = -1;
+        nextInBucket[id] = heads[degree];
+        if (heads[degree] != -1) {
+            previousInBucket[heads[degree]] = id;
+        }
+        heads[degree] = id;
+        counts[degree]++;
+    }
+
+}
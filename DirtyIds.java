@@ -0,0 +1,94 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A list of vertex ids that changed, each id at most once, that many threads
+ * can add to without locking. Adding an id that is already listed costs one
+ * read. The list is read and emptied by one thread at a time while nobody adds
+ * to it, and it only grows while nobody adds to it either.
+ *
+ * @author Rahima Adnan
+ */
+class DirtyIds {
+    /**
+     * 1 for every id that is listed, 0 otherwise.
+     */
+    private AtomicIntegerArray listed;
+
+    /**
+     * The listed ids, in the order they were added.
+     */
+    private int[] ids;
+
+    /**
+     * How many ids are listed.
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Simple constructor.
+     */
+    DirtyIds() {
+        listed = new AtomicIntegerArray(16);
+        ids = new int[16];
+    }
+
+    /**
+     * Makes room for every id below a capacity.
+     *
+     * @param capacity one past the biggest id.
+     */
+    void ensureCapacity(int capacity) {
+        if (capacity > ids.length) { // grow
+            int bigger = Math.max(capacity, ids.length * 2);
+            AtomicIntegerArray biggerListed = new AtomicIntegerArray(bigger);
+            for (int i = 0; i < size.get(); i++) {
+                biggerListed.set(ids[i], 1);
+            }
+            listed = biggerListed;
+            ids = Arrays.copyOf(ids, bigger);
+        }
+    }
+
+    /**
+     * Lists an id unless it is listed already.
+     *
+     * @param id the id.
+     */
+    void add(int id) {
+        if (listed.get(id) == 0 && listed.compareAndSet(id, 0, 1)) { // only the first thread lists it
+            ids[size.getAndIncrement()] = id;
+        }
+    }
+
+    /**
+     * Gets how many ids are listed.
+     *
+     * @return the number of ids.
+     */
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * Gets a listed id.
+     *
+     * @param index from 0 to size.
+     * @return the id.
+     */
+    int get(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Empties the list.
+     */
+    void clear() {
+        for (int i = 0; i < size.get(); i++) {
+            listed.set(ids[i], 0);
+        }
+        size.set(0);
+    }
+
+}
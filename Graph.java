@@ -2,22 +2,38 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Queue;
 import java.util.LinkedList;
-//import java.util.ArrayDeque;
+import java.util.ArrayDeque;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Stack;
-//import java.util.PriorityQueue; // we can use it @1649
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * This class is the implentation of the graph interface.
+ * Every vertex gets a dense int id when it is added. The edges are kept as
+ * arrays of ids inside each vertex, and the id versions of addEdge, removeEdge
+ * and hasEdge skip the label lookups.
+ * The graph does no locking of its own. Edges may be added and removed from
+ * several threads at once as long as the caller locks both ends of every edge
+ * and keeps vertices from being added or removed meanwhile, as MasonConnect does
+ * in its concurrent mode. The edge counter takes changes from many threads,
+ * and the component and degree indexes only note the changed ids without
+ * locking and catch up on the next query, so queries must not run alongside
+ * those changes.
  * 
  * @param <T> our generic.
  */
 public class Graph<T> implements GraphInterface<T> {
     /**
-     * This keep tracks of how many edges we have.
+     * This keep tracks of how many edges we have. Threads adding edges at the
+     * same time each add to their own cell instead of fighting over one counter.
      */
-    private int countsEdges;
+    private final LongAdder countsEdges = new LongAdder();
 
     /**
      * Creating a graph data structure.
@@ -26,13 +42,123 @@ public class Graph<T> implements GraphInterface<T> {
      */
     protected HashMap<T, Vertex<T>> vertices; // @1776 protected is allowed
 
+    /**
+     * The vertex with each id, null where an id is free. Shared with the
+     * vertices so they can turn neighbor ids back into vertices.
+     */
+    private ArrayList<VertexInterface<T>> vertexTable;
+
+    /**
+     * Ids of removed vertices, handed out again so the ids stay dense.
+     */
+    private int[] freeIds;
+
+    /**
+     * How many ids are in freeIds.
+     */
+    private int freeCount;
+
+    /**
+     * Counts every change made to the graph, so a snapshot knows when it is stale.
+     */
+    private final LongAdder modifications = new LongAdder();
+
+    /**
+     * The last snapshot that was taken, reused until the graph changes.
+     */
+    private GraphSnapshot<T> lastSnapshot;
+
+    /**
+     * The value of modifications when lastSnapshot was taken.
+     */
+    private long lastSnapshotAt;
+
+    /**
+     * Traversal memory, taken by each traversal and given back when it is done.
+     */
+    private final ScratchPool<TraversalScratch> scratches = new ScratchPool<>(TraversalScratch::new);
+
+    /**
+     * Priority queues for the searches for cheapest paths.
+     */
+    private final ScratchPool<IndexedMinHeap> heaps = new ScratchPool<>(IndexedMinHeap::new);
+
+    /**
+     * Mutual neighbor counters for ranking suggestions.
+     */
+    private final ScratchPool<SparseCounter> counters = new ScratchPool<>(SparseCounter::new);
+
+    /**
+     * Which vertices are connected to each other.
+     */
+    private final ComponentIndex components = new ComponentIndex();
+
+    /**
+     * The degree of every vertex, bucketed so the biggest ones are found quickly.
+     */
+    private final DegreeIndex degrees = new DegreeIndex();
+
     // A dictionary of key (Vertex label), value (Vertex) pair.
     /**
      * Simple constructor.
      */
     public Graph() {
         vertices = new HashMap<>(); // initializes the graph with an empty graph structure.
-        countsEdges = 0;
+        vertexTable = new ArrayList<>();
+        freeIds = new int[8];
+        freeCount = 0;
+    }
+
+    /**
+     * Gets the id of a vertex.
+     * 
+     * @param vertexLabel the label of the vertex.
+     * @return the id, or -1 if the vertex is not in this graph.
+     */
+    public int idOf(T vertexLabel) {
+        Vertex<T> vertex = vertices.get(vertexLabel);
+        if (vertex == null) {
+            return -1;
+        }
+        return vertex.getId();
+    }
+
+    /**
+     * Gets the label of the vertex with the given id.
+     * 
+     * @param id the id.
+     * @return the label, or null if no vertex has this id.
+     */
+    public T labelOf(int id) {
+        Vertex<T> vertex = vertexAt(id);
+        if (vertex == null) {
+            return null;
+        }
+        return vertex.getLabel();
+    }
+
+    /**
+     * Gets the vertex with the given id.
+     * 
+     * @param id the id.
+     * @return the vertex, or null if no vertex has this id.
+     */
+    @SuppressWarnings("unchecked")
+    Vertex<T> vertexAt(int id) {
+        if (id < 0 || id >= vertexTable.size()) {
+            return null;
+        }
+        return (Vertex<T>) vertexTable.get(id);
+    }
+
+    /**
+     * Every id in use is smaller than this, so it is the size to use for an
+     * array indexed by id.
+     * 
+     * @return one more than the largest id ever handed out.
+     */
+    int idCapacity() {
+        return vertexTable.size();
     }
 
     /**
@@ -47,7 +173,24 @@ public class Graph<T> implements GraphInterface<T> {
             return false;
         }
 
-        vertices.put(vertexLabel, new Vertex<>(vertexLabel)); // simply add
+        if (vertices.containsKey(vertexLabel)) { // already here, keep its edges
+            return false;
+        }
+
+        int id;
+        if (freeCount > 0) { // reuse an id
+            freeCount--;
+            id = freeIds[freeCount];
+        } else {
+            id = vertexTable.size();
+            vertexTable.add(null);
+        }
+        Vertex<T> vertex = new Vertex<>(vertexLabel, id, vertexTable);
+        vertexTable.set(id, vertex);
+        vertices.put(vertexLabel, vertex); // simply add
+        components.addVertex(id);
+        degrees.addVertex(id);
+        modifications.increment();
         return true;
     }
 
@@ -68,12 +211,30 @@ public class Graph<T> implements GraphInterface<T> {
             return null;
         }
 
-        // System.out.println("this is the label " + vertexLabel);
-        VertexInterface<T> returns = vertices.get(vertexLabel); // for returning
+        Vertex<T> returns = vertices.get(vertexLabel); // for returning
+        int id = returns.getId();
+        if (returns.hasNeighbor()) { // its component may fall apart
+            components.markStale();
+        }
+        int[] neighborIds = returns.neighborIds();
+        double[] neighborWeights = returns.neighborWeights();
+        for (int i = 0; i < returns.getNumberOfNeighbors(); i++) { // the neighbors should not keep an edge to a vertex that is gone
+            Vertex<T> neighbor = vertexAt(neighborIds[i]);
+            neighbor.removeNeighborAt(neighbor.indexOfNeighbor(id, neighborWeights[i]));
+            degrees.decrement(neighborIds[i]);
+            countsEdges.add(-2); // as its undirected
+        }
+        returns.removeAllNeighbors(); // its ids mean nothing once the id is reused
+        degrees.removeVertex(id);
         vertices.remove(vertexLabel); // we can just remove with the label
 
-        // Vertex<T> returns = vertices.get(vertexLabel);
-        // vertices.remove(vertexLabel, new Vertex<>(vertexLabel));
+        vertexTable.set(id, null);
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount] = id;
+        freeCount++;
+        modifications.increment();
 
         return returns;
 
@@ -88,26 +249,23 @@ public class Graph<T> implements GraphInterface<T> {
      * @return if a path exist.
      */
     private boolean weightedhasEdge(T begin, T end, double edgeWeight) {
-        boolean returner = false;
-
-        Vertex<T> bvertex = vertices.get(begin); // get the value associated with the begin key
-        Vertex<T> evertex = vertices.get(end); // get the value associated with the end key
+        return weightedhasEdge(idOf(begin), idOf(end), edgeWeight);
+    }
 
-        if (bvertex == null || evertex == null) { // first check if these value are null or not
+    /**
+     * Checks if a weighted pair has an edge.
+     * 
+     * @param begin      the id of our start.
+     * @param end        the id of our end.
+     * @param edgeWeight our weight.
+     * @return if a path exist.
+     */
+    private boolean weightedhasEdge(int begin, int end, double edgeWeight) {
+        Vertex<T> bvertex = vertexAt(begin);
+        if (bvertex == null || vertexAt(end) == null) { // first check if these value are null or not
             return false;
         }
-        Iterator<VertexInterface<T>> loopy = bvertex.getNeighborIterator(); // to loop over
-        Iterator<Double> weightloopy = bvertex.getWeightIterator(); // to loop over
-        while (loopy.hasNext() && weightloopy.hasNext() && !returner) { // keep going till there is nothing next
-            VertexInterface<T> nextDoor = loopy.next(); // grab the vertex to compare
-            Double nextDoorWeight = weightloopy.next(); // grab the vertex.weight to compare
-            if (nextDoor.equals(evertex) && edgeWeight == nextDoorWeight) { // IT WAS FOUND
-                returner = true; // meaning there is a connection
-                break; // stop the loop we found a connection.
-            }
-        }
-
-        return returner;
+        return bvertex.indexOfNeighbor(end, edgeWeight) != -1;
     }
 
     /**
@@ -120,39 +278,44 @@ public class Graph<T> implements GraphInterface<T> {
      * @return boolean to see if it was added sucessfully.
      */
     public boolean addEdge(T begin, T end, double edgeWeight) {
-        boolean returns = false; // to check if it was added sucessfully and for returning.
-        Vertex<T> bvertex = vertices.get(begin); // get the value associated with the begin key
-        Vertex<T> evertex = vertices.get(end); // get the value associated with the end key
-
-        boolean checks = weightedhasEdge(begin, end, edgeWeight); // call to see if there as edge
+        return addEdgeById(idOf(begin), idOf(end), edgeWeight);
+    }
 
-        if (checks == true) { // this means edge exists between two given vertices.
-            returns = false;
-            return returns;
-        }
+    /**
+     * Adds a weighted edge between the vertices with the given ids.
+     * 
+     * @param begin      the id of where to start.
+     * @param end        the id of where to end.
+     * @param edgeWeight weight of the edge.
+     * @return boolean to see if it was added sucessfully.
+     */
+    public boolean addEdgeById(int begin, int end, double edgeWeight) {
+        Vertex<T> bvertex = vertexAt(begin);
+        Vertex<T> evertex = vertexAt(end);
 
-        // but we have to check if bVertex and eVertex are null.
+        // we have to check if bVertex and eVertex are null.
         if (bvertex == null || evertex == null) {
-            returns = false;
-            return returns;
+            return false;
         }
 
-        if (bvertex.equals(evertex)) { // For this project, a vertex cannot create an edge with itself. @1657
-            returns = false;
-            return returns;
+        if (begin == end) { // For this project, a vertex cannot create an edge with itself. @1657
+            return false;
         }
 
-        // now we are able to add
-        else {
-            // it goes both ways
-            bvertex.connect(evertex, edgeWeight);
-            evertex.connect(bvertex, edgeWeight);
-
-            countsEdges += 2; // as its undirected
-            returns = true;
-            return returns;
+        if (bvertex.indexOfNeighbor(end, edgeWeight) != -1) { // this means edge exists between two given vertices.
+            return false;
         }
 
+        // it goes both ways
+        bvertex.addNeighbor(end, edgeWeight);
+        evertex.addNeighbor(begin, edgeWeight);
+        components.union(begin, end);
+        degrees.increment(begin);
+        degrees.increment(end);
+
+        countsEdges.add(2); // as its undirected
+        modifications.increment();
+        return true;
     }
 
     /**
@@ -164,40 +327,22 @@ public class Graph<T> implements GraphInterface<T> {
      * @return boolean to see if it was added sucessfully.
      */
     public boolean addEdge(T begin, T end) {
-        boolean returns = false; // to check if it was added sucessfully and for returning.
-        Vertex<T> bvertex = vertices.get(begin); // get the value associated with the begin key
-        Vertex<T> evertex = vertices.get(end); // get the value associated with the end key
-
-        // first check if this edge already occurs
-        boolean checks = hasEdge(begin, end); // call hasEdge
-
-        if (checks == true) { // this means edge exists between two given vertices.
-            returns = false;
-            return returns;
-
-        }
-
-        // but we have to check if bVertex and eVertex are null.
-        if (bvertex == null || evertex == null) {
-            returns = false;
-            return returns;
-        }
-
-        if (bvertex.equals(evertex)) { // For this project, a vertex cannot create an edge with itself. @1657
-            returns = false;
-            return returns;
-        }
-
-        // now we are able to add
-        else {
-            // it goes both ways
-            bvertex.connect(evertex);
-            evertex.connect(bvertex);
+        return addEdgeById(idOf(begin), idOf(end));
+    }
 
-            countsEdges += 2; // as its undirected
-            returns = true;
-            return returns;
+    /**
+     * Adds an unweighted edge between the vertices with the given ids. The
+     * desired edge must not already be in the graph.
+     * 
+     * @param begin the id of where to start.
+     * @param end   the id of where to end.
+     * @return boolean to see if it was added sucessfully.
+     */
+    public boolean addEdgeById(int begin, int end) {
+        if (hasEdgeById(begin, end)) { // this means edge exists between two given vertices.
+            return false;
         }
+        return addEdgeById(begin, end, 0);
     }
 
     /**
@@ -210,27 +355,41 @@ public class Graph<T> implements GraphInterface<T> {
      * @return true if the removal is successful, false otherwise.
      */
     public boolean removeEdge(T begin, T end, double edgeWeight) {
-        boolean checks = weightedhasEdge(begin, end, edgeWeight); // call to see if there as edge
-        if (checks == false) { // an edge doesnt exist between them so we cant remove anything
-            return false;
-        }
-
-        Vertex<T> bvertex = vertices.get(begin); // get the value associated with the begin key
-        Vertex<T> evertex = vertices.get(end); // get the value associated with the end key
+        return removeEdgeById(idOf(begin), idOf(end), edgeWeight);
+    }
 
-        // but we have to check if bVertex and eVertex are null.
+    /**
+     * Removes a weighted edge between the vertices with the given ids. The
+     * desired edge must already be in the graph.
+     * 
+     * @param begin      the id of where to start.
+     * @param end        the id of where to end.
+     * @param edgeWeight weight of the edge.
+     * @return true if the removal is successful, false otherwise.
+     */
+    public boolean removeEdgeById(int begin, int end, double edgeWeight) {
+        Vertex<T> bvertex = vertexAt(begin);
+        Vertex<T> evertex = vertexAt(end);
         if (bvertex == null || evertex == null) {
             return false;
         }
 
-        else {
-            // remove it both ways
-            bvertex.disconnect(evertex, edgeWeight);
-            evertex.disconnect(bvertex, edgeWeight);
-            countsEdges -= 2; // as its undirected
-            return true;
+        int index = bvertex.indexOfNeighbor(end, edgeWeight);
+        if (index == -1) { // an edge doesnt exist between them so we cant remove anything
+            return false;
         }
 
+        // remove it both ways
+        bvertex.removeNeighborAt(index);
+        evertex.removeNeighborAt(evertex.indexOfNeighbor(begin, edgeWeight));
+        degrees.decrement(begin);
+        degrees.decrement(end);
+        if (bvertex.indexOfNeighbor(end) == -1) { // that was the last edge between them
+            components.markStale();
+        }
+        countsEdges.add(-2); // as its undirected
+        modifications.increment();
+        return true;
     }
 
     /**
@@ -242,27 +401,29 @@ public class Graph<T> implements GraphInterface<T> {
      * @return true if the removal is successful, false otherwise.
      */
     public boolean removeEdge(T begin, T end) {
-        boolean checks = hasEdge(begin, end);
-        if (checks == false) { // an edge doesnt exist between them so we cant remove anything
-            return false;
-        }
-
-        Vertex<T> bvertex = vertices.get(begin); // get the value associated with the begin key
-        Vertex<T> evertex = vertices.get(end); // get the value associated with the end key
+        return removeEdgeById(idOf(begin), idOf(end));
+    }
 
-        // but we have to check if bVertex and eVertex are null.
-        if (bvertex == null || evertex == null) {
+    /**
+     * Removes an edge of any weight between the vertices with the given ids. The
+     * desired edge must already be in the graph.
+     * 
+     * @param begin the id of where to start.
+     * @param end   the id of where to end.
+     * @return true if the removal is successful, false otherwise.
+     */
+    public boolean removeEdgeById(int begin, int end) {
+        Vertex<T> bvertex = vertexAt(begin);
+        if (bvertex == null || vertexAt(end) == null) {
             return false;
         }
 
-        else {
-            // remove it both ways
-            bvertex.disconnect(evertex);
-            evertex.disconnect(bvertex);
-            countsEdges -= 2; // as its undirected
-            return true;
+        int index = bvertex.indexOfNeighbor(end);
+        if (index == -1) { // an edge doesnt exist between them so we cant remove anything
+            return false;
         }
-
+        // remove the same edge on the other side too
+        return removeEdgeById(begin, end, bvertex.neighborWeights()[index]);
     }
 
     /**
@@ -273,23 +434,37 @@ public class Graph<T> implements GraphInterface<T> {
      * @return true if it exists, false if not.
      */
     public boolean hasEdge(T begin, T end) {
-        boolean returner = false;
-        Vertex<T> bvertex = vertices.get(begin); // get the value associated with the begin key
-        Vertex<T> evertex = vertices.get(end); // get the value associated with the end key
+        return hasEdgeById(idOf(begin), idOf(end));
+    }
 
+    /**
+     * Sees whether an undirected edge exists between the vertices with the given
+     * ids.
+     * 
+     * @param begin the id of where to start.
+     * @param end   the id of where to end.
+     * @return true if it exists, false if not.
+     */
+    public boolean hasEdgeById(int begin, int end) {
+        Vertex<T> bvertex = vertexAt(begin);
+        Vertex<T> evertex = vertexAt(end);
         if (bvertex == null || evertex == null) { // first check if these value are null or not
             return false;
         }
-        Iterator<VertexInterface<T>> loopy = bvertex.getNeighborIterator(); // to loop over
-        while (loopy.hasNext() && !returner) { // keep going till we there is nothing next
-            VertexInterface<T> nextDoor = loopy.next(); // grab the vertex to compare
-            if (nextDoor.equals(evertex)) { // IT WAS FOUND
-                returner = true; // meaning there is a connection
-                break; // stop the loop we found a connection.
-            }
+        if (evertex.getNumberOfNeighbors() < bvertex.getNumberOfNeighbors()) { // scan the smaller side
+            return evertex.indexOfNeighbor(begin) != -1;
         }
+        return bvertex.indexOfNeighbor(end) != -1;
+    }
 
-        return returner;
+    /**
+     * Sees whether a vertex is in this graph.
+     * 
+     * @param vertexLabel the label of the vertex.
+     * @return true if it is, false if not.
+     */
+    public boolean contains(T vertexLabel) {
+        return vertices.containsKey(vertexLabel);
     }
 
     /**
@@ -307,7 +482,7 @@ public class Graph<T> implements GraphInterface<T> {
      * @return the number of edges.
      */
     public int getNumberOfEdges() {
-        return countsEdges; // just get our variable.
+        return countsEdges.intValue(); // just get our variable.
     }
 
     /**
@@ -344,159 +519,548 @@ public class Graph<T> implements GraphInterface<T> {
      */
     public void clear() {
         vertices.clear(); // clear the hashmap
-        countsEdges = 0; // reset the counter
+        vertexTable.clear();
+        freeCount = 0;
+        components.clear();
+        degrees.clear();
+        countsEdges.reset(); // reset the counter
+        modifications.increment();
     }
 
     /**
-     * Performs a breadth- first traversal of a graph.
+     * Gets the vertices two edges away from the origin that share the most
+     * neighbors with it, the most shared first. Ties go to the smaller vertex
+     * id, and as ids of removed vertices are given out again, that is not always
+     * the vertex added first. The cost depends on the edges around the origin,
+     * not on the size of the graph.
      * 
      * @param origin where to start.
-     * @return the queue that contains the result.
+     * @param k      how many vertices to return at most.
+     * @return the vertices, empty if there are none or the origin does not exist.
      */
-    public Queue<T> getBreadthFirstTraversal(T origin) {
-        Queue<T> result = new LinkedList<>(); // for the resulting travesl order
-        Queue<T> vistedQueue = new LinkedList<>(); // hold the verteces that are visted
+    public List<T> getMostMutualNeighbors(T origin, int k) {
+        List<T> result = new ArrayList<>();
+        Vertex<T> vertex = vertices.get(origin);
+        if (vertex == null || k <= 0) {
+            return result;
+        }
 
-        if (vertices.containsKey(origin) == false) { // if the orgin doesnt exist return an empty queue see @1664
-            return result; // empty queue
+        int excluded = Integer.MIN_VALUE / 2; // stays negative however much is added
+        SparseCounter counter = counters.take();
+        try {
+            counter.begin(idCapacity());
+            counter.add(vertex.getId(), excluded); // the origin and its neighbors are not suggestions
+            int[] neighborIds = vertex.neighborIds();
+            int degree = vertex.getNumberOfNeighbors();
+            for (int i = 0; i < degree; i++) {
+                if (counter.get(neighborIds[i]) == 0) {
+                    counter.add(neighborIds[i], excluded);
+                }
+            }
+
+            for (int i = 0; i < degree; i++) { // one count per shared neighbor
+                Vertex<T> neighbor = vertexAt(neighborIds[i]);
+                int[] secondIds = neighbor.neighborIds();
+                int secondDegree = neighbor.getNumberOfNeighbors();
+                for (int j = 0; j < secondDegree; j++) {
+                    counter.add(secondIds[j], 1);
+                }
+            }
+
+            TopK best = new TopK(k);
+            for (int i = 0; i < counter.touchedCount(); i++) {
+                int id = counter.touchedAt(i);
+                if (counter.get(id) > 0) {
+                    best.offer(id, counter.get(id));
+                }
+            }
+            for (int id : best.drainBestFirst()) {
+                result.add(labelOf(id));
+            }
+            return result;
+        } finally {
+            counters.give(counter);
         }
+    }
 
-        if (vertices.size() == 0) { // there is nothing to traverse
-            return result; // empty queue
+    /**
+     * Gets the vertices that are neighbors of both given vertices.
+     * 
+     * @param first  the first vertex.
+     * @param second the second vertex.
+     * @return the shared neighbors, in increasing id order. Empty if either does
+     *         not exist.
+     */
+    public List<T> getMutualNeighbors(T first, T second) {
+        List<T> result = new ArrayList<>();
+        Vertex<T> a = vertices.get(first);
+        Vertex<T> b = vertices.get(second);
+        if (a == null || b == null) {
+            return result;
         }
+        int[] sortedA = a.sortedNeighborIds();
+        int[] sortedB = b.sortedNeighborIds();
+        int[] shared = new int[Math.min(sortedA.length, sortedB.length)];
+        int count = IntSets.intersect(sortedA, sortedB, shared);
+        for (int i = 0; i < count; i++) {
+            result.add(labelOf(shared[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Counts the vertices that are neighbors of both given vertices, without
+     * building a list.
+     * 
+     * @param first  the first vertex.
+     * @param second the second vertex.
+     * @return the number of shared neighbors, 0 if either does not exist.
+     */
+    public int getMutualNeighborCount(T first, T second) {
+        Vertex<T> a = vertices.get(first);
+        Vertex<T> b = vertices.get(second);
+        if (a == null || b == null) {
+            return 0;
+        }
+        return IntSets.intersectionSize(a.sortedNeighborIds(), b.sortedNeighborIds());
+    }
+
+    /**
+     * Gets the neighbors of a vertex, one for every edge, in the order the edges
+     * are kept.
+     * 
+     * @param vertexLabel the label of the vertex.
+     * @return the neighbors, empty if the vertex does not exist.
+     */
+    public List<T> getNeighbors(T vertexLabel) {
+        List<T> result = new ArrayList<>();
+        Vertex<T> vertex = vertices.get(vertexLabel);
+        if (vertex == null) {
+            return result;
+        }
+        int[] neighborIds = vertex.neighborIds();
+        int degree = vertex.getNumberOfNeighbors();
+        for (int i = 0; i < degree; i++) {
+            result.add(labelOf(neighborIds[i]));
+        }
+        return result;
+    }
 
-        // first lets add orgin to the queues
-        result.add(origin);
-        vistedQueue.add(origin);
+    /**
+     * Gets the vertices with the most neighbors. Vertices with the same number of
+     * neighbors come in no particular order. The cost depends on k, not on the
+     * size of the graph.
+     * 
+     * @param k how many vertices to return at most.
+     * @return the vertices, the most neighbors first.
+     */
+    public List<T> topByDegree(int k) {
+        List<T> result = new ArrayList<>();
+        for (int id : degrees.top(k)) {
+            result.add(labelOf(id));
+        }
+        return result;
+    }
 
-        Vertex<T> orginVertex = vertices.get(origin); // create the vertex
-        orginVertex.visit(); // mark it as visted
+    /**
+     * Gets how many vertices have exactly the given number of neighbors, in
+     * constant time.
+     * 
+     * @param degree the number of neighbors.
+     * @return the number of vertices.
+     */
+    public int countWithDegree(int degree) {
+        return degrees.countWithDegree(degree);
+    }
 
-        while (!vertices.isEmpty()) { // now lets loop through
+    /**
+     * Gets the degree histogram of the graph.
+     * 
+     * @return the number of vertices with each number of neighbors, from 0 up to
+     *         the biggest one. Empty if the graph is empty.
+     */
+    public int[] getDegreeHistogram() {
+        return degrees.histogram();
+    }
 
-            T orginal = vistedQueue.poll(); // grab the head and remove
-            Vertex<T> vertex1 = vertices.get(orginal); // get the value associated with the begin key
+    /**
+     * Gets the biggest number of neighbors any vertex has.
+     * 
+     * @return the biggest degree, -1 if the graph is empty.
+     */
+    public int getMaxDegree() {
+        return degrees.getMaxDegree();
+    }
 
-            if (vertex1 == null) { // if the vertex is null we have reached the end
-                break; // STOP
-            }
+    /**
+     * Sees whether there is a path between two vertices.
+     * 
+     * @param begin where to start.
+     * @param end   where to end.
+     * @return true if they are in the same connected component, false otherwise
+     *         or if either does not exist.
+     */
+    public boolean isConnected(T begin, T end) {
+        int b = idOf(begin);
+        int e = idOf(end);
+        if (b == -1 || e == -1) {
+            return false;
+        }
+        return components.componentOf(this, b) == components.componentOf(this, e);
+    }
 
-            Iterator<VertexInterface<T>> newIterator = vertex1.getNeighborIterator(); // for looping
+    /**
+     * Gets a number naming the connected component of a vertex. Two vertices are
+     * connected exactly when their numbers are equal. The numbers can change when
+     * the graph changes.
+     * 
+     * @param vertexLabel the label of the vertex.
+     * @return the component number, -1 if the vertex does not exist.
+     */
+    public int getComponentId(T vertexLabel) {
+        int id = idOf(vertexLabel);
+        if (id == -1) {
+            return -1;
+        }
+        return components.componentOf(this, id);
+    }
 
-            while (newIterator.hasNext()) { // keep going till we reach the end
-                VertexInterface<T> nextDoor = newIterator.next(); // grab the vertex
-                if (nextDoor.isVisited() == false) { // as long as we havent seen it yet
-                    result.add(nextDoor.getLabel()); // add it to our order
-                    vistedQueue.add(nextDoor.getLabel()); // as we already visted
-                    nextDoor.visit(); // mark as seen
-                }
-            }
+    /**
+     * Gets the number of vertices in the connected component of a vertex.
+     * 
+     * @param vertexLabel the label of the vertex.
+     * @return the size of the component, 0 if the vertex does not exist.
+     */
+    public int getComponentSize(T vertexLabel) {
+        int id = idOf(vertexLabel);
+        if (id == -1) {
+            return 0;
+        }
+        return components.componentSize(this, id);
+    }
 
+    /**
+     * Freezes the current graph into an immutable compressed-sparse-row snapshot.
+     * Later changes to the graph are not seen by the snapshot. If nothing changed
+     * since the last call, the same snapshot is returned again.
+     * 
+     * @return the snapshot.
+     */
+    public synchronized GraphSnapshot<T> snapshot() {
+        long version = modifications.sum();
+        if (lastSnapshot != null && lastSnapshotAt == version) { // still up to date
+            return lastSnapshot;
         }
 
-        // now reset the vertices
-        // make a copy to alter
-        Queue<T> resultcopy = new LinkedList<>();
-        resultcopy.addAll(result);
+        int size = vertices.size();
+        Object[] labels = new Object[size];
+        HashMap<T, Integer> ids = new HashMap<>();
+        int[] offsets = new int[size + 1];
+        int[] snapshotId = new int[vertexTable.size()]; // graph id to snapshot id, so free ids leave no holes
+
+        int next = 0;
+        for (int id = 0; id < vertexTable.size(); id++) { // number the vertices and size the rows
+            Vertex<T> vertex = vertexAt(id);
+            if (vertex != null) {
+                labels[next] = vertex.getLabel();
+                ids.put(vertex.getLabel(), next);
+                snapshotId[id] = next;
+                offsets[next + 1] = offsets[next] + vertex.getNumberOfNeighbors();
+                next++;
+            }
+        }
 
-        while (true) {
-            T temp = resultcopy.poll(); // grab a value
-            if (temp == null) {
-                break; // stop the loop
+        int[] neighbors = new int[offsets[size]];
+        double[] weights = new double[offsets[size]];
+        int at = 0;
+        for (int id = 0; id < vertexTable.size(); id++) { // same order as above
+            Vertex<T> vertex = vertexAt(id);
+            if (vertex != null) {
+                int[] neighborIds = vertex.neighborIds();
+                int degree = vertex.getNumberOfNeighbors();
+                for (int i = 0; i < degree; i++) {
+                    neighbors[at + i] = snapshotId[neighborIds[i]];
+                }
+                System.arraycopy(vertex.neighborWeights(), 0, weights, at, degree);
+                at += degree;
             }
+        }
 
-            VertexInterface<T> currentVertex = vertices.get(temp); // get its vertex
+        lastSnapshot = new GraphSnapshot<>(labels, ids, offsets, neighbors, weights, countsEdges.intValue());
+        lastSnapshotAt = version;
+        return lastSnapshot;
+    }
 
-            if (currentVertex == null) { // check if its null
-                break;
+    /**
+     * Performs a breadth- first traversal of a graph.
+     * 
+     * @param origin where to start.
+     * @return the queue that contains the result.
+     */
+    public Queue<T> getBreadthFirstTraversal(T origin) {
+        Queue<T> result = new ArrayDeque<>(); // for the resulting travesl order
+
+        int start = idOf(origin);
+        if (start == -1) { // if the orgin doesnt exist return an empty queue see @1664
+            return result; // empty queue
+        }
+
+        // the visited marks live in a scratch of this traversal, not in the vertices,
+        // so other traversals can run at the same time and nothing needs resetting
+        TraversalScratch scratch = scratches.take();
+        try {
+            scratch.begin(idCapacity());
+            int[] queue = scratch.queue();
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = start;
+            scratch.visit(start);
+
+            while (head < tail) { // now lets loop through
+                Vertex<T> current = vertexAt(queue[head++]); // grab the head
+                result.add(current.getLabel()); // add it to our order
+
+                int[] neighborIds = current.neighborIds();
+                int degree = current.getNumberOfNeighbors();
+                for (int i = 0; i < degree; i++) {
+                    int next = neighborIds[i];
+                    if (scratch.visit(next)) { // as long as we havent seen it yet
+                        queue[tail++] = next;
+                    }
+                }
             }
-            currentVertex.unvisit(); // mark as univisted and reset
 
+            return result;
+        } finally {
+            scratches.give(scratch);
         }
+    }
 
-        return result;
+    /**
+     * Gets the shortest distance between many pairs at once. The sources are
+     * searched in groups of 64 that share one pass over the graph, which is much
+     * cheaper than one getShortestPath call per pair.
+     * 
+     * @param sources where to start.
+     * @param targets where we want to go.
+     * @return result[i][j] is the number of edges between source i and target j.
+     *         If a path does not exist, it is the maximum integer (to simulate
+     *         infinity).
+     */
+    public int[][] getShortestDistances(List<T> sources, List<T> targets) {
+        return MultiSourceSearch.distances(this, sources, targets);
+    }
+
+    /**
+     * Starts a lazy breadth-first traversal. Nothing is explored until the
+     * iterator is asked for the next vertex, and exploring stops when the caller
+     * stops asking.
+     * 
+     * @param origin   where to start.
+     * @param maxDepth vertices more than this many edges away are not returned.
+     * @return the iterator, empty if the origin does not exist.
+     */
+    public BreadthFirstIterator<T> bfsIterator(T origin, int maxDepth) {
+        return new BreadthFirstIterator<>(this, origin, maxDepth);
+    }
 
+    /**
+     * A lazy breadth-first traversal as a stream, for example
+     * bfsStream(me, 2).limit(50) only explores as much as it takes to find 50
+     * vertices. Use bfsIterator to also get the depth of each vertex.
+     * 
+     * @param origin   where to start.
+     * @param maxDepth vertices more than this many edges away are not returned.
+     * @return the stream, empty if the origin does not exist.
+     */
+    public Stream<T> bfsStream(T origin, int maxDepth) {
+        Spliterator<T> split = Spliterators.spliteratorUnknownSize(bfsIterator(origin, maxDepth),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL);
+        return StreamSupport.stream(split, false);
     }
 
     /**
      * Get the shortest distance between the origin and destination.
+     * Searches from both ends at once, one whole level at a time, always growing
+     * the side with the smaller frontier, and stops in the level where the two
+     * searches meet. On a social network this touches a tiny part of the graph.
      * 
      * @param origin      where to start.
      * @param destination where we want to go.
-     * @param path        the sequence.
+     * @param path        filled with the vertices on the path, the origin on top.
      * @return the shortest distance between the origin and destination. If a path
      *         does not exist, it returns the maximum integer (to simulate
      *         infinity).
      */
-    public int getShortestPath(T origin, T destination, Stack<T> path) { // NOT DONE
-
-        int len = 0; // the length
-
-        Vertex<T> bvertex = vertices.get(origin); // get the value associated with the begin key
-        Vertex<T> evertex = vertices.get(destination); // get the value associated with the end key
-
-        if (bvertex == null || evertex == null) {
+    public int getShortestPath(T origin, T destination, Stack<T> path) {
+        int start = idOf(origin);
+        int goal = idOf(destination);
+        if (start == -1 || goal == -1) {
             return Integer.MAX_VALUE; // does not exist, it returns the maximum integer (to simulate Ifinity).
         }
 
-        if (vertices.isEmpty() == true) { // make sure there is soemething even in the graph
-            return Integer.MAX_VALUE; // does not exist, it returns the maximum integer (to simulate Ifinity).
+        if (start == goal) { // already there
+            path.push(origin);
+            return 0;
         }
 
-        Queue<T> getbftdes = getBreadthFirstTraversal(destination);
-
-        Queue<T> getbftorg = getBreadthFirstTraversal(origin);
+        if (components.knownDisconnected(this, start, goal)) { // no need to search
+            return Integer.MAX_VALUE;
+        }
 
-        int desCount = 0;
-        int orgCount = 0;
+        TraversalScratch forward = scratches.take();
+        TraversalScratch backward = scratches.take();
+        try {
+            forward.begin(idCapacity());
+            backward.begin(idCapacity());
+
+            int[] forwardQueue = forward.queue();
+            int[] backwardQueue = backward.queue();
+            int forwardHead = 0;
+            int forwardTail = 0;
+            int backwardHead = 0;
+            int backwardTail = 0;
+            forward.visit(start);
+            forward.predecessors()[start] = -1;
+            forward.depths()[start] = 0;
+            forwardQueue[forwardTail++] = start;
+            backward.visit(goal);
+            backward.predecessors()[goal] = -1;
+            backward.depths()[goal] = 0;
+            backwardQueue[backwardTail++] = goal;
+
+            int best = Integer.MAX_VALUE;
+            int meetForward = -1; // the edge where the searches meet
+            int meetBackward = -1;
+
+            while (forwardHead < forwardTail && backwardHead < backwardTail && best == Integer.MAX_VALUE) {
+                boolean growForward = forwardTail - forwardHead <= backwardTail - backwardHead; // smaller frontier first
+                TraversalScratch side = growForward ? forward : backward;
+                TraversalScratch other = growForward ? backward : forward;
+                int[] queue = side.queue();
+                int[] predecessors = side.predecessors();
+                int[] depths = side.depths();
+                int head = growForward ? forwardHead : backwardHead;
+                int tail = growForward ? forwardTail : backwardTail;
+                int levelEnd = tail;
+
+                for (; head < levelEnd; head++) { // one whole level
+                    int current = queue[head];
+                    Vertex<T> vertex = vertexAt(current);
+                    int[] neighborIds = vertex.neighborIds();
+                    int degree = vertex.getNumberOfNeighbors();
+                    for (int i = 0; i < degree; i++) {
+                        int next = neighborIds[i];
+                        if (other.isVisited(next)) { // the searches meet here
+                            int length = depths[current] + 1 + other.depths()[next];
+                            if (length < best) {
+                                best = length;
+                                meetForward = growForward ? current : next;
+                                meetBackward = growForward ? next : current;
+                            }
+                        }
+                        if (side.visit(next)) {
+                            predecessors[next] = current;
+                            depths[next] = depths[current] + 1;
+                            queue[tail++] = next;
+                        }
+                    }
+                }
 
-        if (getbftdes.contains(origin) == false || getbftdes.contains(destination) == false
-                || getbftorg.contains(origin) == false || getbftorg.contains(destination) == false) {
-            return Integer.MAX_VALUE; // does not exist, it returns the maximum integer (to simulate Ifinity).
-        }
+                if (growForward) {
+                    forwardHead = head;
+                    forwardTail = tail;
+                } else {
+                    backwardHead = head;
+                    backwardTail = tail;
+                }
+            }
 
-        // lets check getbftdes first
-        Stack<T> pathdes = new Stack<>();
-        while (true) {
-            T temp = getbftdes.poll(); // grab
-            pathdes.push(temp);
-            if (temp.equals(origin)) {
-                break;
+            components.chargeSearch(forwardTail + backwardTail); // towards rebuilding a stale index
+            if (best == Integer.MAX_VALUE) { // the searches never met
+                return Integer.MAX_VALUE;
             }
-            desCount++;
-        }
 
-        Stack<T> pathorg = new Stack<>();
-        while (true) {
-            T temp1 = getbftorg.poll(); // grab
-            pathorg.push(temp1);
-            if (temp1.equals(destination)) {
-                break;
+            // the destination goes in first so the origin ends up on top
+            ArrayList<T> toDestination = new ArrayList<>();
+            for (int at = meetBackward; at != -1; at = backward.predecessors()[at]) {
+                toDestination.add(labelOf(at));
+            }
+            for (int i = toDestination.size() - 1; i >= 0; i--) {
+                path.push(toDestination.get(i));
+            }
+            for (int at = meetForward; at != -1; at = forward.predecessors()[at]) {
+                path.push(labelOf(at));
             }
-            orgCount++;
 
+            return best;
+        } finally {
+            scratches.give(backward);
+            scratches.give(forward);
         }
+    }
 
-        // now compare them and see which one is the smaller and return the smallest
-        // ammount
-
-        if (orgCount == desCount) { // if they are the same?
-            len = desCount;
-            path.addAll(pathdes);
+    /**
+     * Get the cheapest weighted path between the origin and destination, using
+     * the edge weights as costs (Dijkstra). The weights must not be negative, and
+     * an unweighted edge costs 0. The search stops as soon as the destination is
+     * taken off the heap.
+     * 
+     * @param origin      where to start.
+     * @param destination where we want to go.
+     * @param path        filled with the vertices on the path, the origin on top.
+     * @return the total weight of the cheapest path. If a path does not exist, it
+     *         returns positive infinity.
+     */
+    public double getCheapestPath(T origin, T destination, Stack<T> path) {
+        int start = idOf(origin);
+        int goal = idOf(destination);
+        if (start == -1 || goal == -1) {
+            return Double.POSITIVE_INFINITY;
         }
 
-        if (orgCount < desCount) {
-            len = orgCount;
-            path.addAll(pathorg);
-        }
-        if (desCount < orgCount) {
-            len = desCount;
-            path.addAll(pathdes);
-        }
+        IndexedMinHeap heap = heaps.take();
+        TraversalScratch scratch = scratches.take(); // only the predecessors are used
+        try {
+            heap.begin(idCapacity());
+            scratch.begin(idCapacity());
+            int[] predecessors = scratch.predecessors();
+
+            heap.offer(start, 0.0);
+            predecessors[start] = -1;
+            boolean found = false;
+            while (heap.isEmpty() == false) {
+                int current = heap.poll();
+                if (current == goal) { // its cost can not get any lower
+                    found = true;
+                    break;
+                }
+
+                double cost = heap.keyOf(current);
+                Vertex<T> vertex = vertexAt(current);
+                int[] neighborIds = vertex.neighborIds();
+                double[] neighborWeights = vertex.neighborWeights();
+                int degree = vertex.getNumberOfNeighbors();
+                for (int i = 0; i < degree; i++) {
+                    int next = neighborIds[i];
+                    if (heap.offer(next, cost + neighborWeights[i])) { // found a cheaper way there
+                        predecessors[next] = current;
+                    }
+                }
+            }
 
-        // System.out.println("this is path " + path);
+            if (found == false) {
+                return Double.POSITIVE_INFINITY;
+            }
 
-        return len;
+            for (int at = goal; at != -1; at = predecessors[at]) { // walk back to the origin
+                path.push(labelOf(at));
+            }
+            return heap.keyOf(goal);
+        } finally {
+            scratches.give(scratch);
+            heaps.give(heap);
+        }
     }
 
     /**
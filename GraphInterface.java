@@ -84,6 +84,14 @@ interface GraphInterface<T> {
      */
     public boolean hasEdge(T begin, T end);
 
+    /**
+     * Sees whether a vertex is in this graph.
+     * 
+     * @param vertexLabel the label of the vertex.
+     * @return true if it is, false if not.
+     */
+    public boolean contains(T vertexLabel);
+
     /**
      * This method gets the number of vertices in this graph.
      * 
@@ -138,4 +146,30 @@ interface GraphInterface<T> {
      */
     public int getShortestPath(T origin, T destination, Stack<T> path);
 
+    /**
+     * Gets the neighbors of a vertex, one for every edge, in the order the edges
+     * are kept.
+     * 
+     * @param vertexLabel the label of the vertex.
+     * @return the neighbors, empty if the vertex does not exist.
+     */
+    public List<T> getNeighbors(T vertexLabel);
+
+    /**
+     * Gets the vertices with the most neighbors. Vertices with the same number of
+     * neighbors come in no particular order.
+     * 
+     * @param k how many vertices to return at most.
+     * @return the vertices, the most neighbors first.
+     */
+    public List<T> topByDegree(int k);
+
+    /**
+     * Gets the degree histogram of the graph.
+     * 
+     * @return the number of vertices with each number of neighbors, from 0 up to
+     *         the biggest one. Empty if the graph is empty.
+     */
+    public int[] getDegreeHistogram();
+
 }
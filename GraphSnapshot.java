@@ -0,0 +1,435 @@
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Stack;
+import java.util.Arrays;
+
+/**
+ * An immutable, compressed-sparse-row copy of a graph.
+ * The neighbors of the vertex with id i are stored in neighbors[offsets[i]]
+ * up to (but not including) neighbors[offsets[i + 1]], and the weight of each of
+ * those edges is at the same position in weights. Writes to the graph that
+ * produced this snapshot are never seen here, so read queries can run against it
+ * while the graph keeps changing.
+ *
+ * @param <T> our generic.
+ * @author Rahima Adnan
+ */
+public class GraphSnapshot<T> implements GraphView<T> {
+    /**
+     * The label of every vertex, indexed by its id in this snapshot.
+     */
+    private final Object[] labels;
+
+    /**
+     * Maps a label to its id in this snapshot.
+     */
+    private final HashMap<T, Integer> ids;
+
+    /**
+     * Where the neighbors of each vertex start. It has one extra slot at the end.
+     */
+    private final int[] offsets;
+
+    /**
+     * The ids of the neighbors of every vertex, one row after another.
+     */
+    private final int[] neighbors;
+
+    /**
+     * The weight of every edge, parallel to neighbors.
+     */
+    private final double[] weights;
+
+    /**
+     * The number of edges the graph reported when this snapshot was taken.
+     */
+    private final int numberOfEdges;
+
+    /**
+     * Simple constructor. The arrays are owned by the snapshot from now on.
+     *
+     * @param labels        the label of every vertex by id.
+     * @param ids           the id of every label.
+     * @param offsets       where each row starts.
+     * @param neighbors     the neighbor ids.
+     * @param weights       the edge weights.
+     * @param numberOfEdges the edge count of the graph.
+     */
+    GraphSnapshot(Object[] labels, HashMap<T, Integer> ids, int[] offsets, int[] neighbors, double[] weights,
+            int numberOfEdges) {
+        this.labels = labels;
+        this.ids = ids;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+        this.weights = weights;
+        this.numberOfEdges = numberOfEdges;
+    }
+
+    /**
+     * Gets the id of a label.
+     *
+     * @param label the label.
+     * @return the id, or -1 if the label was not in the graph.
+     */
+    int idOf(T label) {
+        if (label == null) {
+            return -1;
+        }
+        Integer id = ids.get(label);
+        if (id == null) { // not in this snapshot
+            return -1;
+        }
+        return id;
+    }
+
+    /**
+     * Gets the label of an id.
+     *
+     * @param id the id.
+     * @return the label.
+     */
+    @SuppressWarnings("unchecked")
+    T labelOf(int id) {
+        return (T) labels[id];
+    }
+
+    /**
+     * Gets the row offsets. Must not be changed.
+     *
+     * @return the offsets, one longer than the number of vertices.
+     */
+    int[] offsets() {
+        return offsets;
+    }
+
+    /**
+     * Gets the neighbor ids of every row. Must not be changed.
+     *
+     * @return the neighbors.
+     */
+    int[] neighbors() {
+        return neighbors;
+    }
+
+    /**
+     * Gets the edge weights of every row. Must not be changed.
+     *
+     * @return the weights.
+     */
+    double[] weights() {
+        return weights;
+    }
+
+    /**
+     * Checks if a vertex was in the graph.
+     *
+     * @param label the label of the vertex.
+     * @return true if it was, false otherwise.
+     */
+    public boolean contains(T label) {
+        return idOf(label) != -1;
+    }
+
+    /**
+     * This method gets the number of vertices in this snapshot.
+     *
+     * @return the number of vertices.
+     */
+    public int getNumberOfVertices() {
+        return labels.length;
+    }
+
+    /**
+     * This method gets the number of edges in this snapshot, counted the same way
+     * as the graph counts them.
+     *
+     * @return the number of edges.
+     */
+    public int getNumberOfEdges() {
+        return numberOfEdges;
+    }
+
+    /**
+     * Gets the number of neighbors of a vertex.
+     *
+     * @param label the label of the vertex.
+     * @return the number of neighbors, 0 if the vertex does not exist.
+     */
+    public int getNumberOfNeighbors(T label) {
+        int id = idOf(label);
+        if (id == -1) {
+            return 0;
+        }
+        return offsets[id + 1] - offsets[id];
+    }
+
+    /**
+     * Gets the neighbors of a vertex in the order they were connected.
+     *
+     * @param label the label of the vertex.
+     * @return the list of neighbors, empty if the vertex does not exist.
+     */
+    public List<T> getNeighbors(T label) {
+        List<T> result = new ArrayList<>();
+        int id = idOf(label);
+        if (id == -1) {
+            return result;
+        }
+        for (int e = offsets[id]; e < offsets[id + 1]; e++) {
+            result.add(labelOf(neighbors[e]));
+        }
+        return result;
+    }
+
+    /**
+     * Sees whether an undirected edge exists between two given vertices.
+     *
+     * @param begin where to start.
+     * @param end   where to end.
+     * @return true if it exists, false if not.
+     */
+    public boolean hasEdge(T begin, T end) {
+        int b = idOf(begin);
+        int e = idOf(end);
+        if (b == -1 || e == -1) {
+            return false;
+        }
+        // scan the shorter row, the edge is stored on both sides
+        if (offsets[e + 1] - offsets[e] < offsets[b + 1] - offsets[b]) {
+            int temp = b;
+            b = e;
+            e = temp;
+        }
+        for (int i = offsets[b]; i < offsets[b + 1]; i++) {
+            if (neighbors[i] == e) { // found it
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sees whether a weighted edge exists between two given vertices.
+     *
+     * @param begin      where to start.
+     * @param end        where to end.
+     * @param edgeWeight the weight of the edge.
+     * @return true if it exists, false if not.
+     */
+    public boolean hasEdge(T begin, T end, double edgeWeight) {
+        int b = idOf(begin);
+        int e = idOf(end);
+        if (b == -1 || e == -1) {
+            return false;
+        }
+        for (int i = offsets[b]; i < offsets[b + 1]; i++) {
+            if (neighbors[i] == e && weights[i] == edgeWeight) { // found it
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Performs a breadth- first traversal of the snapshot.
+     *
+     * @param origin where to start.
+     * @return the queue that contains the result, empty if the origin does not
+     *         exist.
+     */
+    public Queue<T> getBreadthFirstTraversal(T origin) {
+        Queue<T> result = new ArrayDeque<>();
+        int start = idOf(origin);
+        if (start == -1) { // nothing to traverse
+            return result;
+        }
+
+        int[] queue = new int[labels.length]; // every vertex is queued at most once
+        boolean[] visited = new boolean[labels.length];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        visited[start] = true;
+
+        while (head < tail) {
+            int current = queue[head++];
+            result.add(labelOf(current));
+            for (int e = offsets[current]; e < offsets[current + 1]; e++) {
+                int next = neighbors[e];
+                if (visited[next] == false) { // not seen yet
+                    visited[next] = true;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Walks the snapshot breadth-first, nearest first, one vertex at a time. Only
+     * as much of the snapshot is explored as is asked for.
+     *
+     * @param origin where to start.
+     * @return the vertices in the order they are reached, none if the origin
+     *         does not exist.
+     */
+    public Iterator<T> breadthFirstIterator(T origin) {
+        int start = idOf(origin);
+        IntHashSet seen = new IntHashSet(); // grows with the traversal, not with the graph
+        return new Iterator<T>() {
+            private int[] queue = new int[16];
+            private int head = 0;
+            private int tail = 0;
+
+            {
+                if (start != -1) {
+                    queue[tail++] = start;
+                    seen.add(start);
+                }
+            }
+
+            public boolean hasNext() {
+                return head < tail;
+            }
+
+            public T next() {
+                if (head == tail) {
+                    throw new NoSuchElementException();
+                }
+                int current = queue[head++];
+                for (int e = offsets[current]; e < offsets[current + 1]; e++) { // queue its neighbors now
+                    int next = neighbors[e];
+                    if (seen.add(next)) {
+                        if (tail == queue.length) {
+                            queue = Arrays.copyOf(queue, tail * 2);
+                        }
+                        queue[tail++] = next;
+                    }
+                }
+                return labelOf(current);
+            }
+        };
+    }
+
+    /**
+     * Gets how many edges every vertex is from the origin, the level each vertex
+     * is reached at in a breadth-first traversal.
+     *
+     * @param origin where to start.
+     * @return the level of each vertex indexed by id, -1 for vertices that can not
+     *         be reached. All -1 if the origin does not exist.
+     */
+    public int[] getLevels(T origin) {
+        int[] levels = new int[labels.length];
+        Arrays.fill(levels, -1);
+        int start = idOf(origin);
+        if (start == -1) {
+            return levels;
+        }
+
+        int[] queue = new int[labels.length];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        levels[start] = 0;
+        while (head < tail) {
+            int current = queue[head++];
+            for (int e = offsets[current]; e < offsets[current + 1]; e++) {
+                int next = neighbors[e];
+                if (levels[next] == -1) { // not seen yet
+                    levels[next] = levels[current] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return levels;
+    }
+
+    /**
+     * Get the shortest distance between the origin and destination.
+     *
+     * @param origin      where to start.
+     * @param destination where we want to go.
+     * @param path        filled with the vertices on the path, the origin on top.
+     * @return the number of edges on the shortest path. If a path does not exist,
+     *         it returns the maximum integer (to simulate infinity).
+     */
+    public int getShortestPath(T origin, T destination, Stack<T> path) {
+        int start = idOf(origin);
+        int goal = idOf(destination);
+        if (start == -1 || goal == -1) {
+            return Integer.MAX_VALUE;
+        }
+
+        int[] predecessor = new int[labels.length];
+        int[] queue = new int[labels.length];
+        for (int i = 0; i < predecessor.length; i++) {
+            predecessor[i] = -2; // -2 means not seen yet
+        }
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        predecessor[start] = -1;
+
+        while (head < tail && predecessor[goal] == -2) { // stop as soon as we reach the goal
+            int current = queue[head++];
+            for (int e = offsets[current]; e < offsets[current + 1]; e++) {
+                int next = neighbors[e];
+                if (predecessor[next] == -2) {
+                    predecessor[next] = current;
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        if (predecessor[goal] == -2) { // never reached
+            return Integer.MAX_VALUE;
+        }
+
+        int length = 0;
+        for (int at = goal; at != -1; at = predecessor[at]) { // walk back to the origin
+            path.push(labelOf(at));
+            length++;
+        }
+        return length - 1; // edges, not vertices
+    }
+
+    /**
+     * Gets every vertex two edges away from the origin that is not the origin or
+     * one of its neighbors, in the order they are discovered.
+     *
+     * @param origin where to start.
+     * @return the list of vertices, empty if there are none or the origin does not
+     *         exist.
+     */
+    public List<T> getSecondNeighbors(T origin) {
+        List<T> result = new ArrayList<>();
+        int start = idOf(origin);
+        if (start == -1) {
+            return result;
+        }
+
+        boolean[] seen = new boolean[labels.length];
+        seen[start] = true;
+        for (int e = offsets[start]; e < offsets[start + 1]; e++) { // the neighbors are not suggestions
+            seen[neighbors[e]] = true;
+        }
+        for (int e = offsets[start]; e < offsets[start + 1]; e++) {
+            int friend = neighbors[e];
+            for (int f = offsets[friend]; f < offsets[friend + 1]; f++) {
+                int candidate = neighbors[f];
+                if (seen[candidate] == false) { // no duplicates
+                    seen[candidate] = true;
+                    result.add(labelOf(candidate));
+                }
+            }
+        }
+        return result;
+    }
+
+}
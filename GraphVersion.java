@@ -0,0 +1,570 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.List;
+import java.util.Queue;
+import java.util.Stack;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One committed version of a VersionedGraph. A version never changes, so any
+ * number of threads can read it without locks while newer versions are being
+ * committed. The rows of neighbors are kept in chunks of CHUNK vertices; a
+ * commit copies only the chunks and rows it touches and shares all the others
+ * with the version before it.
+ * <p>
+ * A version is pinned by VersionedGraph.pin and must be closed exactly once for
+ * every pin, best with try-with-resources. Once it is no longer the newest
+ * version and every pin is closed, its chunks are let go and it can not be read
+ * anymore.
+ *
+ * @param <T> our generic.
+ * @author Rahima Adnan
+ */
+public class GraphVersion<T> implements GraphView<T>, AutoCloseable {
+    /**
+     * How many bits of a vertex id pick the slot within its chunk.
+     */
+    static final int CHUNK_BITS = 8;
+
+    /**
+     * How many vertices share a chunk.
+     */
+    static final int CHUNK = 1 << CHUNK_BITS;
+
+    /**
+     * The row of a vertex without edges.
+     */
+    static final int[] NO_NEIGHBORS = new int[0];
+
+    /**
+     * The weights of a vertex without edges.
+     */
+    static final double[] NO_WEIGHTS = new double[0];
+
+    /**
+     * The number of this version, one more than the version before it.
+     */
+    private final long number;
+
+    /**
+     * The graph this version belongs to, which knows the id of every label.
+     */
+    private final VersionedGraph<T> graph;
+
+    /**
+     * The neighbor ids of every vertex by chunk, null for a chunk or row without
+     * edges. Null once the version is let go.
+     */
+    private int[][][] neighborChunks;
+
+    /**
+     * The edge weights of every vertex by chunk, parallel to neighborChunks.
+     */
+    private double[][][] weightChunks;
+
+    /**
+     * The label of every vertex by chunk, null for ids not in this version.
+     */
+    private Object[][] labelChunks;
+
+    /**
+     * One more than the biggest id that was ever used up to this version.
+     */
+    private final int idBound;
+
+    /**
+     * The number of vertices.
+     */
+    private final int numberOfVertices;
+
+    /**
+     * The number of edges, counted the same way as the graph counts them.
+     */
+    private final int numberOfEdges;
+
+    /**
+     * The number of open pins, plus one while this is the newest version. Zero
+     * means it was let go.
+     */
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    /**
+     * A compressed-sparse-row copy of this version, null until first asked for.
+     */
+    private volatile GraphSnapshot<T> snapshot;
+
+    /**
+     * Simple constructor. The arrays are shared with other versions and must not
+     * be changed from now on.
+     *
+     * @param number           the number of this version.
+     * @param graph            the graph it belongs to.
+     * @param neighborChunks   the neighbor ids by chunk.
+     * @param weightChunks     the edge weights by chunk.
+     * @param labelChunks      the labels by chunk.
+     * @param idBound          one more than the biggest id used.
+     * @param numberOfVertices the number of vertices.
+     * @param numberOfEdges    the number of edges.
+     */
+    GraphVersion(long number, VersionedGraph<T> graph, int[][][] neighborChunks, double[][][] weightChunks,
+            Object[][] labelChunks, int idBound, int numberOfVertices, int numberOfEdges) {
+        this.number = number;
+        this.graph = graph;
+        this.neighborChunks = neighborChunks;
+        this.weightChunks = weightChunks;
+        this.labelChunks = labelChunks;
+        this.idBound = idBound;
+        this.numberOfVertices = numberOfVertices;
+        this.numberOfEdges = numberOfEdges;
+    }
+
+    /**
+     * Takes one more reference to this version, unless it was already let go.
+     *
+     * @return true if it was taken, false if the version is gone.
+     */
+    boolean retain() {
+        while (true) {
+            int count = references.get();
+            if (count == 0) { // too late, it was let go
+                return false;
+            }
+            if (references.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives back a pin. Lets go of the chunks when it was the last reference.
+     */
+    public void close() {
+        int left = references.decrementAndGet();
+        if (left < 0) {
+            throw new IllegalStateException("version " + number + " was closed more often than it was pinned");
+        }
+        if (left == 0) { // nobody can read it anymore
+            neighborChunks = null;
+            weightChunks = null;
+            labelChunks = null;
+            snapshot = null;
+            graph.versionReclaimed(number);
+        }
+    }
+
+    /**
+     * Gets the number of this version. Later commits have bigger numbers.
+     *
+     * @return the version number.
+     */
+    public long getVersion() {
+        return number;
+    }
+
+    /**
+     * Gets the neighbor chunks. Must not be changed.
+     *
+     * @return the chunks.
+     */
+    int[][][] neighborChunks() {
+        return neighborChunks;
+    }
+
+    /**
+     * Gets the weight chunks. Must not be changed.
+     *
+     * @return the chunks.
+     */
+    double[][][] weightChunks() {
+        return weightChunks;
+    }
+
+    /**
+     * Gets the label chunks. Must not be changed.
+     *
+     * @return the chunks.
+     */
+    Object[][] labelChunks() {
+        return labelChunks;
+    }
+
+    /**
+     * Gets one more than the biggest id used.
+     *
+     * @return the id bound.
+     */
+    int idBound() {
+        return idBound;
+    }
+
+    /**
+     * Gets the id of a label.
+     *
+     * @param label the label.
+     * @return the id, or -1 if the label is not in this version.
+     */
+    int idOf(T label) {
+        if (labelChunks == null) {
+            throw new IllegalStateException("version " + number + " was closed");
+        }
+        int id = graph.idOf(label);
+        if (id == -1 || id >= idBound || labelOf(id) == null) { // added later, or removed
+            return -1;
+        }
+        return id;
+    }
+
+    /**
+     * Gets the label of an id.
+     *
+     * @param id the id.
+     * @return the label, null if the id is not in this version.
+     */
+    @SuppressWarnings("unchecked")
+    T labelOf(int id) {
+        Object[] chunk = labelChunks[id >>> CHUNK_BITS];
+        return (chunk == null) ? null : (T) chunk[id & (CHUNK - 1)];
+    }
+
+    /**
+     * Gets the neighbor ids of a vertex. Must not be changed.
+     *
+     * @param id the id.
+     * @return the neighbor ids.
+     */
+    int[] row(int id) {
+        int[][] chunk = neighborChunks[id >>> CHUNK_BITS];
+        int[] row = (chunk == null) ? null : chunk[id & (CHUNK - 1)];
+        return (row == null) ? NO_NEIGHBORS : row;
+    }
+
+    /**
+     * Gets the edge weights of a vertex, parallel to its row. Must not be changed.
+     *
+     * @param id the id.
+     * @return the weights.
+     */
+    double[] weightRow(int id) {
+        double[][] chunk = weightChunks[id >>> CHUNK_BITS];
+        double[] row = (chunk == null) ? null : chunk[id & (CHUNK - 1)];
+        return (row == null) ? NO_WEIGHTS : row;
+    }
+
+    /**
+     * Checks if a vertex is in this version.
+     *
+     * @param label the label of the vertex.
+     * @return true if it is, false otherwise.
+     */
+    public boolean contains(T label) {
+        return idOf(label) != -1;
+    }
+
+    /**
+     * This method gets the number of vertices in this version.
+     *
+     * @return the number of vertices.
+     */
+    public int getNumberOfVertices() {
+        return numberOfVertices;
+    }
+
+    /**
+     * This method gets the number of edges in this version, counted the same way
+     * as the graph counts them.
+     *
+     * @return the number of edges.
+     */
+    public int getNumberOfEdges() {
+        return numberOfEdges;
+    }
+
+    /**
+     * Gets the number of neighbors of a vertex.
+     *
+     * @param label the label of the vertex.
+     * @return the number of neighbors, 0 if the vertex does not exist.
+     */
+    public int getNumberOfNeighbors(T label) {
+        int id = idOf(label);
+        if (id == -1) {
+            return 0;
+        }
+        return row(id).length;
+    }
+
+    /**
+     * Gets the neighbors of a vertex in the order they were connected.
+     *
+     * @param label the label of the vertex.
+     * @return the list of neighbors, empty if the vertex does not exist.
+     */
+    public List<T> getNeighbors(T label) {
+        List<T> result = new ArrayList<>();
+        int id = idOf(label);
+        if (id == -1) {
+            return result;
+        }
+        for (int neighbor : row(id)) {
+            result.add(labelOf(neighbor));
+        }
+        return result;
+    }
+
+    /**
+     * Sees whether an undirected edge exists between two given vertices.
+     *
+     * @param begin where to start.
+     * @param end   where to end.
+     * @return true if it exists, false if not.
+     */
+    public boolean hasEdge(T begin, T end) {
+        int b = idOf(begin);
+        int e = idOf(end);
+        if (b == -1 || e == -1) {
+            return false;
+        }
+        if (row(e).length < row(b).length) { // scan the shorter row, the edge is stored on both sides
+            int temp = b;
+            b = e;
+            e = temp;
+        }
+        for (int neighbor : row(b)) {
+            if (neighbor == e) { // found it
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sees whether a weighted edge exists between two given vertices.
+     *
+     * @param begin      where to start.
+     * @param end        where to end.
+     * @param edgeWeight the weight of the edge.
+     * @return true if it exists, false if not.
+     */
+    public boolean hasEdge(T begin, T end, double edgeWeight) {
+        int b = idOf(begin);
+        int e = idOf(end);
+        if (b == -1 || e == -1) {
+            return false;
+        }
+        int[] neighbors = row(b);
+        double[] weights = weightRow(b);
+        for (int i = 0; i < neighbors.length; i++) {
+            if (neighbors[i] == e && weights[i] == edgeWeight) { // found it
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Performs a breadth- first traversal of this version.
+     *
+     * @param origin where to start.
+     * @return the queue that contains the result, empty if the origin does not
+     *         exist.
+     */
+    public Queue<T> getBreadthFirstTraversal(T origin) {
+        Queue<T> result = new ArrayDeque<>();
+        int start = idOf(origin);
+        if (start == -1) { // nothing to traverse
+            return result;
+        }
+
+        int[] queue = new int[idBound]; // every vertex is queued at most once
+        boolean[] visited = new boolean[idBound];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        visited[start] = true;
+        while (head < tail) {
+            int current = queue[head++];
+            result.add(labelOf(current));
+            for (int next : row(current)) {
+                if (visited[next] == false) { // not seen yet
+                    visited[next] = true;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Walks the version breadth-first, nearest first, one vertex at a time. Only
+     * as much of the version is explored as is asked for.
+     *
+     * @param origin where to start.
+     * @return the vertices in the order they are reached, none if the origin
+     *         does not exist.
+     */
+    public Iterator<T> breadthFirstIterator(T origin) {
+        int start = idOf(origin);
+        IntHashSet seen = new IntHashSet(); // grows with the traversal, not with the graph
+        return new Iterator<T>() {
+            private int[] queue = new int[16];
+            private int head = 0;
+            private int tail = 0;
+
+            {
+                if (start != -1) {
+                    queue[tail++] = start;
+                    seen.add(start);
+                }
+            }
+
+            public boolean hasNext() {
+                return head < tail;
+            }
+
+            public T next() {
+                if (head == tail) {
+                    throw new NoSuchElementException();
+                }
+                int current = queue[head++];
+                for (int next : row(current)) { // queue its neighbors now
+                    if (seen.add(next)) {
+                        if (tail == queue.length) {
+                            queue = Arrays.copyOf(queue, tail * 2);
+                        }
+                        queue[tail++] = next;
+                    }
+                }
+                return labelOf(current);
+            }
+        };
+    }
+
+    /**
+     * Get the shortest distance between the origin and destination.
+     *
+     * @param origin      where to start.
+     * @param destination where we want to go.
+     * @param path        filled with the vertices on the path, the origin on top.
+     * @return the number of edges on the shortest path. If a path does not exist,
+     *         it returns the maximum integer (to simulate infinity).
+     */
+    public int getShortestPath(T origin, T destination, Stack<T> path) {
+        int start = idOf(origin);
+        int goal = idOf(destination);
+        if (start == -1 || goal == -1) {
+            return Integer.MAX_VALUE;
+        }
+
+        int[] predecessor = new int[idBound];
+        int[] queue = new int[idBound];
+        Arrays.fill(predecessor, -2); // -2 means not seen yet
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        predecessor[start] = -1;
+        while (head < tail && predecessor[goal] == -2) { // stop as soon as we reach the goal
+            int current = queue[head++];
+            for (int next : row(current)) {
+                if (predecessor[next] == -2) {
+                    predecessor[next] = current;
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        if (predecessor[goal] == -2) { // never reached
+            return Integer.MAX_VALUE;
+        }
+        int length = 0;
+        for (int at = goal; at != -1; at = predecessor[at]) { // walk back to the origin
+            path.push(labelOf(at));
+            length++;
+        }
+        return length - 1; // edges, not vertices
+    }
+
+    /**
+     * Gets every vertex two edges away from the origin that is not the origin or
+     * one of its neighbors, in the order they are discovered.
+     *
+     * @param origin where to start.
+     * @return the list of vertices, empty if there are none or the origin does not
+     *         exist.
+     */
+    public List<T> getSecondNeighbors(T origin) {
+        List<T> result = new ArrayList<>();
+        int start = idOf(origin);
+        if (start == -1) {
+            return result;
+        }
+
+        boolean[] seen = new boolean[idBound];
+        seen[start] = true;
+        for (int friend : row(start)) { // the neighbors are not suggestions
+            seen[friend] = true;
+        }
+        for (int friend : row(start)) {
+            for (int candidate : row(friend)) {
+                if (seen[candidate] == false) { // no duplicates
+                    seen[candidate] = true;
+                    result.add(labelOf(candidate));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Copies this version into a compressed-sparse-row snapshot for the analytics
+     * that work on snapshots. The copy is made once and then reused.
+     *
+     * @return the snapshot.
+     */
+    public GraphSnapshot<T> snapshot() {
+        GraphSnapshot<T> result = snapshot;
+        if (result != null) {
+            return result;
+        }
+        if (labelChunks == null) {
+            throw new IllegalStateException("version " + number + " was closed");
+        }
+
+        Object[] labels = new Object[numberOfVertices];
+        HashMap<T, Integer> ids = new HashMap<>();
+        int[] offsets = new int[numberOfVertices + 1];
+        int[] snapshotId = new int[idBound]; // version id to snapshot id, so removed ids leave no holes
+        int next = 0;
+        for (int id = 0; id < idBound; id++) { // number the vertices and size the rows
+            T label = labelOf(id);
+            if (label != null) {
+                labels[next] = label;
+                ids.put(label, next);
+                snapshotId[id] = next;
+                offsets[next + 1] = offsets[next] + row(id).length;
+                next++;
+            }
+        }
+
+        int[] neighbors = new int[offsets[numberOfVertices]];
+        double[] weights = new double[neighbors.length];
+        int at = 0;
+        for (int id = 0; id < idBound; id++) { // same order as above
+            if (labelOf(id) != null) {
+                int[] row = row(id);
+                for (int i = 0; i < row.length; i++) {
+                    neighbors[at + i] = snapshotId[row[i]];
+                }
+                System.arraycopy(weightRow(id), 0, weights, at, row.length);
+                at += row.length;
+            }
+        }
+        result = new GraphSnapshot<>(labels, ids, offsets, neighbors, weights, numberOfEdges);
+        snapshot = result;
+        return result;
+    }
+
+}
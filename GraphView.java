@@ -0,0 +1,113 @@
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Stack;
+
+/**
+ * A graph frozen at one point in time that read queries can run against while
+ * the graph it came from keeps changing. GraphSnapshot and GraphVersion are
+ * both views.
+ *
+ * @param <T> our generic.
+ * @author Rahima Adnan
+ */
+public interface GraphView<T> {
+    /**
+     * Checks if a vertex was in the graph.
+     *
+     * @param label the label of the vertex.
+     * @return true if it was, false otherwise.
+     */
+    public boolean contains(T label);
+
+    /**
+     * This method gets the number of vertices in this view.
+     *
+     * @return the number of vertices.
+     */
+    public int getNumberOfVertices();
+
+    /**
+     * This method gets the number of edges in this view, counted the same way
+     * as the graph counts them.
+     *
+     * @return the number of edges.
+     */
+    public int getNumberOfEdges();
+
+    /**
+     * Gets the number of neighbors of a vertex.
+     *
+     * @param label the label of the vertex.
+     * @return the number of neighbors, 0 if the vertex does not exist.
+     */
+    public int getNumberOfNeighbors(T label);
+
+    /**
+     * Gets the neighbors of a vertex in the order they were connected.
+     *
+     * @param label the label of the vertex.
+     * @return the list of neighbors, empty if the vertex does not exist.
+     */
+    public List<T> getNeighbors(T label);
+
+    /**
+     * Sees whether an undirected edge exists between two given vertices.
+     *
+     * @param begin where to start.
+     * @param end   where to end.
+     * @return true if it exists, false if not.
+     */
+    public boolean hasEdge(T begin, T end);
+
+    /**
+     * Sees whether a weighted edge exists between two given vertices.
+     *
+     * @param begin      where to start.
+     * @param end        where to end.
+     * @param edgeWeight the weight of the edge.
+     * @return true if it exists, false if not.
+     */
+    public boolean hasEdge(T begin, T end, double edgeWeight);
+
+    /**
+     * Performs a breadth- first traversal of the view.
+     *
+     * @param origin where to start.
+     * @return the queue that contains the result, empty if the origin does not
+     *         exist.
+     */
+    public Queue<T> getBreadthFirstTraversal(T origin);
+
+    /**
+     * Walks the view breadth-first, nearest first, one vertex at a time. Only as
+     * much of the view is explored as is asked for, so taking the first few
+     * vertices is cheap.
+     *
+     * @param origin where to start.
+     * @return the vertices in the order they are reached, none if the origin
+     *         does not exist.
+     */
+    public Iterator<T> breadthFirstIterator(T origin);
+
+    /**
+     * Get the shortest distance between the origin and destination.
+     *
+     * @param origin      where to start.
+     * @param destination where we want to go.
+     * @param path        filled with the vertices on the path, the origin on top.
+     * @return the number of edges on the shortest path. If a path does not exist,
+     *         it returns the maximum integer (to simulate infinity).
+     */
+    public int getShortestPath(T origin, T destination, Stack<T> path);
+
+    /**
+     * Gets every vertex two edges away from the origin that is not the origin or
+     * one of its neighbors, in the order they are discovered.
+     *
+     * @param origin where to start.
+     * @return the list of vertices, empty if there are none or the origin does not
+     *         exist.
+     */
+    public List<T> getSecondNeighbors(T origin);
+}
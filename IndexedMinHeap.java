@@ -0,0 +1,186 @@
+import java.util.Arrays;
+
+/**
+ * A binary min heap of vertex ids ordered by a double key, with decrease-key.
+ * Each id knows its position in the heap, so lowering a key moves the entry
+ * up instead of inserting a second copy. The arrays are indexed by vertex id
+ * and reused by every query; a query only has to call begin.
+ *
+ * @author Rahima Adnan
+ */
+class IndexedMinHeap {
+    /**
+     * The ids in heap order. Only the first size slots are used.
+     */
+    private int[] heap;
+
+    /**
+     * How many ids are in the heap.
+     */
+    private int size;
+
+    /**
+     * Where each id sits in heap, or -1 once it was removed.
+     */
+    private int[] positions;
+
+    /**
+     * The key of each id.
+     */
+    private double[] keys;
+
+    /**
+     * The query in which each id was last added. Slots from older queries are
+     * treated as empty, so nothing has to be cleared between queries.
+     */
+    private int[] stamps;
+
+    /**
+     * The current query.
+     */
+    private int epoch;
+
+    /**
+     * Simple constructor.
+     */
+    IndexedMinHeap() {
+        heap = new int[0];
+        positions = new int[0];
+        keys = new double[0];
+        stamps = new int[0];
+        size = 0;
+        epoch = 0;
+    }
+
+    /**
+     * Starts a new query with an empty heap.
+     *
+     * @param capacity every vertex id is smaller than this.
+     */
+    void begin(int capacity) {
+        if (stamps.length < capacity) { // the graph grew
+            int bigger = Math.max(capacity, stamps.length * 2);
+            heap = new int[bigger];
+            positions = new int[bigger];
+            keys = new double[bigger];
+            stamps = Arrays.copyOf(stamps, bigger);
+        }
+        if (epoch == Integer.MAX_VALUE) { // ran out of epochs, start over
+            Arrays.fill(stamps, 0);
+            epoch = 0;
+        }
+        epoch++;
+        size = 0;
+    }
+
+    /**
+     * Check if empty.
+     *
+     * @return true if the heap is empty, false otherwise.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the key of an id added during this query.
+     *
+     * @param id the id.
+     * @return the key.
+     */
+    double keyOf(int id) {
+        return keys[id];
+    }
+
+    /**
+     * Adds an id, or lowers its key if it is already in the heap with a higher
+     * one. An id that was already removed during this query is left alone.
+     *
+     * @param id  the id.
+     * @param key the new key.
+     * @return true if the heap changed, false otherwise.
+     */
+    boolean offer(int id, double key) {
+        if (stamps[id] != epoch) { // first time this query
+            stamps[id] = epoch;
+            keys[id] = key;
+            heap[size] = id;
+            positions[id] = size;
+            size++;
+            siftUp(size - 1);
+            return true;
+        }
+        if (positions[id] == -1 || key >= keys[id]) { // already removed or not better
+            return false;
+        }
+        keys[id] = key;
+        siftUp(positions[id]);
+        return true;
+    }
+
+    /**
+     * Removes the id with the smallest key.
+     *
+     * @return the id.
+     */
+    int poll() {
+        int min = heap[0];
+        positions[min] = -1;
+        size--;
+        if (size > 0) { // move the last one to the top and let it sink
+            heap[0] = heap[size];
+            positions[heap[0]] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    /**
+     * Moves an entry up until its parent is not bigger.
+     *
+     * @param at the position of the entry.
+     */
+    private void siftUp(int at) {
+        int id = heap[at];
+        double key = keys[id];
+        while (at > 0) {
+            int parent = (at - 1) >>> 1;
+            if (keys[heap[parent]] <= key) {
+                break;
+            }
+            heap[at] = heap[parent];
+            positions[heap[at]] = at;
+            at = parent;
+        }
+        heap[at] = id;
+        positions[id] = at;
+    }
+
+    /**
+     * Moves an entry down until no child is smaller.
+     *
+     * @param at the position of the entry.
+     */
+    private void siftDown(int at) {
+        int id = heap[at];
+        double key = keys[id];
+        while (true) {
+            int child = 2 * at + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]]) { // the smaller child
+                child++;
+            }
+            if (keys[heap[child]] >= key) {
+                break;
+            }
+            heap[at] = heap[child];
+            positions[heap[at]] = at;
+            at = child;
+        }
+        heap[at] = id;
+        positions[id] = at;
+    }
+
+}
@@ -0,0 +1,105 @@
+/**
+ * A set of non-negative ints with open addressing and linear probing.
+ * It grows with what is put in it, so a search that only touches a few
+ * vertices only pays for those few instead of an array the size of the graph.
+ *
+ * @author Rahima Adnan
+ */
+class IntHashSet {
+    /**
+     * The slots, each holding a value plus one. 0 means empty.
+     */
+    private int[] slots;
+
+    /**
+     * How many values are in the set.
+     */
+    private int size;
+
+    /**
+     * Simple constructor.
+     */
+    IntHashSet() {
+        slots = new int[16];
+        size = 0;
+    }
+
+    /**
+     * Gets the number of values.
+     *
+     * @return the size.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Checks if a value is in the set.
+     *
+     * @param value the value.
+     * @return true or false.
+     */
+    boolean contains(int value) {
+        int mask = slots.length - 1;
+        for (int slot = slotOf(value, mask); slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (slots[slot] == value + 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds a value.
+     *
+     * @param value the value, must not be negative.
+     * @return true if it was added, false if it was already there.
+     */
+    boolean add(int value) {
+        int mask = slots.length - 1;
+        int slot = slotOf(value, mask);
+        while (slots[slot] != 0) {
+            if (slots[slot] == value + 1) { // no duplicates
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = value + 1;
+        size++;
+        if (size * 2 > slots.length) { // keep it at most half full
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * Doubles the number of slots and puts every value back.
+     */
+    private void grow() {
+        int[] old = slots;
+        slots = new int[old.length * 2];
+        int mask = slots.length - 1;
+        for (int stored : old) {
+            if (stored != 0) {
+                int slot = slotOf(stored - 1, mask);
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = stored;
+            }
+        }
+    }
+
+    /**
+     * Picks the first slot to look at for a value.
+     *
+     * @param value the value.
+     * @param mask  the number of slots minus one.
+     * @return the slot.
+     */
+    private static int slotOf(int value, int mask) {
+        int h = value * 0x9E3779B9; // spread consecutive values apart
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+}
@@ -0,0 +1,190 @@
+/**
+ * A map from non-negative int keys to int values with open addressing and
+ * linear probing, so counting visits does not box anything.
+ *
+ * @author Rahima Adnan
+ */
+class IntIntHashMap {
+    /**
+     * The key in each slot plus one. 0 means empty.
+     */
+    private int[] keys;
+
+    /**
+     * The value in each slot.
+     */
+    private int[] values;
+
+    /**
+     * How many keys are in the map.
+     */
+    private int size;
+
+    /**
+     * Simple constructor.
+     */
+    IntIntHashMap() {
+        keys = new int[16];
+        values = new int[16];
+        size = 0;
+    }
+
+    /**
+     * Gets the number of keys.
+     *
+     * @return the size.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets the value of a key.
+     *
+     * @param key the key.
+     * @return the value, 0 if the key is not in the map.
+     */
+    int get(int key) {
+        int mask = keys.length - 1;
+        for (int slot = slotOf(key, mask); keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key + 1) {
+                return values[slot];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Adds an amount to the value of a key, starting from 0 for a new key.
+     *
+     * @param key    the key, must not be negative.
+     * @param amount how much to add.
+     * @return the new value.
+     */
+    int addTo(int key, int amount) {
+        int mask = keys.length - 1;
+        int slot = slotOf(key, mask);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key + 1) { // already here
+                values[slot] += amount;
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key + 1;
+        values[slot] = amount;
+        size++;
+        if (size * 2 > keys.length) { // keep it at most half full
+            grow();
+        }
+        return amount;
+    }
+
+    /**
+     * Removes a key. Later keys of the same run are shifted back, so lookups
+     * never need markers for removed keys.
+     *
+     * @param key the key.
+     * @return the value it had, 0 if it was not in the map.
+     */
+    int remove(int key) {
+        int mask = keys.length - 1;
+        int slot = slotOf(key, mask);
+        while (keys[slot] != key + 1) {
+            if (keys[slot] == 0) { // not here
+                return 0;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int removed = values[slot];
+        size--;
+
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+            int home = slotOf(keys[next] - 1, mask);
+            if (((next - home) & mask) >= ((next - hole) & mask)) { // it may move back into the hole
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        keys[hole] = 0;
+        return removed;
+    }
+
+    /**
+     * Adds every entry of another map to this one.
+     *
+     * @param other the other map.
+     */
+    void addAll(IntIntHashMap other) {
+        for (int slot = 0; slot < other.keys.length; slot++) {
+            if (other.keys[slot] != 0) {
+                addTo(other.keys[slot] - 1, other.values[slot]);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of slots, to loop over the entries with keyAt and valueAt.
+     *
+     * @return the number of slots.
+     */
+    int slots() {
+        return keys.length;
+    }
+
+    /**
+     * Gets the key in a slot.
+     *
+     * @param slot the slot.
+     * @return the key, -1 if the slot is empty.
+     */
+    int keyAt(int slot) {
+        return keys[slot] - 1;
+    }
+
+    /**
+     * Gets the value in a slot.
+     *
+     * @param slot the slot.
+     * @return the value.
+     */
+    int valueAt(int slot) {
+        return values[slot];
+    }
+
+    /**
+     * Doubles the number of slots and puts every entry back.
+     */
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slotOf(oldKeys[i] - 1, mask);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Picks the first slot to look at for a key.
+     *
+     * @param key  the key.
+     * @param mask the number of slots minus one.
+     * @return the slot.
+     */
+    private static int slotOf(int key, int mask) {
+        int h = key * 0x9E3779B9; // spread consecutive keys apart
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+}
@@ -0,0 +1,127 @@
+/**
+ * Intersections of sorted arrays of distinct ints, such as sorted neighbor ids.
+ * When the two arrays have similar lengths they are merged in one pass. When
+ * one is much longer, like a very popular user against a regular one, every id
+ * of the short array is searched for in the long one by galloping (doubling
+ * steps, then a binary search), which skips most of the long array.
+ *
+ * @author Rahima Adnan
+ */
+final class IntSets {
+    /**
+     * Above this length ratio galloping is used instead of merging.
+     */
+    static final int GALLOP_RATIO = 32;
+
+    /**
+     * No instances, only static methods.
+     */
+    private IntSets() {
+    }
+
+    /**
+     * Finds the ids in both arrays.
+     *
+     * @param a   the first sorted array.
+     * @param b   the second sorted array.
+     * @param out where the shared ids go, in increasing order. Must be at least
+     *            as long as the shorter array, or null to only count them.
+     * @return the number of shared ids.
+     */
+    static int intersect(int[] a, int[] b, int[] out) {
+        if (a.length > b.length) { // a is the short one
+            int[] temp = a;
+            a = b;
+            b = temp;
+        }
+        if (a.length == 0) {
+            return 0;
+        }
+        if (b.length / a.length >= GALLOP_RATIO) {
+            return gallop(a, b, out);
+        }
+        return merge(a, b, out);
+    }
+
+    /**
+     * Counts the ids in both arrays.
+     *
+     * @param a the first sorted array.
+     * @param b the second sorted array.
+     * @return the number of shared ids.
+     */
+    static int intersectionSize(int[] a, int[] b) {
+        return intersect(a, b, null);
+    }
+
+    /**
+     * Intersects by walking both arrays at the same time.
+     *
+     * @param a   the first sorted array.
+     * @param b   the second sorted array.
+     * @param out where the shared ids go, or null.
+     * @return the number of shared ids.
+     */
+    private static int merge(int[] a, int[] b, int[] out) {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else { // shared
+                if (out != null) {
+                    out[count] = a[i];
+                }
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Intersects by searching for every id of the short array in the long one.
+     * The ids are increasing, so every search starts where the last one ended.
+     *
+     * @param small the short sorted array.
+     * @param large the long sorted array.
+     * @param out   where the shared ids go, or null.
+     * @return the number of shared ids.
+     */
+    private static int gallop(int[] small, int[] large, int[] out) {
+        int count = 0;
+        int low = 0;
+        for (int i = 0; i < small.length && low < large.length; i++) {
+            int target = small[i];
+            int step = 1;
+            int high = low;
+            while (high < large.length && large[high] < target) { // double until we pass it
+                low = high + 1;
+                high = low + step;
+                step *= 2;
+            }
+            high = Math.min(high, large.length - 1);
+            while (low < high) { // the first one that is not smaller is in [low, high]
+                int middle = (low + high) >>> 1;
+                if (large[middle] < target) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            if (low < large.length && large[low] == target) { // shared
+                if (out != null) {
+                    out[count] = target;
+                }
+                count++;
+                low++;
+            }
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,339 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Finds communities in a graph snapshot by asynchronous label propagation.
+ * Every vertex starts with a label of its own and, round after round, takes
+ * the label most of its neighbors have, so labels spread through densely
+ * connected groups and stop at the sparse edges between them. Each round visits
+ * the vertices in a new random order, split into chunks that a ForkJoinPool
+ * runs in parallel. Labels are updated in place, so a vertex sees the new labels
+ * of neighbors handled before it in the same round. The result is a community
+ * number for every vertex, numbered from 0 with no gaps, and the size of every
+ * community.
+ *
+ * @param <T> our generic.
+ * @author Rahima Adnan
+ */
+public class LabelPropagation<T> {
+    /**
+     * How many vertices a single task handles before it splits.
+     */
+    private static final int CHUNK = 2048;
+
+    /**
+     * The graph to look at.
+     */
+    private final GraphSnapshot<T> snapshot;
+
+    /**
+     * The pool the rounds run in.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * The label counts, taken by a task for the vertices it handles and given
+     * back after, so they go away with this object instead of staying with the
+     * threads of the pool.
+     */
+    private final ScratchPool<SparseCounter> counters = new ScratchPool<>(SparseCounter::new);
+
+    /**
+     * The community of every vertex by snapshot id, null until detect is called.
+     */
+    private int[] assignment;
+
+    /**
+     * The number of vertices in every community.
+     */
+    private int[] sizes;
+
+    /**
+     * How many rounds the last detect ran.
+     */
+    private int rounds;
+
+    /**
+     * Constructor that uses the common pool.
+     *
+     * @param snapshot the graph to look at.
+     */
+    public LabelPropagation(GraphSnapshot<T> snapshot) {
+        this(snapshot, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Simple constructor.
+     *
+     * @param snapshot the graph to look at.
+     * @param pool     the pool to run in.
+     */
+    public LabelPropagation(GraphSnapshot<T> snapshot, ForkJoinPool pool) {
+        this.snapshot = snapshot;
+        this.pool = pool;
+    }
+
+    /**
+     * Runs rounds until fewer than the given fraction of the vertices change
+     * their label in a round, or maxRounds were run.
+     *
+     * @param changedFraction stop when fewer labels than this share of the
+     *                        vertices change, for example 0.001.
+     * @param maxRounds       the most rounds to run.
+     * @return the number of communities found.
+     */
+    public synchronized int detect(double changedFraction, int maxRounds) {
+        int size = snapshot.getNumberOfVertices();
+        int[] labels = new int[size];
+        int[] order = new int[size];
+        for (int id = 0; id < size; id++) {
+            labels[id] = id;
+            order[id] = id;
+        }
+
+        SplittableRandom random = new SplittableRandom();
+        rounds = 0;
+        while (rounds < maxRounds) {
+            for (int i = size - 1; i > 0; i--) { // a new random order every round
+                int j = random.nextInt(i + 1);
+                int temp = order[i];
+                order[i] = order[j];
+                order[j] = temp;
+            }
+            long changed = pool.invoke(new Round(0, size, order, labels, random.nextLong()));
+            rounds++;
+            if (changed < changedFraction * size) {
+                break;
+            }
+        }
+
+        // number the labels that are left from 0
+        int[] numbers = new int[size];
+        Arrays.fill(numbers, -1);
+        int count = 0;
+        for (int id = 0; id < size; id++) {
+            if (numbers[labels[id]] == -1) {
+                numbers[labels[id]] = count++;
+            }
+        }
+        int[] result = new int[size];
+        int[] counts = new int[count];
+        for (int id = 0; id < size; id++) {
+            result[id] = numbers[labels[id]];
+            counts[result[id]]++;
+        }
+        assignment = result;
+        sizes = counts;
+        return count;
+    }
+
+    /**
+     * Gets the snapshot this works on.
+     *
+     * @return the snapshot.
+     */
+    public GraphSnapshot<T> getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Gets how many rounds the last detect ran.
+     *
+     * @return the number of rounds.
+     */
+    public int getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Gets the community of every vertex. Must not be changed.
+     *
+     * @return the community numbers by snapshot id, null before detect.
+     */
+    public int[] getAssignment() {
+        return assignment;
+    }
+
+    /**
+     * Gets the number of vertices in every community. Must not be changed.
+     *
+     * @return the sizes by community number, null before detect.
+     */
+    public int[] getCommunitySizes() {
+        return sizes;
+    }
+
+    /**
+     * Gets the community of a vertex.
+     *
+     * @param label the vertex.
+     * @return the community number, -1 if the vertex does not exist or detect was
+     *         not called.
+     */
+    public int communityOf(T label) {
+        int id = snapshot.idOf(label);
+        if (id == -1 || assignment == null) {
+            return -1;
+        }
+        return assignment[id];
+    }
+
+    // INNER CLASS BELOW
+    // ___________________________________________________________________________________
+    /**
+     * Updates the labels of a range of the shuffled vertices.
+     */
+    @SuppressWarnings("serial")
+    private class Round extends RecursiveTask<Long> {
+        /**
+         * The first position in the order.
+         */
+        private final int low;
+
+        /**
+         * One past the last position.
+         */
+        private final int high;
+
+        /**
+         * The vertices in the order of this round.
+         */
+        private final int[] order;
+
+        /**
+         * The label of every vertex, shared by every task.
+         */
+        private final int[] labels;
+
+        /**
+         * The seed for breaking ties in this range.
+         */
+        private final long seed;
+
+        /**
+         * Simple constructor.
+         *
+         * @param low    the first position.
+         * @param high   one past the last position.
+         * @param order  the vertices in the order of this round.
+         * @param labels the label of every vertex.
+         * @param seed   the seed for breaking ties.
+         */
+        private Round(int low, int high, int[] order, int[] labels, long seed) {
+            this.low = low;
+            this.high = high;
+            this.order = order;
+            this.labels = labels;
+            this.seed = seed;
+        }
+
+        /**
+         * Splits in half until the range is small, then updates.
+         *
+         * @return how many labels changed.
+         */
+        protected Long compute() {
+            if (high - low > CHUNK) {
+                int middle = (low + high) >>> 1;
+                Round right = new Round(middle, high, order, labels, seed * 31 + 17);
+                right.fork();
+                long left = new Round(low, middle, order, labels, seed * 31 + 11).compute();
+                return left + right.join();
+            }
+
+            int[] offsets = snapshot.offsets();
+            int[] neighbors = snapshot.neighbors();
+            SparseCounter counter = counters.take();
+            SplittableRandom random = new SplittableRandom(seed);
+            long changed = 0;
+            try {
+                for (int i = low; i < high; i++) {
+                    int v = order[i];
+                    if (offsets[v] == offsets[v + 1]) { // alone, keeps its own label
+                        continue;
+                    }
+                    counter.begin(labels.length);
+                    for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                        counter.add(labels[neighbors[e]], 1);
+                    }
+
+                    int best = -1;
+                    int bestCount = 0;
+                    int ties = 0;
+                    for (int t = 0; t < counter.touchedCount(); t++) {
+                        int label = counter.touchedAt(t);
+                        int count = counter.get(label);
+                        if (count > bestCount) {
+                            best = label;
+                            bestCount = count;
+                            ties = 1;
+                        } else if (count == bestCount && random.nextInt(++ties) == 0) { // a random one of the ties
+                            best = label;
+                        }
+                    }
+                    int current = labels[v];
+                    if (counter.get(current) == bestCount) { // keep the current label on a tie
+                        best = current;
+                    }
+                    if (best != current) {
+                        labels[v] = best;
+                        changed++;
+                    }
+                }
+            } finally {
+                counters.give(counter);
+            }
+            return changed;
+        }
+    }
+
+    /**
+     * Just for checking. Builds groups of friends with a few friendships between
+     * groups, and times how long finding them takes and how many are found.
+     *
+     * @param args optional number of groups and group size.
+     */
+    public static void main(String[] args) {
+        int groups = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int groupSize = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int vertices = groups * groupSize;
+        Graph<Integer> graph = new Graph<>();
+        for (int i = 0; i < vertices; i++) {
+            graph.addVertex(i);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < vertices; i++) {
+            int first = (i / groupSize) * groupSize;
+            for (int e = 0; e < 5; e++) { // friends inside the group
+                graph.addEdgeById(graph.idOf(i), graph.idOf(first + random.nextInt(groupSize)));
+            }
+            if (random.nextInt(10) == 0) { // now and then one outside
+                graph.addEdgeById(graph.idOf(i), graph.idOf(random.nextInt(vertices)));
+            }
+        }
+        GraphSnapshot<Integer> snapshot = graph.snapshot();
+        System.out.println("vertices " + vertices + ", edges " + graph.getNumberOfEdges() / 2);
+
+        LabelPropagation<Integer> detector = new LabelPropagation<>(snapshot);
+        long begin = System.nanoTime();
+        int found = detector.detect(0.001, 50);
+        System.out.printf("%d communities (planted %d) in %d rounds, %.1f ms%n", found, groups,
+                detector.getRounds(), (System.nanoTime() - begin) / 1e6);
+
+        int split = 0; // groups whose members did not all end up together
+        for (int g = 0; g < groups; g++) {
+            int community = detector.communityOf(g * groupSize);
+            for (int i = g * groupSize; i < (g + 1) * groupSize; i++) {
+                if (detector.communityOf(i) != community) {
+                    split++;
+                    break;
+                }
+            }
+        }
+        System.out.println("groups split: " + split);
+    }
+
+}
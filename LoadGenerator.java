@@ -0,0 +1,110 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Just for checking. Starts a MasonConnectServer on a free port with a network
+ * of random users, then keeps up to the given number of requests open against
+ * it at once with the JDK's asynchronous HTTP client, and reports the
+ * throughput and the latency percentiles. Most requests are friendship lookups,
+ * the rest are suggestions, distances, short traversals and friendship changes.
+ *
+ * @author Rahima Adnan
+ */
+public class LoadGenerator {
+    /**
+     * Runs the load.
+     *
+     * @param args optional number of concurrent connections, requests and users.
+     * @throws IOException          if the server can not start.
+     * @throws InterruptedException if interrupted while waiting for answers.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int users = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+
+        MasonConnect network = new MasonConnect(64);
+        network.enableVersions();
+        MasonConnectServer server = new MasonConnectServer(network, 0);
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < users; i++) {
+            server.addUser("user" + i, "status " + i);
+        }
+        for (int i = 0; i < users * 10; i++) {
+            network.createFriendship(server.profileOf("user" + random.nextInt(users)),
+                    server.profileOf("user" + random.nextInt(users)));
+        }
+        server.start();
+        String base = "http://localhost:" + server.getPort();
+        System.out.println(users + " users, " + connections + " connections, " + requests + " requests");
+
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .executor(MasonConnectServer.newExecutor()).connectTimeout(Duration.ofSeconds(30)).build();
+        Semaphore open = new Semaphore(connections); // at most this many requests at once
+        CountDownLatch finished = new CountDownLatch(requests);
+        long[] latencies = new long[requests];
+        AtomicInteger failures = new AtomicInteger();
+
+        long begin = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            open.acquire();
+            int request = i;
+            URI uri = URI.create(base + pick(random, users));
+            long sent = System.nanoTime();
+            client.sendAsync(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        latencies[request] = System.nanoTime() - sent;
+                        if (error != null || response.statusCode() != 200) {
+                            failures.incrementAndGet();
+                        }
+                        open.release();
+                        finished.countDown();
+                    });
+        }
+        finished.await();
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        server.stop(0);
+
+        Arrays.sort(latencies);
+        System.out.printf("%.0f requests/s, %d failed%n", requests / seconds, failures.get());
+        System.out.printf("latency p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                latencies[requests / 2] / 1e6, latencies[(int) (requests * 0.9)] / 1e6,
+                latencies[(int) (requests * 0.99)] / 1e6, latencies[requests - 1] / 1e6);
+        System.exit(0); // the client keeps its connections open otherwise
+    }
+
+    /**
+     * Picks the path and query of a random request.
+     *
+     * @param random where the randomness comes from.
+     * @param users  how many users there are.
+     * @return the path and query.
+     */
+    private static String pick(SplittableRandom random, int users) {
+        String a = "user" + random.nextInt(users);
+        String b = "user" + random.nextInt(users);
+        int choice = random.nextInt(100);
+        if (choice < 50) {
+            return "/friendships/has?a=" + a + "&b=" + b;
+        } else if (choice < 70) {
+            return "/suggestions?user=" + a + "&k=10";
+        } else if (choice < 85) {
+            return "/distance?a=" + a + "&b=" + b;
+        } else if (choice < 90) {
+            return "/traverse?user=" + a + "&limit=100";
+        } else if (choice < 97) {
+            return "/friendships/create?a=" + a + "&b=" + b;
+        }
+        return "/friendships/remove?a=" + a + "&b=" + b;
+    }
+
+}
@@ -1,31 +1,139 @@
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Iterator;
 import java.util.Queue;
 import java.util.LinkedList;
 import java.sql.Array;
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Stack;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
 
 /**
  * Is a graph of profiles that are connected together to create the social
  * network of users.
  * Each user is represented by a profile object.
+ * <p>
+ * Made with MasonConnect(stripes) it can be used by many threads at once. A
+ * friendship change locks only the stripes of its two users, lower stripe
+ * first, so changes between different users run side by side. Adding or
+ * removing a user locks the whole network, and so does a friendship change
+ * while the suggestion or similarity index is enabled, as those update other
+ * users too. Queries that look at many users share the network with each other
+ * but wait for changes; hasFriendship and exists read without locking and only
+ * lock when a change got in the way.
+ * <p>
+ * The users are kept in a Graph unless another graph is given, such as a
+ * ShardedGraph that splits them over several shards. On another graph the
+ * queries are answered by asking the graph about the few users they involve,
+ * and the features that would need the whole network on one heap throw
+ * UnsupportedOperationException instead of copying it there.
  * 
  * @author Rahima Adnan
  */
 public class MasonConnect {
     /**
-     * A graph of profiles.
+     * A graph of profiles, null when made on another kind of graph.
      */
     private Graph<Profile> newGraph; // graph of profiles
 
+    /**
+     * The graph the users and friendships are kept in, newGraph itself unless made
+     * on another kind of graph.
+     */
+    private GraphInterface<Profile> graph;
+
+    /**
+     * The precomputed friend suggestions, null until enableSuggestionIndex is
+     * called.
+     */
+    private SuggestionIndex<Profile> suggestions;
+
+    /**
+     * The index of users with similar friend lists, null until
+     * enableSimilarityIndex is called.
+     */
+    private MinHashIndex<Profile> similarity;
+
+    /**
+     * The triangle counts of the last snapshot, null until first needed.
+     */
+    private TriangleCounter<Profile> triangles;
+
+    /**
+     * The communities of the last snapshot, null until first needed.
+     */
+    private LabelPropagation<Profile> communities;
+
+    /**
+     * Every version of the network since enableVersions was called, null until
+     * then.
+     */
+    private volatile VersionedGraph<Profile> versions;
+
+    /**
+     * The lock of the whole network, null unless made for many threads.
+     */
+    private StampedLock network;
+
+    /**
+     * The locks of the users by vertex id, null unless made for many threads.
+     */
+    private StripedLocks stripes;
+
     /**
      * Initializes the social networking app.
      */
     public MasonConnect() {
-        newGraph = new Graph<>(); // intalize
+        this(new Graph<>()); // intalize
+    }
+
+    /**
+     * Initializes the social networking app on any graph, for example a
+     * ShardedGraph. Users, friendships, traversals, distances, mutual friends,
+     * friend suggestions, component sizes and the friend counts work on every
+     * graph. The indexes, snapshots, versions, weighted distances, random walks,
+     * component numbers and the analytics need the whole network in a Graph and
+     * throw UnsupportedOperationException otherwise.
+     * 
+     * @param graph the graph to keep the users in, empty.
+     */
+    public MasonConnect(GraphInterface<Profile> graph) {
+        this.graph = graph;
+        if (graph instanceof Graph) {
+            newGraph = (Graph<Profile>) graph;
+        }
+    }
+
+    /**
+     * Initializes the social networking app so that many threads can use it at
+     * once.
+     * 
+     * @param stripes how many locks to share among the users, more means less
+     *                waiting, for example 4 per thread.
+     */
+    public MasonConnect(int stripes) {
+        this(new Graph<>(), stripes);
+    }
+
+    /**
+     * Initializes the social networking app on any graph so that many threads can
+     * use it at once. The stripes need the ids of a Graph, so on another graph
+     * every friendship change locks the whole network.
+     * 
+     * @param graph   the graph to keep the users in, empty.
+     * @param stripes how many locks to share among the users.
+     */
+    public MasonConnect(GraphInterface<Profile> graph, int stripes) {
+        this(graph);
+        network = new StampedLock();
+        this.stripes = new StripedLocks(stripes);
     }
 
     /**
@@ -34,23 +142,49 @@ public class MasonConnect {
      * @param p is the user
      */
     public void addUser(Profile p) {
-        newGraph.addVertex(p); // simply add
+        exclusive(() -> {
+            if (graph.addVertex(p) == false) { // simply add
+                return null;
+            }
+            if (suggestions != null) {
+                suggestions.vertexAdded(newGraph.idOf(p));
+            }
+            if (versions != null) {
+                versions.addVertex(p);
+            }
+            return null;
+        });
     }
 
     /**
-     * Removes an existing user from the social network.
+     * Removes an existing user from the social network, and from the friend
+     * lists of its friends.
      * 
      * @param p the user you want to remove.
      * @return the user you removed. If the user does not exist, it returns null
      */
     public Profile removeUser(Profile p) {
+        return exclusive(() -> {
+            if (isUser(p) == false) { // this person does not exists
+                return null;
+            }
 
-        if (exists(p) == false) { // this person does not exists
-            return null;
-        }
-
-        newGraph.removeVertex(p);
-        return p;
+            if (suggestions != null) { // while the friendships are still there
+                suggestions.vertexRemoving(newGraph.idOf(p));
+            }
+            if (similarity != null) {
+                similarity.vertexRemoving(newGraph.idOf(p));
+            }
+            for (Profile friend : new ArrayList<>(p.getFriendProfiles())) { // a copy, unFriend changes the list
+                friend.unFriend(p);
+                p.unFriend(friend);
+            }
+            graph.removeVertex(p);
+            if (versions != null) {
+                versions.removeVertex(p);
+            }
+            return p;
+        });
     }
 
     /**
@@ -62,20 +196,41 @@ public class MasonConnect {
      *         otherwise.
      */
     public boolean createFriendship(Profile a, Profile b) {
+        return createFriendship(a, b, 0); // an unweighted friendship has weight 0
+    }
 
-        if(exists(a) == false || exists(b) == false || a == null || b == null){ // check if the user exists or is null 
-            return false;
-        }
-       
-        if (hasFriendship(a, b) == true) { // check if the freindship already exists
-            return false;
+    /**
+     * Creates a friendship between two users with a weight. A lower weight means a
+     * closer tie, see weightedFriendshipDistance.
+     * 
+     * @param a      the first user.
+     * @param b      the second user.
+     * @param weight how far apart the two users are, must not be negative.
+     * @return If the friendship is created successfully, it returns true, false
+     *         otherwise.
+     * @throws IllegalArgumentException if the weight is negative or not a number,
+     *                                  which would break weightedFriendshipDistance.
+     */
+    public boolean createFriendship(Profile a, Profile b, double weight) {
+        if ((weight >= 0) == false) { // also catches NaN
+            throw new IllegalArgumentException("the weight must not be negative: " + weight);
         }
+        return changeFriendship(a, b, () -> {
+            if (a == null || b == null || isUser(a) == false || isUser(b) == false) { // check if the user exists or is null
+                return false;
+            }
 
-        
+            if (areFriends(a, b) == true) { // check if the freindship already exists
+                return false;
+            }
 
-        a.addFriend(b);
-        b.addFriend(a);
-        return newGraph.addEdge(a, b);
+            boolean added = graph.addEdge(a, b, weight); // refuses a friendship with yourself
+            if (added) {
+                a.addFriend(b);
+                b.addFriend(a);
+            }
+            return friendshipAdded(a, b, weight, added);
+        });
     }
 
     /**
@@ -89,14 +244,215 @@ public class MasonConnect {
      */
     public boolean removeFriendship(Profile a, Profile b) {
         // System.out.println("this profile a " + a + "this is profile b " + b);
+        return changeFriendship(a, b, () -> {
+            if (areFriends(a, b) == false) { // check if they are friends in the in the first place
+                return false;
+            }
+
+            a.unFriend(b);
+            b.unFriend(a);
+            if (graph.removeEdge(a, b) == false) {
+                return false;
+            }
+            if (suggestions != null) {
+                suggestions.edgeRemoved(newGraph.idOf(a), newGraph.idOf(b));
+            }
+            if (similarity != null) {
+                similarity.edgeRemoved(newGraph.idOf(a), newGraph.idOf(b));
+            }
+            if (versions != null) {
+                versions.removeEdge(a, b);
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Tells the indexes and the versions about a new friendship.
+     * 
+     * @param a      the first user.
+     * @param b      the second user.
+     * @param weight the weight of the friendship.
+     * @param added  whether the friendship was created.
+     * @return added.
+     */
+    private boolean friendshipAdded(Profile a, Profile b, double weight, boolean added) {
+        if (added && suggestions != null) {
+            suggestions.edgeAdded(newGraph.idOf(a), newGraph.idOf(b));
+        }
+        if (added && similarity != null) {
+            similarity.edgeAdded(newGraph.idOf(a), newGraph.idOf(b));
+        }
+        if (added && versions != null) {
+            versions.addEdge(a, b, weight);
+        }
+        return added;
+    }
+
+    /**
+     * Checks that every friendship is known to both users and to the network, and
+     * that the number of friendships adds up. Slow, meant for testing.
+     * 
+     * @return true if everything matches, false otherwise.
+     */
+    public boolean checkFriendships() {
+        return shared(() -> {
+            long ends = 0;
+            List<VertexInterface<Profile>> users = graph.getVertices();
+            for (VertexInterface<Profile> vertex : (users == null) ? List.<VertexInterface<Profile>>of() : users) {
+                Profile user = vertex.getLabel();
+                List<Profile> friends = user.getFriendProfiles();
+                for (Profile friend : friends) {
+                    if (isUser(friend) == false || areFriends(user, friend) == false
+                            || friend.getFriendProfiles().contains(user) == false) {
+                        return false;
+                    }
+                }
+                // only a Graph keeps the edges in the vertices it hands out
+                int degree = (newGraph != null) ? vertex.getNumberOfNeighbors() : graph.getNeighbors(user).size();
+                if (friends.size() != degree) {
+                    return false;
+                }
+                ends += friends.size();
+            }
+            return ends == graph.getNumberOfEdges();
+        });
+    }
+
+    /**
+     * Runs a change to one friendship. With many threads it locks the stripes of
+     * the two users, or the whole network when an index is enabled, since the
+     * indexes change other users too.
+     * 
+     * @param a    the first user.
+     * @param b    the second user.
+     * @param body the change.
+     * @return what the change returns, false if either user does not exist.
+     */
+    private boolean changeFriendship(Profile a, Profile b, BooleanSupplier body) {
+        if (network == null) {
+            return body.getAsBoolean();
+        }
+        if (newGraph == null) { // no ids to pick the stripes by
+            return exclusive(body::getAsBoolean);
+        }
+        long stamp = network.readLock();
+        if (suggestions != null || similarity != null) {
+            network.unlockRead(stamp);
+            return exclusive(body::getAsBoolean);
+        }
+        try {
+            int first = newGraph.idOf(a);
+            int second = newGraph.idOf(b);
+            if (first == -1 || second == -1) {
+                return false;
+            }
+            int firstStripe = stripes.stripeOf(first);
+            int secondStripe = stripes.stripeOf(second);
+            stripes.writePair(firstStripe, secondStripe);
+            try {
+                return body.getAsBoolean();
+            } finally {
+                stripes.unwritePair(firstStripe, secondStripe);
+            }
+        } finally {
+            network.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Runs a query that only looks at two users and their friends. With many
+     * threads it locks the stripes of the two users for reading.
+     * 
+     * @param <R>  what the query returns.
+     * @param a    the first user.
+     * @param b    the second user.
+     * @param body the query.
+     * @return what the query returns.
+     */
+    private <R> R pair(Profile a, Profile b, Supplier<R> body) {
+        if (network == null) {
+            return body.get();
+        }
+        if (newGraph == null) { // no ids to pick the stripes by
+            return shared(body);
+        }
+        long stamp = network.readLock();
+        try {
+            int first = newGraph.idOf(a);
+            int second = newGraph.idOf(b);
+            if (first == -1 || second == -1) { // nothing to lock, nothing to find either
+                return body.get();
+            }
+            int firstStripe = stripes.stripeOf(first);
+            int secondStripe = stripes.stripeOf(second);
+            stripes.readPair(firstStripe, secondStripe);
+            try {
+                return body.get();
+            } finally {
+                stripes.unreadPair(firstStripe, secondStripe);
+            }
+        } finally {
+            network.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Runs a query that may look at any user. With many threads it locks every
+     * stripe for reading, so friendship changes wait but other queries do not.
+     * 
+     * @param <R>  what the query returns.
+     * @param body the query.
+     * @return what the query returns.
+     */
+    private <R> R shared(Supplier<R> body) {
+        if (network == null) {
+            return body.get();
+        }
+        long stamp = network.readLock();
+        stripes.readAll();
+        try {
+            return body.get();
+        } finally {
+            stripes.unreadAll();
+            network.unlockRead(stamp);
+        }
+    }
 
-        if (hasFriendship(a, b) == false) { // check if they are friends in the in the first place
-            return false;
+    /**
+     * Gets the graph as a Graph, for the features that need the whole network on
+     * one heap.
+     * 
+     * @return the graph.
+     * @throws UnsupportedOperationException if made on another kind of graph,
+     *                                       which would have to be copied.
+     */
+    private Graph<Profile> local() {
+        if (newGraph == null) {
+            throw new UnsupportedOperationException("needs the whole network in a Graph, a "
+                    + graph.getClass().getSimpleName() + " would have to be copied onto one heap");
         }
+        return newGraph;
+    }
 
-        a.unFriend(a);
-        b.unFriend(b);
-        return newGraph.removeEdge(a, b);
+    /**
+     * Runs a change that may touch any user. With many threads it locks the whole
+     * network.
+     * 
+     * @param <R>  what the change returns.
+     * @param body the change.
+     * @return what the change returns.
+     */
+    private <R> R exclusive(Supplier<R> body) {
+        if (network == null) {
+            return body.get();
+        }
+        long stamp = network.writeLock();
+        try {
+            return body.get();
+        } finally {
+            network.unlockWrite(stamp);
+        }
     }
 
     /**
@@ -108,8 +464,161 @@ public class MasonConnect {
      *         otherwise.
      */
     public boolean hasFriendship(Profile a, Profile b) {
-        return newGraph.hasEdge(a, b);
+        if (network == null) {
+            return areFriends(a, b);
+        }
+        if (newGraph == null) {
+            return shared(() -> areFriends(a, b));
+        }
 
+        long stamp = network.tryOptimisticRead();
+        try {
+            int first = newGraph.idOf(a);
+            int second = newGraph.idOf(b);
+            if (first == -1 || second == -1) {
+                if (network.validate(stamp)) {
+                    return false;
+                }
+            } else {
+                StampedLock firstLock = stripes.get(stripes.stripeOf(first));
+                StampedLock secondLock = stripes.get(stripes.stripeOf(second));
+                long firstStamp = firstLock.tryOptimisticRead();
+                long secondStamp = secondLock.tryOptimisticRead();
+                boolean result = newGraph.hasEdgeById(first, second);
+                if (firstLock.validate(firstStamp) && secondLock.validate(secondStamp) && network.validate(stamp)) {
+                    return result;
+                }
+            }
+        } catch (RuntimeException e) {
+            // read half of a change, try again with the locks
+        }
+
+        stamp = network.readLock();
+        try {
+            int first = newGraph.idOf(a);
+            int second = newGraph.idOf(b);
+            if (first == -1 || second == -1) {
+                return false;
+            }
+            int firstStripe = stripes.stripeOf(first);
+            int secondStripe = stripes.stripeOf(second);
+            stripes.readPair(firstStripe, secondStripe);
+            try {
+                return newGraph.hasEdgeById(first, second);
+            } finally {
+                stripes.unreadPair(firstStripe, secondStripe);
+            }
+        } finally {
+            network.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Checking if there is an edge, without locking.
+     * 
+     * @param a the first user.
+     * @param b the second user.
+     * @return true if there is friendship between Profiles a and b, false
+     *         otherwise.
+     */
+    private boolean areFriends(Profile a, Profile b) {
+        return graph.hasEdge(a, b);
+    }
+
+    /**
+     * Checks many friendships at once. The network lock is taken only once, so
+     * users stay put, and each pair reads its two stripes optimistically like
+     * hasFriendship, so friendship changes elsewhere go on meanwhile. The pairs
+     * are answered in the order of the id of the first user, so pairs with the
+     * same first user look at its neighbors one after another.
+     * 
+     * @param firsts  the first user of every pair.
+     * @param seconds the second user of every pair.
+     * @param answers filled with whether each pair are friends.
+     */
+    void hasFriendships(Profile[] firsts, Profile[] seconds, boolean[] answers) {
+        if (newGraph == null) { // no ids to sort by
+            shared(() -> {
+                for (int i = 0; i < firsts.length; i++) {
+                    answers[i] = areFriends(firsts[i], seconds[i]);
+                }
+                return null;
+            });
+            return;
+        }
+        long stamp = (network == null) ? 0 : network.readLock();
+        try {
+            long[] order = new long[firsts.length]; // first id in the high half, position in the low half
+            for (int i = 0; i < firsts.length; i++) {
+                order[i] = ((long) newGraph.idOf(firsts[i]) << 32) | i;
+            }
+            Arrays.sort(order);
+            for (long key : order) {
+                int i = (int) key;
+                int first = (int) (key >> 32);
+                int second = newGraph.idOf(seconds[i]);
+                answers[i] = first != -1 && second != -1 && hasEdgeInStripes(first, second);
+            }
+        } finally {
+            if (network != null) {
+                network.unlockRead(stamp);
+            }
+        }
+    }
+
+    /**
+     * Checks an edge by id while the network is locked for reading. The stripes
+     * of the two ends are read optimistically, and only locked if a change came
+     * in between.
+     * 
+     * @param first  the id of the first user.
+     * @param second the id of the second user.
+     * @return true if they are friends, false otherwise.
+     */
+    private boolean hasEdgeInStripes(int first, int second) {
+        if (network == null) {
+            return newGraph.hasEdgeById(first, second);
+        }
+        int firstStripe = stripes.stripeOf(first);
+        int secondStripe = stripes.stripeOf(second);
+        StampedLock firstLock = stripes.get(firstStripe);
+        StampedLock secondLock = stripes.get(secondStripe);
+        long firstStamp = firstLock.tryOptimisticRead();
+        long secondStamp = secondLock.tryOptimisticRead();
+        try {
+            boolean result = newGraph.hasEdgeById(first, second);
+            if (firstLock.validate(firstStamp) && secondLock.validate(secondStamp)) {
+                return result;
+            }
+        } catch (RuntimeException e) {
+            // read half of a change, try again with the locks
+        }
+        stripes.readPair(firstStripe, secondStripe);
+        try {
+            return newGraph.hasEdgeById(first, second);
+        } finally {
+            stripes.unreadPair(firstStripe, secondStripe);
+        }
+    }
+
+    /**
+     * Checks whether many users exist at once. Only the network lock is taken,
+     * once, since friendship changes do not add or remove users.
+     * 
+     * @param users   the users.
+     * @param answers filled with whether each user exists.
+     */
+    void existAll(Profile[] users, boolean[] answers) {
+        long stamp = (network == null) ? 0 : network.readLock();
+        try {
+            for (int i = 0; i < users.length; i++) {
+                answers[i] = isUser(users[i]);
+            }
+        } finally {
+            if (network != null) {
+                network.unlockRead(stamp);
+            }
+        }
     }
 
     /**
@@ -119,7 +628,7 @@ public class MasonConnect {
      * @param startPoint the orgin.
      */
     public void traverse(Profile startPoint) {
-        Queue<Profile> newQueue = newGraph.getBreadthFirstTraversal(startPoint);
+        Queue<Profile> newQueue = shared(() -> graph.getBreadthFirstTraversal(startPoint));
         // int count = newQueue.size();
         // int i =0;
         while (true) {
@@ -133,6 +642,76 @@ public class MasonConnect {
 
     }
 
+    /**
+     * Displays the profiles reachable from startPoint, nearest first, but only up
+     * to maxDepth friendships away and at most limit of them. Only that part of
+     * the network is explored.
+     * 
+     * @param startPoint the orgin.
+     * @param maxDepth   how many friendships away to go at most.
+     * @param limit      how many profiles to display at most.
+     */
+    public void traverse(Profile startPoint, int maxDepth, int limit) {
+        shared(() -> {
+            if (newGraph == null) {
+                reachable(startPoint, maxDepth, limit, false).forEach(Profile::display);
+            } else {
+                newGraph.bfsStream(startPoint, maxDepth).limit(limit).forEach(Profile::display);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Gets the profiles that are exactly the given number of friendships away,
+     * for example 2 for friends of friends. Stops as soon as limit of them are
+     * found, so asking for the first page is cheap.
+     * 
+     * @param user   who we are checking for.
+     * @param degree how many friendships away.
+     * @param limit  how many profiles to return at most.
+     * @return the profiles, nearest found first. Empty if there are none.
+     */
+    public List<Profile> connectionsAt(Profile user, int degree, int limit) {
+        return shared(() -> {
+            if (newGraph == null) {
+                return reachable(user, degree, limit, true);
+            }
+            List<Profile> result = new ArrayList<>();
+            BreadthFirstIterator<Profile> loop = newGraph.bfsIterator(user, degree);
+            while (result.size() < limit && loop.hasNext()) {
+                Profile current = loop.next();
+                if (loop.depth() == degree) { // closer ones are skipped
+                    result.add(current);
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Gets the profiles reachable from a user, nearest first, the user first of
+     * all. Stops as soon as limit of them are found, so only that part of the
+     * network is explored.
+     * 
+     * @param user  where to start.
+     * @param limit how many profiles to return at most.
+     * @return the profiles. Empty if the user does not exist.
+     */
+    public List<Profile> nearestUsers(Profile user, int limit) {
+        return shared(() -> {
+            if (newGraph == null) {
+                return reachable(user, Integer.MAX_VALUE, limit, false);
+            }
+            List<Profile> result = new ArrayList<>();
+            BreadthFirstIterator<Profile> loop = newGraph.bfsIterator(user, Integer.MAX_VALUE);
+            while (result.size() < limit && loop.hasNext()) {
+                result.add(loop.next());
+            }
+            return result;
+        });
+    }
+
     /**
      * Checking if the user exists.
      * 
@@ -142,7 +721,34 @@ public class MasonConnect {
      * 
      */
     public boolean exists(Profile user) {
-        if (newGraph.vertices.get(user) == null) {
+        if (network == null) {
+            return isUser(user);
+        }
+        long stamp = network.tryOptimisticRead();
+        try {
+            boolean result = isUser(user);
+            if (network.validate(stamp)) {
+                return result;
+            }
+        } catch (RuntimeException e) {
+            // read half of a change, try again with the lock
+        }
+        stamp = network.readLock();
+        try {
+            return isUser(user);
+        } finally {
+            network.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Checking if the user exists, without locking.
+     * 
+     * @param user who we are checking.
+     * @return true if the user exists, false otherwise.
+     */
+    private boolean isUser(Profile user) {
+        if (graph.contains(user) == false) {
             return false; // it doesnt exist
         }
         return true;
@@ -162,46 +768,206 @@ public class MasonConnect {
      */
 
     public List<Profile> friendSuggestion(Profile user) {
+        return shared(() -> {
+            if (isUser(user) == false) {
+                return null; // It returns null, if the user does not exist
+            }
 
-        if (exists(user) == false) {
-            return null; // It returns null, if the user does not exist
-        }
+            HashMap<Profile, Profile> some;
+            some = new HashMap<>();
 
-        HashMap<Profile, Profile> some;
-        some = new HashMap<>();
+            ArrayList<Profile> ogUserfriends = user.getFriendProfiles(); // first get the orginal users friends
 
-        ArrayList<Profile> ogUserfriends = user.getFriendProfiles(); // first get the orginal users friends
+            some.put(user, user); // add the user
+            for (int x = 0; x < ogUserfriends.size(); x++) { // add to the hash map 
+                some.put(ogUserfriends.get(x), ogUserfriends.get(x));
+            }
 
-        some.put(user, user); // add the user
-        for (int x = 0; x < ogUserfriends.size(); x++) { // add to the hash map 
-            some.put(ogUserfriends.get(x), ogUserfriends.get(x));
-        }
+            ArrayList<Profile> result = new ArrayList<>(); // this is what we will return
 
-        ArrayList<Profile> result = new ArrayList<>(); // this is what we will return
+            for (int i = 0; i < ogUserfriends.size(); i++) {
+                Profile current = ogUserfriends.get(i); // get a friend
+                ArrayList<Profile> currentFriends = current.getFriendProfiles(); // get there friends
+                if (currentFriends.isEmpty() == false) { // check if they have friends
+                    for (int j = 0; j < currentFriends.size(); j++) { // loop through that list
+                        Profile temp = currentFriends.get(j); // grab to compare
+                        if (some.containsKey(temp) == false
+                                && (!temp.equals(user))) { // check if they are friends, no duplicates, and if they are not  the user themselves.
 
-        for (int i = 0; i < ogUserfriends.size(); i++) {
-            Profile current = ogUserfriends.get(i); // get a friend
-            ArrayList<Profile> currentFriends = current.getFriendProfiles(); // get there friends
-            if (currentFriends.isEmpty() == false) { // check if they have friends
-                for (int j = 0; j < currentFriends.size(); j++) { // loop through that list
-                    Profile temp = currentFriends.get(j); // grab to compare
-                    if (some.containsKey(temp) == false
-                            && (!temp.equals(user))) { // check if they are friends, no duplicates, and if they are not  the user themselves.
-                                                      
-                        result.add(temp);
-                        some.put(temp, temp);
+                            result.add(temp);
+                            some.put(temp, temp);
+                        }
                     }
                 }
+
             }
 
-        }
+            if (result.size() == 0) { // no friend suggestions
+                return null;
+            }
+
+            return result;
+        });
+    }
+
+    /**
+     * Getting the best friend suggestions, the "people you may know". Users are
+     * ranked by how many friends they share with the user.
+     * 
+     * @param user who we are checking for.
+     * @param k    how many suggestions to return at most.
+     * @return at most k Profiles who are friends of the profile's friends but not
+     *         friends of the profile, the most mutual friends first. It returns
+     *         null, if the user does not exist or if it does not have any friend
+     *         suggestions
+     */
+    public List<Profile> friendSuggestion(Profile user, int k) {
+        return shared(() -> {
+            List<Profile> result = (newGraph == null) ? mostMutual(user, k) : newGraph.getMostMutualNeighbors(user, k);
+            if (result.size() == 0) { // no friend suggestions or no user
+                return null;
+            }
+            return result;
+        });
+    }
 
-        if (result.size() == 0) { // no friend suggestions
+    /**
+     * Starts keeping the best k friend suggestions of every user up to date, so
+     * topFriendSuggestions answers right away instead of looking through the
+     * friends of friends. Every friendship change then costs a little more. Calling
+     * it again rebuilds the index with the new k.
+     * 
+     * @param k how many suggestions to keep for every user.
+     */
+    public void enableSuggestionIndex(int k) {
+        exclusive(() -> {
+            suggestions = new SuggestionIndex<>(local(), k);
             return null;
-        }
+        });
+    }
 
-        return result;
+    /**
+     * Getting the best friend suggestions from the suggestion index. Gives the
+     * same answer as friendSuggestion(user, k) with the k of the index.
+     * 
+     * @param user who we are checking for.
+     * @return at most k Profiles, the most mutual friends first. It returns null,
+     *         if the index is not enabled, the user does not exist or it does not
+     *         have any friend suggestions
+     */
+    public List<Profile> topFriendSuggestions(Profile user) {
+        return shared(() -> {
+            if (suggestions == null || isUser(user) == false) {
+                return null;
+            }
+            List<Profile> result = new ArrayList<>();
+            for (int id : suggestions.suggestionsOf(newGraph.idOf(user))) {
+                result.add(newGraph.labelOf(id));
+            }
+            if (result.size() == 0) { // no friend suggestions
+                return null;
+            }
+            return result;
+        });
+    }
 
+    /**
+     * Checks the suggestion index against suggestions computed from scratch. Slow,
+     * meant for testing.
+     * 
+     * @return true if the index is right or not enabled, false otherwise.
+     */
+    public boolean checkSuggestionIndex() {
+        return shared(() -> suggestions == null || suggestions.isConsistent());
+    }
+
+    /**
+     * Starts indexing the friend lists of every user, so similarProfiles can find
+     * users with similar friends without comparing against everyone. Every
+     * friendship change then costs a little more.
+     */
+    public void enableSimilarityIndex() {
+        exclusive(() -> {
+            similarity = new MinHashIndex<>(local(), 32, 2); // finds most pairs above about 0.18 similarity
+            return null;
+        });
+    }
+
+    /**
+     * Getting the users whose friend lists are the most like this user's, by
+     * estimated Jaccard similarity (shared friends over all friends of the two).
+     * Users with only a little in common may be missed.
+     * 
+     * @param user who we are checking for.
+     * @param k    how many profiles to return at most.
+     * @return at most k Profiles, the most similar first. It returns null, if the
+     *         index is not enabled, the user does not exist or no similar users
+     *         were found
+     */
+    public List<Profile> similarProfiles(Profile user, int k) {
+        return shared(() -> {
+            if (similarity == null) {
+                return null;
+            }
+            List<Profile> result = similarity.getSimilar(user, k);
+            if (result.size() == 0) { // no similar users or no user
+                return null;
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Getting the friends two users have in common.
+     * 
+     * @param a user 1.
+     * @param b user 2.
+     * @return the Profiles who are friends with both. It returns null, if either
+     *         user does not exist
+     */
+    public List<Profile> mutualFriends(Profile a, Profile b) {
+        return pair(a, b, () -> {
+            if (isUser(a) == false || isUser(b) == false) {
+                return null;
+            }
+            return (newGraph == null) ? sharedFriends(a, b) : newGraph.getMutualNeighbors(a, b);
+        });
+    }
+
+    /**
+     * Counting the friends two users have in common, for the "N mutual friends"
+     * shown on a profile. Cheaper than mutualFriends(a, b).size().
+     * 
+     * @param a user 1.
+     * @param b user 2.
+     * @return the number of mutual friends, 0 if either user does not exist.
+     */
+    public int mutualFriendCount(Profile a, Profile b) {
+        return pair(a, b,
+                () -> (newGraph == null) ? sharedFriends(a, b).size() : newGraph.getMutualNeighborCount(a, b));
+    }
+
+    /**
+     * Getting friend suggestions from random walks over the network, which also
+     * finds good candidates three or more friendships away and is not flooded by
+     * very popular users. More and longer walks give better suggestions but take
+     * longer.
+     * 
+     * @param user       who we are checking for.
+     * @param k          how many suggestions to return at most.
+     * @param walks      how many walks to run.
+     * @param walkLength how many steps each walk takes.
+     * @return at most k Profiles who are not friends of the profile, the best
+     *         first. It returns null, if the user does not exist or if it does not
+     *         have any friend suggestions
+     */
+    public List<Profile> friendSuggestion(Profile user, int k, int walks, int walkLength) {
+        // walks the network itself, a snapshot would be built again after every change
+        List<Profile> result = shared(() -> new RandomWalkRecommender<>(local(), walks, walkLength).recommend(user, k));
+        if (result.size() == 0) { // no friend suggestions or no user
+            return null;
+        }
+        return result;
     }
 
     /**
@@ -212,28 +978,442 @@ public class MasonConnect {
      * @return Returns the friendship distance between two profiles.
      */
     public int friendshipDistance(Profile a, Profile b) {
+        return shared(() -> {
+            if (isUser(a) == true && isUser(b) == true) { // both users exist
+
+                if (a.equals(b)) { // the same user see @1863
+                    return 0;
+                }
+
+                Stack<Profile> path1 = new Stack<>();
+                int result = graph.getShortestPath(a, b, path1); // call shortest path
+
+                if (result == Integer.MAX_VALUE) { // if it eqauls max int that means a path does not exist,
+                    return -1;
+                }
 
-        if (exists(a) == true && exists(b) == true) { // both users exist
+                else {
+                    return result;
+                }
 
-            if (a.equals(b)) { // the same user see @1863
-                return 0;
             }
 
-            Stack<Profile> path1 = new Stack<>();
-            int result = newGraph.getShortestPath(a, b, path1); // call shortest path
+            return -1;
+        });
+    }
 
-            if (result == Integer.MAX_VALUE) { // if it eqauls max int that means a path does not exist,
-                return -1;
+    /**
+     * Checking connection levels for many pairs at once, for example a batch of
+     * recommendation candidates. Much faster than calling friendshipDistance for
+     * every pair.
+     * 
+     * @param sources the first users.
+     * @param targets the second users.
+     * @return result[i][j] is the friendship distance between sources[i] and
+     *         targets[j], -1 if either does not exist or they are not connected.
+     */
+    public int[][] friendshipDistances(List<Profile> sources, List<Profile> targets) {
+        return shared(() -> {
+            int[][] result = (newGraph == null) ? pairDistances(sources, targets)
+                    : newGraph.getShortestDistances(sources, targets);
+            for (int[] row : result) {
+                for (int j = 0; j < row.length; j++) {
+                    if (row[j] == Integer.MAX_VALUE) { // a path does not exist
+                        row[j] = -1;
+                    }
+                }
             }
+            return result;
+        });
+    }
 
-            else {
-                return result;
+    /**
+     * Gets a number naming the group of users that can reach this user through
+     * chains of friendships. Two users have the same number exactly when they
+     * are connected. The numbers can change when friendships change.
+     * 
+     * @param user who we are checking for.
+     * @return the component number, -1 if the user does not exist.
+     */
+    public int componentOf(Profile user) {
+        return shared(() -> local().getComponentId(user));
+    }
+
+    /**
+     * Gets how many users can be reached from this user through chains of
+     * friendships, the user included.
+     * 
+     * @param user who we are checking for.
+     * @return the size of the component, 0 if the user does not exist.
+     */
+    public int componentSize(Profile user) {
+        // on another graph a traversal asks the shards one level at a time
+        return shared(() -> (newGraph == null) ? graph.getBreadthFirstTraversal(user).size()
+                : newGraph.getComponentSize(user));
+    }
+
+    /**
+     * Gets how many of a user's friends are friends with each other, out of all
+     * pairs of the user's friends.
+     * 
+     * @param user who we are checking for.
+     * @return the local clustering coefficient between 0 and 1, 0 if the user
+     *         does not exist or has fewer than two friends.
+     */
+    public double clustering(Profile user) {
+        return triangles().localClustering(user);
+    }
+
+    /**
+     * Gets the clustering of every user averaged, a measure of how close-knit the
+     * whole network is.
+     * 
+     * @return the average clustering coefficient, 0 if there are no users.
+     */
+    public double averageClustering() {
+        return triangles().averageClustering();
+    }
+
+    /**
+     * Gets the number of groups of three users who are all friends with each
+     * other.
+     * 
+     * @return the number of triangles.
+     */
+    public long triangleCount() {
+        return triangles().triangleCount();
+    }
+
+    /**
+     * Getting the most influential users by PageRank: a user is influential when
+     * influential users are friends with them. Closer friendships (a lower
+     * weight) count for more, an unweighted friendship counts the most.
+     * 
+     * @param k how many users to return at most.
+     * @return at most k Profiles, the most influential first. Empty if there are
+     *         no users.
+     */
+    public List<Profile> mostInfluential(int k) {
+        return new PageRank<>(snapshot()).getMostInfluential(k, 1e-6, 100);
+    }
+
+    /**
+     * Getting the users with the most friends. Fast however big the network is.
+     * 
+     * @param k how many users to return at most.
+     * @return at most k Profiles, the most friends first. Empty if there are no
+     *         users.
+     */
+    public List<Profile> mostConnected(int k) {
+        return shared(() -> graph.topByDegree(k));
+    }
+
+    /**
+     * Getting how many users have each number of friends.
+     * 
+     * @return result[n] is the number of users with exactly n friends, up to the
+     *         most friends anyone has. Empty if there are no users.
+     */
+    public int[] friendCountHistogram() {
+        return shared(() -> graph.getDegreeHistogram());
+    }
+
+    /**
+     * Getting the users who connect otherwise separate groups, the ones on the most
+     * shortest chains of friendships between other users. For a big network the
+     * ranking is estimated from a sample of users.
+     * 
+     * @param k how many users to return at most.
+     * @return at most k Profiles, the most important bridge first. Empty if no user
+     *         is between two others.
+     */
+    public List<Profile> bridgeMembers(int k) {
+        return new Betweenness<>(snapshot()).getTopBridges(k, 0.05, 0.1);
+    }
+
+    /**
+     * Gets a number naming the community of a user, a group of users with many
+     * friendships among them, like a study group or a department. The numbers can
+     * change when friendships change.
+     * 
+     * @param user who we are checking for.
+     * @return the community number, -1 if the user does not exist.
+     */
+    public int communityOf(Profile user) {
+        return communities().communityOf(user);
+    }
+
+    /**
+     * Gets how many users are in the community of a user.
+     * 
+     * @param user who we are checking for.
+     * @return the size of the community, 0 if the user does not exist.
+     */
+    public int communitySize(Profile user) {
+        LabelPropagation<Profile> current = communities();
+        int community = current.communityOf(user);
+        if (community == -1) {
+            return 0;
+        }
+        return current.getCommunitySizes()[community];
+    }
+
+    /**
+     * Gets the communities of the current network, finding them again only if a
+     * friendship or user changed since the last time.
+     * 
+     * @return the communities.
+     */
+    private synchronized LabelPropagation<Profile> communities() {
+        GraphSnapshot<Profile> current = snapshot();
+        if (communities == null || communities.getSnapshot() != current) {
+            communities = new LabelPropagation<>(current);
+            communities.detect(0.001, 50);
+        }
+        return communities;
+    }
+
+    /**
+     * Gets the triangle counter of the current network, counting again only if a
+     * friendship or user changed since the last time.
+     * 
+     * @return the counter.
+     */
+    private synchronized TriangleCounter<Profile> triangles() {
+        GraphSnapshot<Profile> current = snapshot();
+        if (triangles == null || triangles.getSnapshot() != current) {
+            triangles = new TriangleCounter<>(current);
+        }
+        return triangles;
+    }
+
+    /**
+     * Checking how close two users are when the friendship weights are taken into
+     * account. The distance is the smallest total weight of a chain of friendships
+     * between them.
+     * 
+     * @param a user 1.
+     * @param b user 2.
+     * @return Returns the weighted distance between two profiles, -1 if either
+     *         does not exist or they are not connected.
+     */
+    public double weightedFriendshipDistance(Profile a, Profile b) {
+        double result = shared(() -> local().getCheapestPath(a, b, new Stack<>()));
+        if (result == Double.POSITIVE_INFINITY) { // a path does not exist
+            return -1;
+        }
+        return result;
+    }
+
+    /**
+     * Freezes the network so read queries can run against it while friendships
+     * keep changing. Pass the result to the traverse, friendshipDistance and
+     * friendSuggestion methods that accept a snapshot. Once versions are enabled
+     * the snapshot is made from the newest version, without waiting for changes.
+     * 
+     * @return the snapshot of the network.
+     */
+    public GraphSnapshot<Profile> snapshot() {
+        VersionedGraph<Profile> history = versions;
+        if (history != null) {
+            try (GraphVersion<Profile> newest = history.pin()) {
+                return newest.snapshot();
+            }
+        }
+        return shared(() -> local().snapshot());
+    }
+
+    /**
+     * Starts keeping a version of the network for every change, so long queries
+     * can read a pinned version without locks while friendships keep changing.
+     * Every change then costs a little more.
+     */
+    public void enableVersions() {
+        exclusive(() -> {
+            versions = new VersionedGraph<>(local().snapshot());
+            return null;
+        });
+    }
+
+    /**
+     * Pins the newest version of the network. Pass it to the traverse,
+     * friendshipDistance and friendSuggestion methods that accept a view, and
+     * close it when done, best with try-with-resources.
+     * 
+     * @return the newest version, null if versions are not enabled.
+     */
+    public GraphVersion<Profile> pinVersion() {
+        VersionedGraph<Profile> history = versions;
+        if (history == null) {
+            return null;
+        }
+        return history.pin();
+    }
+
+    /**
+     * This method displays each profile's information and friends, starting from
+     * the startPoint profile, as they were in the snapshot or version.
+     * 
+     * @param view       the snapshot or version to read from.
+     * @param startPoint the orgin.
+     */
+    public void traverse(GraphView<Profile> view, Profile startPoint) {
+        Queue<Profile> newQueue = view.getBreadthFirstTraversal(startPoint);
+        while (newQueue.isEmpty() == false) {
+            newQueue.poll().display();
+        }
+    }
+
+    /**
+     * Checking connection level in a snapshot or version.
+     * 
+     * @param view the snapshot or version to read from.
+     * @param a    user 1.
+     * @param b    user 2.
+     * @return Returns the friendship distance between two profiles, -1 if either
+     *         does not exist or they are not connected.
+     */
+    public int friendshipDistance(GraphView<Profile> view, Profile a, Profile b) {
+        if (view.contains(a) == false || view.contains(b) == false) {
+            return -1;
+        }
+
+        int result = view.getShortestPath(a, b, new Stack<>());
+        if (result == Integer.MAX_VALUE) { // a path does not exist
+            return -1;
+        }
+        return result;
+    }
+
+    /**
+     * Getting friend suggestion from a snapshot or version.
+     * 
+     * @param view the snapshot or version to read from.
+     * @param user who we are checking for.
+     * @return a list of Profiles, who are friends with one or more of the profile's
+     *         friends (but not currently the profile's friend)
+     *         It returns null, if the user does not exist or if it does not have
+     *         any friend suggestions
+     */
+    public List<Profile> friendSuggestion(GraphView<Profile> view, Profile user) {
+        List<Profile> result = view.getSecondNeighbors(user);
+        if (result.size() == 0) { // no friend suggestions or no user
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * Finds the friends two users have in common by asking the graph for the
+     * friends of each, for graphs other than Graph.
+     * 
+     * @param a user 1.
+     * @param b user 2.
+     * @return the shared friends, in the order a has them.
+     */
+    private List<Profile> sharedFriends(Profile a, Profile b) {
+        HashSet<Profile> ofB = new HashSet<>(graph.getNeighbors(b));
+        List<Profile> result = new ArrayList<>();
+        for (Profile friend : graph.getNeighbors(a)) {
+            if (ofB.remove(friend)) { // removed so it is listed once
+                result.add(friend);
             }
+        }
+        return result;
+    }
 
+    /**
+     * Ranks the friends of friends of a user by how many friends they share with
+     * the user, asking the graph for the friends of the user and of each friend,
+     * for graphs other than Graph.
+     * 
+     * @param user who we are checking for.
+     * @param k    how many to return at most.
+     * @return at most k Profiles, the most mutual friends first and those found
+     *         first among equals. Empty if there are none or no user.
+     */
+    private List<Profile> mostMutual(Profile user, int k) {
+        List<Profile> friends = graph.getNeighbors(user);
+        HashSet<Profile> excluded = new HashSet<>(friends); // the user and its friends are not suggestions
+        excluded.add(user);
+        LinkedHashMap<Profile, Integer> counts = new LinkedHashMap<>(); // keeps the order they were found in
+        for (Profile friend : friends) { // one count per shared friend
+            for (Profile candidate : graph.getNeighbors(friend)) {
+                if (excluded.contains(candidate) == false) {
+                    counts.merge(candidate, 1, Integer::sum);
+                }
+            }
         }
+        List<Map.Entry<Profile, Integer>> ranked = new ArrayList<>(counts.entrySet());
+        ranked.sort((x, y) -> Integer.compare(y.getValue(), x.getValue())); // stable, so ties stay in order
+        List<Profile> result = new ArrayList<>();
+        for (int i = 0; i < Math.min(k, ranked.size()); i++) {
+            result.add(ranked.get(i).getKey());
+        }
+        return result;
+    }
 
-        return -1;
+    /**
+     * Walks out from a user one level of friends at a time, asking the graph for
+     * the friends of every user reached, for graphs other than Graph. It stops as
+     * soon as limit users are found, so only that part of the network is asked
+     * about.
+     * 
+     * @param origin       where to start.
+     * @param maxDepth     how many friendships away to go at most.
+     * @param limit        how many users to return at most.
+     * @param farthestOnly true to return only the users exactly maxDepth away.
+     * @return the users, nearest first. Empty if the origin does not exist.
+     */
+    private List<Profile> reachable(Profile origin, int maxDepth, int limit, boolean farthestOnly) {
+        List<Profile> result = new ArrayList<>();
+        if (maxDepth < 0 || limit <= 0 || isUser(origin) == false) {
+            return result;
+        }
+        HashSet<Profile> seen = new HashSet<>();
+        seen.add(origin);
+        List<Profile> level = List.of(origin);
+        for (int depth = 0; level.isEmpty() == false; depth++) {
+            if (farthestOnly == false || depth == maxDepth) {
+                for (Profile current : level) {
+                    result.add(current);
+                    if (result.size() == limit) {
+                        return result;
+                    }
+                }
+            }
+            if (depth == maxDepth) {
+                break;
+            }
+            List<Profile> next = new ArrayList<>();
+            for (Profile current : level) {
+                for (Profile friend : graph.getNeighbors(current)) {
+                    if (seen.add(friend)) {
+                        next.add(friend);
+                    }
+                }
+            }
+            level = next;
+        }
+        return result;
+    }
 
+    /**
+     * Finds the friendship distance of every pair with one shortest path search
+     * each, for graphs other than Graph.
+     * 
+     * @param sources the first users.
+     * @param targets the second users.
+     * @return result[i][j] is the distance, the maximum integer if there is none.
+     */
+    private int[][] pairDistances(List<Profile> sources, List<Profile> targets) {
+        int[][] result = new int[sources.size()][targets.size()];
+        for (int i = 0; i < sources.size(); i++) {
+            for (int j = 0; j < targets.size(); j++) {
+                result[i][j] = graph.getShortestPath(sources.get(i), targets.get(j), new Stack<>());
+            }
+        }
+        return result;
     }
 
     /**
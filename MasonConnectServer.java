@@ -0,0 +1,401 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves a MasonConnect over HTTP with the JDK's built-in server. Users are
+ * named in the query string, and every answer is plain text, one value per
+ * line:
+ * <ul>
+ * <li>/users?name=&amp;status= adds a user, true if the name was new.</li>
+ * <li>/friendships/create?a=&amp;b=[&amp;weight=], /friendships/remove?a=&amp;b=
+ * and /friendships/has?a=&amp;b= answer true or false.</li>
+ * <li>/suggestions?user=[&amp;k=] lists friend suggestions, the best k if k is
+ * given. k must be from 1 to MAX_SUGGESTIONS.</li>
+ * <li>/distance?a=&amp;b= gives the friendship distance.</li>
+ * <li>/traverse?user=[&amp;limit=] lists the users reachable from a user,
+ * nearest first, streamed in chunks. With versions enabled it is read from a
+ * pinned version as it is written, so a traversal of the whole network is
+ * never held as one big response. Otherwise the first limit users are
+ * collected from the live network, and only then sent.</li>
+ * </ul>
+ * A missing or bad parameter answers 400, and a user that does not exist 404.
+ * Every request runs on its own virtual thread when the JDK has them (21 and
+ * later), otherwise on a cached pool of threads. The network should be made with
+ * MasonConnect(stripes) since requests run at the same time, and with
+ * enableVersions() called if whole traversals are asked for.
+ *
+ * @author Rahima Adnan
+ */
+public class MasonConnectServer {
+    /**
+     * The most suggestions one request may ask for.
+     */
+    public static final int MAX_SUGGESTIONS = 1_000;
+
+    /**
+     * The network being served.
+     */
+    private final MasonConnect network;
+
+    /**
+     * The profile of every user name.
+     */
+    private final ConcurrentHashMap<String, Profile> profiles = new ConcurrentHashMap<>();
+
+    /**
+     * The HTTP server.
+     */
+    private final HttpServer server;
+
+    /**
+     * The threads the requests run on.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Constructor with a backlog big enough for many clients connecting at once.
+     *
+     * @param network the network to serve, made for many threads.
+     * @param port    the port to listen on, 0 for any free port.
+     * @throws IOException if the port can not be opened.
+     */
+    public MasonConnectServer(MasonConnect network, int port) throws IOException {
+        this(network, port, 16_384);
+    }
+
+    /**
+     * Simple constructor. The server does not answer until start is called.
+     *
+     * @param network the network to serve, made for many threads.
+     * @param port    the port to listen on, 0 for any free port.
+     * @param backlog how many connections may wait to be accepted.
+     * @throws IOException if the port can not be opened.
+     */
+    public MasonConnectServer(MasonConnect network, int port, int backlog) throws IOException {
+        this.network = network;
+        server = HttpServer.create(new InetSocketAddress(port), backlog);
+        executor = newExecutor();
+        server.setExecutor(executor);
+
+        route("/users", query -> String.valueOf(addUser(required(query, "name"),
+                query.getOrDefault("status", ""))));
+        route("/friendships/create", query -> {
+            Profile a = user(query, "a");
+            Profile b = user(query, "b");
+            String weight = query.get("weight");
+            if (weight == null) {
+                return String.valueOf(network.createFriendship(a, b));
+            }
+            return String.valueOf(network.createFriendship(a, b, number(weight)));
+        });
+        route("/friendships/remove", query -> String.valueOf(network.removeFriendship(user(query, "a"),
+                user(query, "b"))));
+        route("/friendships/has", query -> String.valueOf(network.hasFriendship(user(query, "a"),
+                user(query, "b"))));
+        route("/suggestions", query -> {
+            Profile user = user(query, "user");
+            String k = query.get("k");
+            List<Profile> result = (k == null) ? network.friendSuggestion(user)
+                    : network.friendSuggestion(user, count(k, 1, MAX_SUGGESTIONS));
+            return (result == null) ? "" : names(result);
+        });
+        route("/distance", query -> String.valueOf(network.friendshipDistance(user(query, "a"),
+                user(query, "b"))));
+        server.createContext("/traverse", this::traverse);
+    }
+
+    /**
+     * Gets the profile of a user name, so the network can also be changed
+     * directly.
+     *
+     * @param name the user name.
+     * @return the profile, null if there is no user with that name.
+     */
+    public Profile profileOf(String name) {
+        return profiles.get(name);
+    }
+
+    /**
+     * Adds a user directly, the same as a request to /users.
+     *
+     * @param name   the user name.
+     * @param status the status.
+     * @return true if the user was added, false if the name was taken.
+     */
+    public boolean addUser(String name, String status) {
+        Profile user = new Profile(name, status);
+        if (profiles.putIfAbsent(name, user) != null) { // the name is taken
+            return false;
+        }
+        network.addUser(user);
+        return true;
+    }
+
+    /**
+     * Starts answering requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops answering requests and lets the threads go.
+     *
+     * @param delay how many seconds to wait for requests that already started.
+     */
+    public void stop(int delay) {
+        server.stop(delay);
+        executor.shutdown();
+    }
+
+    /**
+     * Gets the port the server listens on, useful when it was started on port 0.
+     *
+     * @return the port.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Makes an executor that starts a virtual thread for every request, or a
+     * cached thread pool on JDKs without virtual threads. Looked up by name so
+     * this still compiles and runs on older JDKs.
+     *
+     * @return the executor.
+     */
+    static ExecutorService newExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newCachedThreadPool(); // before Java 21
+        }
+    }
+
+    /**
+     * Streams the users reachable from a user, one name per line. With versions
+     * a version is pinned once, so the answer is one consistent traversal even
+     * while friendships change, and no lock is held while it is written.
+     * Without them the users are collected from the live network while it is
+     * locked for reading, exploring no more than limit users, and written after
+     * the lock is let go, so a slow client never holds up friendship changes.
+     *
+     * @param exchange the request.
+     * @throws IOException if the client went away.
+     */
+    private void traverse(HttpExchange exchange) throws IOException {
+        try {
+            Map<String, String> query = parse(exchange);
+            Profile start = user(query, "user");
+            String limit = query.get("limit");
+            int most = (limit == null) ? Integer.MAX_VALUE : count(limit, 0, Integer.MAX_VALUE);
+
+            GraphVersion<Profile> version = network.pinVersion(); // no locks, if versions are enabled
+            try {
+                Iterator<Profile> order = (version != null)
+                        ? version.breadthFirstIterator(start) // explored as it is written
+                        : network.nearestUsers(start, most).iterator(); // the lock is let go before writing
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+                exchange.sendResponseHeaders(200, 0); // 0 means chunked
+                try (Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(),
+                        StandardCharsets.UTF_8))) { // every time the buffer fills a chunk goes out
+                    for (int sent = 0; sent < most && order.hasNext(); sent++) {
+                        out.write(order.next().getName());
+                        out.write('\n');
+                    }
+                }
+            } finally {
+                if (version != null) {
+                    version.close();
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, e.getMessage());
+        } catch (NoSuchElementException e) {
+            respond(exchange, 404, e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Answers a path with the text an endpoint computes from the query.
+     *
+     * @param path     the path.
+     * @param endpoint computes the answer.
+     */
+    private void route(String path, Endpoint endpoint) {
+        server.createContext(path, exchange -> {
+            try {
+                respond(exchange, 200, endpoint.answer(parse(exchange)));
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, e.getMessage());
+            } catch (NoSuchElementException e) {
+                respond(exchange, 404, e.getMessage());
+            } finally {
+                exchange.close();
+            }
+        });
+    }
+
+    /**
+     * Sends a whole answer at once.
+     *
+     * @param exchange the request.
+     * @param status   the HTTP status.
+     * @param text     the answer.
+     * @throws IOException if the client went away.
+     */
+    private static void respond(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] body = (text == null ? "" : text).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length); // -1 means no body
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * Reads the query string of a request.
+     *
+     * @param exchange the request.
+     * @return the parameters by name, the first value of each.
+     */
+    private static Map<String, String> parse(HttpExchange exchange) {
+        Map<String, String> result = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return result;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = URLDecoder.decode(equals == -1 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = (equals == -1) ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            result.putIfAbsent(name, value);
+        }
+        return result;
+    }
+
+    /**
+     * Gets a parameter that must be there.
+     *
+     * @param query the parameters.
+     * @param name  the name of the parameter.
+     * @return the value.
+     */
+    private static String required(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("missing parameter " + name);
+        }
+        return value;
+    }
+
+    /**
+     * Gets the user a parameter names.
+     *
+     * @param query the parameters.
+     * @param name  the name of the parameter.
+     * @return the profile.
+     */
+    private Profile user(Map<String, String> query, String name) {
+        String userName = required(query, name);
+        Profile user = profiles.get(userName);
+        if (user == null) {
+            throw new NoSuchElementException("no user " + userName);
+        }
+        return user;
+    }
+
+    /**
+     * Reads a number parameter.
+     *
+     * @param value the text.
+     * @return the number.
+     */
+    private static double number(String value) {
+        return Double.parseDouble(value); // NumberFormatException is an IllegalArgumentException
+    }
+
+    /**
+     * Reads a whole number parameter that must be within bounds.
+     *
+     * @param value the text.
+     * @param low   the smallest allowed.
+     * @param high  the biggest allowed.
+     * @return the number.
+     */
+    private static int count(String value, int low, int high) {
+        int result = Integer.parseInt(value); // NumberFormatException is an IllegalArgumentException
+        if (result < low || result > high) {
+            throw new IllegalArgumentException(value + " is not from " + low + " to " + high);
+        }
+        return result;
+    }
+
+    /**
+     * Joins the names of users, one per line.
+     *
+     * @param users the users.
+     * @return the names.
+     */
+    private static String names(List<Profile> users) {
+        StringBuilder result = new StringBuilder();
+        for (Profile user : users) {
+            result.append(user.getName()).append('\n');
+        }
+        return result.toString();
+    }
+
+    // INNER INTERFACE BELOW
+    // ___________________________________________________________________________________
+    /**
+     * Computes the answer of one endpoint.
+     */
+    private interface Endpoint {
+        /**
+         * Computes the answer.
+         *
+         * @param query the parameters of the request.
+         * @return the answer.
+         */
+        String answer(Map<String, String> query);
+    }
+
+    /**
+     * Serves a new empty network until the process is stopped.
+     *
+     * @param args optional port, 8080 if not given.
+     * @throws IOException if the port can not be opened.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        MasonConnect network = new MasonConnect(64);
+        network.enableVersions();
+        MasonConnectServer server = new MasonConnectServer(network, port);
+        server.start();
+        System.out.println("MasonConnect listening on port " + server.getPort());
+    }
+
+}
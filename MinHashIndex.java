@@ -0,0 +1,502 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Finds vertices with similar neighbor sets without comparing every pair. Each
+ * vertex gets a MinHash signature: for every one of bands * rows hash functions,
+ * the smallest hash of any of its neighbors. Two signatures agree in a position
+ * with probability equal to the Jaccard similarity of the two neighbor sets, so
+ * the fraction of agreeing positions estimates it. The signature is cut into
+ * bands and every band is put in a bucket; vertices sharing a bucket in at least
+ * one band are the candidates of a query, which finds most pairs above about
+ * (1 / bands) ^ (1 / rows) similarity while looking at only a few vertices.
+ * Adding an edge only lowers the two signatures. Removing one can not be undone
+ * that way, so the signatures of both ends are computed again.
+ *
+ * @param <T> our generic.
+ * @author Rahima Adnan
+ */
+public class MinHashIndex<T> {
+    /**
+     * The graph being indexed.
+     */
+    private final Graph<T> graph;
+
+    /**
+     * The number of bands.
+     */
+    private final int bands;
+
+    /**
+     * The number of signature positions in each band.
+     */
+    private final int rows;
+
+    /**
+     * The seed of each hash function.
+     */
+    private final long[] seeds;
+
+    /**
+     * The signature of every vertex id, null for vertices without neighbors.
+     */
+    private int[][] signatures;
+
+    /**
+     * The vertices of every band bucket. The key holds the band and the hash of
+     * its rows.
+     */
+    private final HashMap<Long, Bucket> buckets;
+
+    /**
+     * Builds the index for every vertex in the graph. The signatures are
+     * computed in parallel.
+     *
+     * @param graph the graph to index.
+     * @param bands the number of bands, more finds less similar pairs.
+     * @param rows  the number of positions in a band, more finds fewer false
+     *              candidates.
+     */
+    public MinHashIndex(Graph<T> graph, int bands, int rows) {
+        this.graph = graph;
+        this.bands = bands;
+        this.rows = rows;
+        seeds = new long[bands * rows];
+        SplittableRandom random = new SplittableRandom(0x5EED);
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = random.nextLong();
+        }
+        buckets = new HashMap<>();
+
+        int[][] built = new int[Math.max(graph.idCapacity(), 16)][];
+        IntStream.range(0, graph.idCapacity()).parallel().forEach(id -> {
+            if (graph.vertexAt(id) != null) { // every task writes only its own slot
+                built[id] = compute(id, -1);
+            }
+        });
+        signatures = built;
+        for (int id = 0; id < graph.idCapacity(); id++) {
+            if (signatures[id] != null) {
+                insert(id, signatures[id]);
+            }
+        }
+    }
+
+    /**
+     * Updates both signatures after an edge was added.
+     *
+     * @param a one end of the edge.
+     * @param b the other end.
+     */
+    public void edgeAdded(int a, int b) {
+        lower(a, b);
+        lower(b, a);
+    }
+
+    /**
+     * Updates both signatures after an edge was removed.
+     *
+     * @param a one end of the edge.
+     * @param b the other end.
+     */
+    public void edgeRemoved(int a, int b) {
+        refresh(a, -1);
+        refresh(b, -1);
+    }
+
+    /**
+     * Forgets a vertex that is about to be removed, while its edges are still
+     * there. Its neighbors are indexed as if it was already gone.
+     *
+     * @param id the id of the vertex.
+     */
+    public void vertexRemoving(int id) {
+        if (id < signatures.length && signatures[id] != null) {
+            delete(id, signatures[id]);
+            signatures[id] = null;
+        }
+        Vertex<T> vertex = graph.vertexAt(id);
+        int[] neighborIds = vertex.neighborIds();
+        int degree = vertex.getNumberOfNeighbors();
+        for (int i = 0; i < degree; i++) {
+            if (neighborIds[i] != id) {
+                refresh(neighborIds[i], id);
+            }
+        }
+    }
+
+    /**
+     * Estimates the Jaccard similarity of the neighbor sets of two vertices.
+     *
+     * @param a the first vertex id.
+     * @param b the second vertex id.
+     * @return the fraction of agreeing signature positions, 0 if either has no
+     *         neighbors.
+     */
+    public double estimate(int a, int b) {
+        int[] first = signatureOf(a);
+        int[] second = signatureOf(b);
+        if (first == null || second == null) {
+            return 0;
+        }
+        int same = 0;
+        for (int i = 0; i < first.length; i++) {
+            if (first[i] == second[i]) {
+                same++;
+            }
+        }
+        return (double) same / first.length;
+    }
+
+    /**
+     * Gets the vertices whose neighbor sets are the most similar to those of the
+     * given vertex. Only vertices sharing a band bucket are looked at.
+     *
+     * @param origin the vertex.
+     * @param k      how many vertices to return at most.
+     * @return the vertices, the most similar first. Empty if the origin does not
+     *         exist or has no neighbors.
+     */
+    public List<T> getSimilar(T origin, int k) {
+        List<T> result = new ArrayList<>();
+        for (int id : similarIds(graph.idOf(origin), k)) {
+            result.add(graph.labelOf(id));
+        }
+        return result;
+    }
+
+    /**
+     * Gets the ids of the vertices most similar to a vertex.
+     *
+     * @param id the id of the vertex.
+     * @param k  how many ids to return at most.
+     * @return the ids, the most similar first.
+     */
+    int[] similarIds(int id, int k) {
+        int[] signature = signatureOf(id);
+        if (signature == null || k <= 0) {
+            return new int[0];
+        }
+        IntHashSet seen = new IntHashSet();
+        seen.add(id);
+        TopK best = new TopK(k);
+        for (int band = 0; band < bands; band++) {
+            Bucket bucket = buckets.get(keyOf(signature, band));
+            for (int i = 0; bucket != null && i < bucket.size; i++) {
+                int other = bucket.ids[i];
+                if (seen.contains(other) == false) { // no duplicates
+                    seen.add(other);
+                    best.offer(other, estimate(id, other));
+                }
+            }
+        }
+        return best.drainBestFirst();
+    }
+
+    /**
+     * Gets the signature of an id.
+     *
+     * @param id the id.
+     * @return the signature, null if the vertex has no neighbors or does not
+     *         exist.
+     */
+    private int[] signatureOf(int id) {
+        if (id < 0 || id >= signatures.length) {
+            return null;
+        }
+        return signatures[id];
+    }
+
+    /**
+     * Lowers a signature with one new neighbor and moves the vertex to its new
+     * buckets if it changed.
+     *
+     * @param id       the vertex.
+     * @param neighbor the new neighbor.
+     */
+    private void lower(int id, int neighbor) {
+        if (id >= signatures.length) { // grow
+            signatures = Arrays.copyOf(signatures, Math.max(id + 1, signatures.length * 2));
+        }
+        int[] old = signatures[id];
+        int[] signature = (old == null) ? empty() : old.clone();
+        boolean changed = false;
+        for (int i = 0; i < signature.length; i++) {
+            int h = hash(i, neighbor);
+            if (h < signature[i]) {
+                signature[i] = h;
+                changed = true;
+            }
+        }
+        if (changed) {
+            if (old != null) {
+                delete(id, old);
+            }
+            signatures[id] = signature;
+            insert(id, signature);
+        }
+    }
+
+    /**
+     * Computes a signature again from the neighbors and moves the vertex to its
+     * new buckets.
+     *
+     * @param id   the vertex.
+     * @param skip a neighbor to leave out, -1 for none.
+     */
+    private void refresh(int id, int skip) {
+        if (id >= signatures.length) { // grow
+            signatures = Arrays.copyOf(signatures, Math.max(id + 1, signatures.length * 2));
+        }
+        if (signatures[id] != null) {
+            delete(id, signatures[id]);
+        }
+        signatures[id] = compute(id, skip);
+        if (signatures[id] != null) {
+            insert(id, signatures[id]);
+        }
+    }
+
+    /**
+     * Computes the signature of a vertex from its neighbors.
+     *
+     * @param id   the vertex.
+     * @param skip a neighbor to leave out, -1 for none.
+     * @return the signature, null if there are no neighbors.
+     */
+    private int[] compute(int id, int skip) {
+        Vertex<T> vertex = graph.vertexAt(id);
+        int[] neighborIds = vertex.neighborIds();
+        int degree = vertex.getNumberOfNeighbors();
+        int[] signature = null;
+        for (int j = 0; j < degree; j++) {
+            int neighbor = neighborIds[j];
+            if (neighbor == skip) {
+                continue;
+            }
+            if (signature == null) {
+                signature = empty();
+            }
+            for (int i = 0; i < signature.length; i++) {
+                signature[i] = Math.min(signature[i], hash(i, neighbor));
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * Makes the signature of an empty set.
+     *
+     * @return the signature, every position at its largest value.
+     */
+    private int[] empty() {
+        int[] signature = new int[seeds.length];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        return signature;
+    }
+
+    /**
+     * Puts a vertex into the bucket of every band of its signature.
+     *
+     * @param id        the vertex.
+     * @param signature its signature.
+     */
+    private void insert(int id, int[] signature) {
+        for (int band = 0; band < bands; band++) {
+            buckets.computeIfAbsent(keyOf(signature, band), key -> new Bucket()).add(id);
+        }
+    }
+
+    /**
+     * Takes a vertex out of the bucket of every band of its old signature.
+     *
+     * @param id        the vertex.
+     * @param signature its old signature.
+     */
+    private void delete(int id, int[] signature) {
+        for (int band = 0; band < bands; band++) {
+            Long key = keyOf(signature, band);
+            Bucket bucket = buckets.get(key);
+            if (bucket != null && bucket.remove(id) && bucket.size == 0) { // do not keep empty buckets
+                buckets.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Gets the bucket key of one band of a signature.
+     *
+     * @param signature the signature.
+     * @param band      the band.
+     * @return the band in the high half and the hash of its rows in the low half.
+     */
+    private long keyOf(int[] signature, int band) {
+        int h = 1;
+        for (int i = band * rows; i < (band + 1) * rows; i++) {
+            h = 31 * h + signature[i];
+        }
+        return ((long) band << 32) | (h & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Hashes a vertex id with one of the hash functions.
+     *
+     * @param i  which hash function.
+     * @param id the vertex id.
+     * @return the hash.
+     */
+    private int hash(int i, int id) {
+        long h = (id + 1) * 0x9E3779B97F4A7C15L ^ seeds[i]; // mix the bits well, ids are consecutive
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return (int) (h ^ (h >>> 33));
+    }
+
+    // INNER CLASS BELOW
+    // ___________________________________________________________________________________
+    /**
+     * The vertex ids in one bucket.
+     */
+    private static class Bucket {
+        /**
+         * The ids, only the first size are used.
+         */
+        private int[] ids = new int[2];
+
+        /**
+         * How many ids there are.
+         */
+        private int size = 0;
+
+        /**
+         * Adds an id.
+         *
+         * @param id the id.
+         */
+        private void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        /**
+         * Removes an id by moving the last one into its place.
+         *
+         * @param id the id.
+         * @return true if it was there, false otherwise.
+         */
+        private boolean remove(int id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    ids[i] = ids[--size];
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Computes the exact Jaccard similarity of the neighbor sets of two vertices.
+     *
+     * @param graph the graph.
+     * @param a     the first vertex id.
+     * @param b     the second vertex id.
+     * @return the size of the intersection over the size of the union.
+     */
+    private static double jaccard(Graph<Integer> graph, int a, int b) {
+        IntHashSet first = new IntHashSet();
+        Vertex<Integer> va = graph.vertexAt(a);
+        for (int i = 0; i < va.getNumberOfNeighbors(); i++) {
+            first.add(va.neighborIds()[i]);
+        }
+        IntHashSet second = new IntHashSet();
+        int shared = 0;
+        Vertex<Integer> vb = graph.vertexAt(b);
+        for (int i = 0; i < vb.getNumberOfNeighbors(); i++) {
+            int id = vb.neighborIds()[i];
+            if (second.contains(id) == false) {
+                second.add(id);
+                if (first.contains(id)) {
+                    shared++;
+                }
+            }
+        }
+        int union = first.size() + second.size() - shared;
+        return (union == 0) ? 0 : (double) shared / union;
+    }
+
+    /**
+     * Just for checking. Builds a network of overlapping groups and compares the
+     * top 10 similar vertices found by the index with the exact top 10 from
+     * comparing against every vertex, for recall and time per query.
+     *
+     * @param args not used.
+     */
+    public static void main(String[] args) {
+        int n = 20000;
+        int group = 40;
+        Random random = new Random(42);
+        Graph<Integer> graph = new Graph<>();
+        for (int i = 0; i < n; i++) {
+            graph.addVertex(i);
+        }
+        for (int i = 0; i < n; i++) {
+            for (int e = 0; e < 8; e++) { // mostly friends inside the group
+                int other = (random.nextInt(10) < 9) ? (i / group) * group + random.nextInt(group) : random.nextInt(n);
+                if (other != i && graph.hasEdge(i, other) == false) {
+                    graph.addEdge(i, other);
+                }
+            }
+        }
+
+        long start = System.nanoTime();
+        MinHashIndex<Integer> index = new MinHashIndex<>(graph, 32, 2);
+        System.out.printf("build: %.1f ms%n", (System.nanoTime() - start) / 1e6);
+
+        int queries = 200;
+        int k = 10;
+        long exactTime = 0;
+        long indexTime = 0;
+        double recall = 0;
+        for (int q = 0; q < queries; q++) {
+            int id = graph.idOf(random.nextInt(n));
+
+            start = System.nanoTime();
+            TopK exact = new TopK(k);
+            for (int other = 0; other < n; other++) {
+                if (other != id) {
+                    exact.offer(other, jaccard(graph, id, other));
+                }
+            }
+            int[] truth = exact.drainBestFirst();
+            exactTime += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int[] found = index.similarIds(id, k);
+            indexTime += System.nanoTime() - start;
+
+            IntHashSet hits = new IntHashSet();
+            for (int other : found) {
+                hits.add(other);
+            }
+            int matched = 0;
+            for (int other : truth) {
+                if (hits.contains(other)) {
+                    matched++;
+                }
+            }
+            recall += (double) matched / truth.length;
+        }
+        System.out.printf("exact: %.3f ms per query%n", exactTime / 1e6 / queries);
+        System.out.printf("index: %.3f ms per query%n", indexTime / 1e6 / queries);
+        System.out.printf("recall@%d: %.3f%n", k, recall / queries);
+    }
+
+}
@@ -0,0 +1,126 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Breadth-first searches from many sources that share one sweep of the graph
+ * (MS-BFS). Up to 64 searches run together: each vertex keeps a long whose bits
+ * say which of the searches have reached it, so a single look at an edge moves
+ * all of those searches forward at once.
+ *
+ * @author Rahima Adnan
+ */
+final class MultiSourceSearch {
+
+    /**
+     * No objects, only the static method.
+     */
+    private MultiSourceSearch() {
+    }
+
+    /**
+     * Gets the number of edges between every source and every target.
+     *
+     * @param <T>     our generic.
+     * @param graph   the graph to search.
+     * @param sources where the searches start.
+     * @param targets the vertices to measure the distance to.
+     * @return result[i][j] is the distance from source i to target j, the maximum
+     *         integer if there is no path or either vertex does not exist.
+     */
+    static <T> int[][] distances(Graph<T> graph, List<T> sources, List<T> targets) {
+        int[][] result = new int[sources.size()][targets.size()];
+        for (int[] row : result) {
+            Arrays.fill(row, Integer.MAX_VALUE);
+        }
+
+        int capacity = graph.idCapacity();
+        int[] targetHead = new int[capacity]; // the first target at each vertex
+        int[] targetNext = new int[targets.size()]; // the next target at the same vertex
+        Arrays.fill(targetHead, -1);
+        for (int j = 0; j < targets.size(); j++) {
+            int id = graph.idOf(targets.get(j));
+            if (id != -1) {
+                targetNext[j] = targetHead[id];
+                targetHead[id] = j;
+            }
+        }
+
+        long[] seen = new long[capacity];
+        long[] visit = new long[capacity];
+        long[] visitNext = new long[capacity];
+        int[] frontier = new int[capacity];
+        int[] nextFrontier = new int[capacity];
+
+        for (int first = 0; first < sources.size(); first += 64) { // 64 searches per sweep
+            int batch = Math.min(64, sources.size() - first);
+            Arrays.fill(seen, 0L);
+            int frontierSize = 0;
+            for (int bit = 0; bit < batch; bit++) {
+                int id = graph.idOf(sources.get(first + bit));
+                if (id == -1) { // no such source, its row stays at infinity
+                    continue;
+                }
+                if (visit[id] == 0) {
+                    frontier[frontierSize++] = id;
+                }
+                seen[id] |= 1L << bit;
+                visit[id] |= 1L << bit;
+                record(result, first, 1L << bit, targetHead[id], targetNext, 0);
+            }
+
+            for (int level = 1; frontierSize > 0; level++) {
+                int nextSize = 0;
+                for (int f = 0; f < frontierSize; f++) {
+                    int current = frontier[f];
+                    long bits = visit[current];
+                    Vertex<T> vertex = graph.vertexAt(current);
+                    int[] neighborIds = vertex.neighborIds();
+                    int degree = vertex.getNumberOfNeighbors();
+                    for (int i = 0; i < degree; i++) {
+                        int neighbor = neighborIds[i];
+                        long reached = bits & ~seen[neighbor]; // searches that get here for the first time
+                        if (reached != 0) {
+                            if (visitNext[neighbor] == 0) {
+                                nextFrontier[nextSize++] = neighbor;
+                            }
+                            visitNext[neighbor] |= reached;
+                            seen[neighbor] |= reached;
+                            record(result, first, reached, targetHead[neighbor], targetNext, level);
+                        }
+                    }
+                }
+
+                for (int f = 0; f < frontierSize; f++) { // this level is done
+                    visit[frontier[f]] = 0;
+                }
+                long[] swapBits = visit; // the next level becomes the current one
+                visit = visitNext;
+                visitNext = swapBits;
+                int[] swapList = frontier;
+                frontier = nextFrontier;
+                nextFrontier = swapList;
+                frontierSize = nextSize;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes a distance for every search in reached and every target at a vertex.
+     *
+     * @param result     the distance matrix.
+     * @param first      the source index of bit 0.
+     * @param reached    the searches that reached the vertex.
+     * @param target     the first target at the vertex, -1 if there is none.
+     * @param targetNext the next target at the same vertex.
+     * @param level      the distance.
+     */
+    private static void record(int[][] result, int first, long reached, int target, int[] targetNext, int level) {
+        for (; target != -1; target = targetNext[target]) {
+            for (long bits = reached; bits != 0; bits &= bits - 1) { // each set bit
+                result[first + Long.numberOfTrailingZeros(bits)][target] = level;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,304 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes PageRank over a graph snapshot by pull-based power iteration: every
+ * vertex adds up what its neighbors send it, so each rank is written by one
+ * thread only and no locks or atomics are needed. A weight is a distance, as
+ * in the rest of the graph, so a vertex sends its rank along its edges in
+ * proportion to 1 / (1 + weight): an unweighted edge (weight 0) counts fully
+ * and a far one counts for little. Vertices without edges spread theirs over
+ * everyone. The work is split into one range of vertices per thread of a
+ * ForkJoinPool, with about the same number of edges in each. Every iteration
+ * runs the ranges in the pool and waits for all of them, so a failure in any
+ * range is thrown to the caller. The two rank arrays are swapped instead of
+ * allocated, so an iteration allocates only its small tasks.
+ *
+ * @param <T> our generic.
+ * @author Rahima Adnan
+ */
+public class PageRank<T> {
+    /**
+     * The chance of following an edge instead of jumping to a random vertex.
+     */
+    public static final double DAMPING = 0.85;
+
+    /**
+     * The graph to rank.
+     */
+    private final GraphSnapshot<T> snapshot;
+
+    /**
+     * The pool the work runs in.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * The share of the rank of the neighbor at the same position in the
+     * neighbors of the snapshot that it sends along that edge.
+     */
+    private double[] shares;
+
+    /**
+     * The ranks of the last iteration, by snapshot id.
+     */
+    private double[] ranks;
+
+    /**
+     * The ranks being computed in this iteration.
+     */
+    private double[] nextRanks;
+
+    /**
+     * The first vertex of every range, with one extra slot at the end.
+     */
+    private int[] bounds;
+
+    /**
+     * How much the ranks of each range changed in this iteration.
+     */
+    private double[] partialChange;
+
+    /**
+     * The new rank of the vertices without edges of each range.
+     */
+    private double[] partialDangling;
+
+    /**
+     * The rank of the vertices without edges in the last iteration.
+     */
+    private double dangling;
+
+    /**
+     * How many iterations were run.
+     */
+    private int iterations;
+
+    /**
+     * Constructor that runs in the common pool.
+     *
+     * @param snapshot the graph to rank.
+     */
+    public PageRank(GraphSnapshot<T> snapshot) {
+        this(snapshot, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Simple constructor.
+     *
+     * @param snapshot the graph to rank.
+     * @param pool     the pool to run in.
+     */
+    public PageRank(GraphSnapshot<T> snapshot, ForkJoinPool pool) {
+        this.snapshot = snapshot;
+        this.pool = pool;
+    }
+
+    /**
+     * Gets how many iterations the last run took.
+     *
+     * @return the number of iterations.
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Runs power iterations until the ranks change by less than the tolerance in
+     * total, or maxIterations were run.
+     *
+     * @param tolerance     the total change at which to stop.
+     * @param maxIterations the most iterations to run.
+     * @return the rank of every vertex by snapshot id, adding up to 1.
+     */
+    public synchronized double[] compute(double tolerance, int maxIterations) {
+        int size = snapshot.getNumberOfVertices();
+        if (size == 0) {
+            return new double[0];
+        }
+        prepare();
+        int workers = Math.min(pool.getParallelism(), size);
+        bounds = balance(workers);
+        partialChange = new double[workers];
+        partialDangling = new double[workers];
+        iterations = 0;
+
+        double change;
+        do {
+            pool.invoke(new Step(0, workers)); // throws what any range threw
+            change = 0;
+            double nextDangling = 0;
+            for (int w = 0; w < workers; w++) {
+                change += partialChange[w];
+                nextDangling += partialDangling[w];
+            }
+            double[] temp = ranks;
+            ranks = nextRanks;
+            nextRanks = temp;
+            dangling = nextDangling;
+            iterations++;
+        } while (change >= tolerance && iterations < maxIterations);
+        return ranks;
+    }
+
+    /**
+     * Gets the vertices with the highest rank.
+     *
+     * @param k             how many vertices to return at most.
+     * @param tolerance     the total change at which to stop.
+     * @param maxIterations the most iterations to run.
+     * @return the vertices, the highest rank first.
+     */
+    public List<T> getMostInfluential(int k, double tolerance, int maxIterations) {
+        double[] result = compute(tolerance, maxIterations);
+        TopK best = new TopK(k);
+        for (int id = 0; id < result.length; id++) {
+            best.offer(id, result[id]);
+        }
+        List<T> labels = new ArrayList<>();
+        for (int id : best.drainBestFirst()) {
+            labels.add(snapshot.labelOf(id));
+        }
+        return labels;
+    }
+
+    /**
+     * Runs one iteration for one range of vertices.
+     *
+     * @param worker which range.
+     */
+    private void work(int worker) {
+        int[] offsets = snapshot.offsets();
+        int[] neighbors = snapshot.neighbors();
+        int size = offsets.length - 1;
+        double[] from = ranks;
+        double[] to = nextRanks;
+        double jump = (1 - DAMPING) / size + DAMPING * dangling / size;
+        double change = 0;
+        double lost = 0;
+        for (int v = bounds[worker]; v < bounds[worker + 1]; v++) {
+            double sum = 0;
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                sum += from[neighbors[e]] * shares[e];
+            }
+            double rank = jump + DAMPING * sum;
+            to[v] = rank;
+            change += Math.abs(rank - from[v]);
+            if (offsets[v] == offsets[v + 1]) { // no edges, its rank goes to everyone
+                lost += rank;
+            }
+        }
+        partialChange[worker] = change;
+        partialDangling[worker] = lost;
+    }
+
+    /**
+     * Fills the starting ranks and the share of every edge.
+     */
+    private void prepare() {
+        int[] offsets = snapshot.offsets();
+        int[] neighbors = snapshot.neighbors();
+        double[] weights = snapshot.weights();
+        int size = offsets.length - 1;
+
+        double[] sent = new double[size]; // what each vertex divides its rank by
+        for (int u = 0; u < size; u++) {
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                sent[u] += strength(weights[e]);
+            }
+        }
+        if (shares == null) {
+            shares = new double[offsets[size]];
+            for (int e = 0; e < shares.length; e++) { // the edge from neighbors[e] has the same weight
+                shares[e] = strength(weights[e]) / sent[neighbors[e]];
+            }
+            nextRanks = new double[size];
+            ranks = new double[size];
+        }
+
+        dangling = 0;
+        for (int u = 0; u < size; u++) {
+            ranks[u] = 1.0 / size;
+            if (offsets[u] == offsets[u + 1]) {
+                dangling += ranks[u];
+            }
+        }
+    }
+
+    /**
+     * Turns the weight of an edge, a distance, into how strong the tie is.
+     *
+     * @param weight the weight, not negative.
+     * @return the strength, 1 for an unweighted edge and less the farther apart.
+     */
+    private static double strength(double weight) {
+        return 1 / (1 + weight);
+    }
+
+    /**
+     * Splits the vertices into ranges with about the same number of edges.
+     *
+     * @param workers how many ranges.
+     * @return the first vertex of every range, and the number of vertices.
+     */
+    private int[] balance(int workers) {
+        int[] offsets = snapshot.offsets();
+        int size = offsets.length - 1;
+        int[] result = new int[workers + 1];
+        long work = (long) offsets[size] + size; // every vertex costs a little too
+        int v = 0;
+        for (int w = 1; w < workers; w++) {
+            long target = work * w / workers;
+            while (v < size && (long) offsets[v] + v < target) {
+                v++;
+            }
+            result[w] = v;
+        }
+        result[workers] = size;
+        return result;
+    }
+
+    // INNER CLASS BELOW
+    // ___________________________________________________________________________________
+    /**
+     * Runs one iteration for a span of ranges, splitting until one range is left.
+     */
+    @SuppressWarnings("serial")
+    private class Step extends RecursiveAction {
+        /**
+         * The first range.
+         */
+        private final int low;
+
+        /**
+         * One past the last range.
+         */
+        private final int high;
+
+        /**
+         * Simple constructor.
+         *
+         * @param low  the first range.
+         * @param high one past the last range.
+         */
+        private Step(int low, int high) {
+            this.low = low;
+            this.high = high;
+        }
+
+        /**
+         * Splits in half until one range is left, then runs it.
+         */
+        protected void compute() {
+            if (high - low > 1) {
+                int middle = (low + high) >>> 1;
+                invokeAll(new Step(low, middle), new Step(middle, high));
+                return;
+            }
+            work(low);
+        }
+    }
+
+}
@@ -0,0 +1,457 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A parallel, level-synchronous breadth-first search over a graph snapshot.
+ * Each level is either expanded top-down (the frontier looks at its neighbors)
+ * or bottom-up (every unvisited vertex looks for a parent in the frontier),
+ * whichever touches fewer edges, as described by Beamer et al. The work of a
+ * level is split into chunks that a ForkJoinPool balances by work stealing, and
+ * visited vertices are kept in an atomic bitset.
+ *
+ * @param <T> our generic.
+ * @author Rahima Adnan
+ */
+public class ParallelBreadthFirstSearch<T> {
+    /**
+     * Switch to bottom-up once the frontier has more than 1/ALPHA of the edges
+     * that are still unexplored.
+     */
+    private static final int ALPHA = 14;
+
+    /**
+     * Switch back to top-down once the frontier has fewer than 1/BETA of the
+     * vertices.
+     */
+    private static final int BETA = 24;
+
+    /**
+     * How many vertices a single task handles before it splits.
+     */
+    private static final int CHUNK = 2048;
+
+    /**
+     * The graph to search.
+     */
+    private final GraphSnapshot<T> snapshot;
+
+    /**
+     * The pool the levels run in.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor that uses the common pool.
+     *
+     * @param snapshot the graph to search.
+     */
+    public ParallelBreadthFirstSearch(GraphSnapshot<T> snapshot) {
+        this(snapshot, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Simple constructor.
+     *
+     * @param snapshot the graph to search.
+     * @param pool     the pool to run in.
+     */
+    public ParallelBreadthFirstSearch(GraphSnapshot<T> snapshot, ForkJoinPool pool) {
+        this.snapshot = snapshot;
+        this.pool = pool;
+    }
+
+    /**
+     * Gets how many edges every vertex is from the origin. The result is the same
+     * as GraphSnapshot.getLevels, only computed in parallel.
+     *
+     * @param origin where to start.
+     * @return the level of each vertex indexed by snapshot id, -1 for vertices that
+     *         can not be reached. All -1 if the origin does not exist.
+     */
+    public int[] getLevels(T origin) {
+        int size = snapshot.getNumberOfVertices();
+        int[] offsets = snapshot.offsets();
+        int[] levels = new int[size];
+        Arrays.fill(levels, -1);
+        int start = snapshot.idOf(origin);
+        if (start == -1) {
+            return levels;
+        }
+
+        AtomicLongArray visited = new AtomicLongArray((size + 63) >>> 6);
+        long[] frontierBits = new long[(size + 63) >>> 6];
+        int[] frontier = new int[size];
+        int[] next = new int[size];
+        AtomicInteger nextSize = new AtomicInteger();
+        AtomicLong nextEdges = new AtomicLong();
+
+        setBit(visited, start);
+        levels[start] = 0;
+        frontier[0] = start;
+        int frontierSize = 1;
+        long frontierEdges = offsets[start + 1] - offsets[start];
+        long unexploredEdges = offsets[size] - frontierEdges;
+        boolean bottomUp = false;
+
+        for (int level = 0; frontierSize > 0; level++) {
+            if (bottomUp == false && frontierEdges > unexploredEdges / ALPHA) { // the frontier is big
+                bottomUp = true;
+            } else if (bottomUp && frontierSize < size / BETA) { // the frontier is small again
+                bottomUp = false;
+            }
+
+            nextSize.set(0);
+            nextEdges.set(0);
+            if (bottomUp) {
+                Arrays.fill(frontierBits, 0L);
+                for (int i = 0; i < frontierSize; i++) {
+                    frontierBits[frontier[i] >>> 6] |= 1L << frontier[i];
+                }
+                pool.invoke(new BottomUpStep(0, size, level + 1, frontierBits, visited, levels, next, nextSize,
+                        nextEdges));
+            } else {
+                pool.invoke(new TopDownStep(0, frontierSize, level + 1, frontier, visited, levels, next, nextSize,
+                        nextEdges));
+            }
+
+            int[] swap = frontier; // the next level becomes the frontier
+            frontier = next;
+            next = swap;
+            frontierSize = nextSize.get();
+            frontierEdges = nextEdges.get();
+            unexploredEdges -= frontierEdges;
+        }
+        return levels;
+    }
+
+    /**
+     * Sets a bit unless it was already set.
+     *
+     * @param bits the bitset.
+     * @param id   the bit.
+     * @return true if this call set it, false if it was already set.
+     */
+    private static boolean setBit(AtomicLongArray bits, int id) {
+        int word = id >>> 6;
+        long mask = 1L << id;
+        long old = bits.get(word);
+        while ((old & mask) == 0) {
+            if (bits.compareAndSet(word, old, old | mask)) {
+                return true;
+            }
+            old = bits.get(word);
+        }
+        return false;
+    }
+
+    /**
+     * Copies the vertices a chunk found into the shared next frontier. The chunk
+     * reserves its block with one atomic add.
+     *
+     * @param found     the vertices the chunk found.
+     * @param count     how many it found.
+     * @param edges     the total degree of those vertices.
+     * @param next      the next frontier.
+     * @param nextSize  how much of next is used.
+     * @param nextEdges the total degree of next.
+     */
+    private static void publish(int[] found, int count, long edges, int[] next, AtomicInteger nextSize,
+            AtomicLong nextEdges) {
+        if (count == 0) {
+            return;
+        }
+        int at = nextSize.getAndAdd(count);
+        System.arraycopy(found, 0, next, at, count);
+        nextEdges.addAndGet(edges);
+    }
+
+    // INNER CLASS BELOW
+    // ___________________________________________________________________________________
+    /**
+     * Expands part of the frontier by looking at the neighbors of each vertex.
+     */
+    @SuppressWarnings("serial")
+    private class TopDownStep extends RecursiveAction {
+        /**
+         * First frontier position of this chunk.
+         */
+        private final int low;
+
+        /**
+         * One past the last frontier position of this chunk.
+         */
+        private final int high;
+
+        /**
+         * The level the new vertices get.
+         */
+        private final int level;
+
+        /**
+         * The current frontier.
+         */
+        private final int[] frontier;
+
+        /**
+         * The visited bitset.
+         */
+        private final AtomicLongArray visited;
+
+        /**
+         * The level of every vertex.
+         */
+        private final int[] levels;
+
+        /**
+         * The next frontier.
+         */
+        private final int[] next;
+
+        /**
+         * How much of next is used.
+         */
+        private final AtomicInteger nextSize;
+
+        /**
+         * The total degree of next.
+         */
+        private final AtomicLong nextEdges;
+
+        /**
+         * Simple constructor.
+         *
+         * @param low       first frontier position.
+         * @param high      one past the last frontier position.
+         * @param level     the level the new vertices get.
+         * @param frontier  the current frontier.
+         * @param visited   the visited bitset.
+         * @param levels    the level of every vertex.
+         * @param next      the next frontier.
+         * @param nextSize  how much of next is used.
+         * @param nextEdges the total degree of next.
+         */
+        private TopDownStep(int low, int high, int level, int[] frontier, AtomicLongArray visited, int[] levels,
+                int[] next, AtomicInteger nextSize, AtomicLong nextEdges) {
+            this.low = low;
+            this.high = high;
+            this.level = level;
+            this.frontier = frontier;
+            this.visited = visited;
+            this.levels = levels;
+            this.next = next;
+            this.nextSize = nextSize;
+            this.nextEdges = nextEdges;
+        }
+
+        /**
+         * Splits in half until the chunk is small, then expands it.
+         */
+        protected void compute() {
+            if (high - low > CHUNK) {
+                int middle = (low + high) >>> 1;
+                invokeAll(new TopDownStep(low, middle, level, frontier, visited, levels, next, nextSize, nextEdges),
+                        new TopDownStep(middle, high, level, frontier, visited, levels, next, nextSize, nextEdges));
+                return;
+            }
+
+            int[] offsets = snapshot.offsets();
+            int[] neighbors = snapshot.neighbors();
+            int[] found = new int[64];
+            int count = 0;
+            long edges = 0;
+            for (int i = low; i < high; i++) {
+                int current = frontier[i];
+                for (int e = offsets[current]; e < offsets[current + 1]; e++) {
+                    int neighbor = neighbors[e];
+                    if (setBit(visited, neighbor)) { // this chunk claimed it
+                        levels[neighbor] = level;
+                        if (count == found.length) {
+                            found = Arrays.copyOf(found, count * 2);
+                        }
+                        found[count++] = neighbor;
+                        edges += offsets[neighbor + 1] - offsets[neighbor];
+                    }
+                }
+            }
+            publish(found, count, edges, next, nextSize, nextEdges);
+        }
+    }
+
+    // INNER CLASS BELOW
+    // ___________________________________________________________________________________
+    /**
+     * Finds a parent in the frontier for every unvisited vertex of a range.
+     */
+    @SuppressWarnings("serial")
+    private class BottomUpStep extends RecursiveAction {
+        /**
+         * First vertex id of this chunk.
+         */
+        private final int low;
+
+        /**
+         * One past the last vertex id of this chunk.
+         */
+        private final int high;
+
+        /**
+         * The level the new vertices get.
+         */
+        private final int level;
+
+        /**
+         * The current frontier as a bitset.
+         */
+        private final long[] frontierBits;
+
+        /**
+         * The visited bitset.
+         */
+        private final AtomicLongArray visited;
+
+        /**
+         * The level of every vertex.
+         */
+        private final int[] levels;
+
+        /**
+         * The next frontier.
+         */
+        private final int[] next;
+
+        /**
+         * How much of next is used.
+         */
+        private final AtomicInteger nextSize;
+
+        /**
+         * The total degree of next.
+         */
+        private final AtomicLong nextEdges;
+
+        /**
+         * Simple constructor.
+         *
+         * @param low          first vertex id.
+         * @param high         one past the last vertex id.
+         * @param level        the level the new vertices get.
+         * @param frontierBits the current frontier as a bitset.
+         * @param visited      the visited bitset.
+         * @param levels       the level of every vertex.
+         * @param next         the next frontier.
+         * @param nextSize     how much of next is used.
+         * @param nextEdges    the total degree of next.
+         */
+        private BottomUpStep(int low, int high, int level, long[] frontierBits, AtomicLongArray visited,
+                int[] levels, int[] next, AtomicInteger nextSize, AtomicLong nextEdges) {
+            this.low = low;
+            this.high = high;
+            this.level = level;
+            this.frontierBits = frontierBits;
+            this.visited = visited;
+            this.levels = levels;
+            this.next = next;
+            this.nextSize = nextSize;
+            this.nextEdges = nextEdges;
+        }
+
+        /**
+         * Splits in half until the chunk is small, then searches it. Splits land on
+         * multiples of 64 so no two chunks share a word of the visited bitset.
+         */
+        protected void compute() {
+            if (high - low > CHUNK) {
+                int middle = ((low + high) >>> 1) & ~63;
+                invokeAll(new BottomUpStep(low, middle, level, frontierBits, visited, levels, next, nextSize,
+                        nextEdges),
+                        new BottomUpStep(middle, high, level, frontierBits, visited, levels, next, nextSize,
+                                nextEdges));
+                return;
+            }
+
+            int[] offsets = snapshot.offsets();
+            int[] neighbors = snapshot.neighbors();
+            int[] found = new int[64];
+            int count = 0;
+            long edges = 0;
+            for (int current = low; current < high; current++) {
+                if ((visited.get(current >>> 6) & (1L << current)) != 0) { // already has a level
+                    continue;
+                }
+                for (int e = offsets[current]; e < offsets[current + 1]; e++) {
+                    int neighbor = neighbors[e];
+                    if ((frontierBits[neighbor >>> 6] & (1L << neighbor)) != 0) { // found a parent, stop looking
+                        setBit(visited, current);
+                        levels[current] = level;
+                        if (count == found.length) {
+                            found = Arrays.copyOf(found, count * 2);
+                        }
+                        found[count++] = current;
+                        edges += offsets[current + 1] - offsets[current];
+                        break;
+                    }
+                }
+            }
+            publish(found, count, edges, next, nextSize, nextEdges);
+        }
+    }
+
+    /**
+     * Scaling benchmark. Builds a random graph with a few very popular vertices,
+     * checks that the parallel levels match the sequential ones, and times both
+     * with more and more threads.
+     *
+     * @param args optional number of vertices and number of edges.
+     */
+    public static void main(String[] args) {
+        int vertices = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int edges = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+
+        Graph<Integer> graph = new Graph<>();
+        for (int i = 0; i < vertices; i++) {
+            graph.addVertex(i);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < edges; i++) {
+            // squaring skews the ends towards small ids, so they become hubs
+            double skew = random.nextDouble();
+            int a = (int) (skew * skew * vertices);
+            int b = random.nextInt(vertices);
+            graph.addEdgeById(graph.idOf(a), graph.idOf(b));
+        }
+        GraphSnapshot<Integer> snapshot = graph.snapshot();
+        System.out.println("vertices " + snapshot.getNumberOfVertices() + ", edges " + graph.getNumberOfEdges() / 2);
+
+        int[] expected = snapshot.getLevels(0);
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < 20; run++) {
+            long begin = System.nanoTime();
+            snapshot.getLevels(0);
+            best = Math.min(best, System.nanoTime() - begin);
+        }
+        System.out.printf("sequential: %.2f ms%n", best / 1e6);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            ParallelBreadthFirstSearch<Integer> search = new ParallelBreadthFirstSearch<>(snapshot, pool);
+            if (Arrays.equals(expected, search.getLevels(0)) == false) {
+                System.out.println("levels do not match with " + threads + " threads");
+            }
+            best = Long.MAX_VALUE;
+            for (int run = 0; run < 20; run++) {
+                long begin = System.nanoTime();
+                search.getLevels(0);
+                best = Math.min(best, System.nanoTime() - begin);
+            }
+            System.out.printf("%d threads: %.2f ms%n", threads, best / 1e6);
+            pool.shutdown();
+        }
+    }
+
+}
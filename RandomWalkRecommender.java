@@ -0,0 +1,223 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Suggests vertices with personalized PageRank, estimated by Monte Carlo
+ * random walks with restart. A walk starts at the origin, moves to a random
+ * neighbor at every step and jumps back to the origin with a small
+ * probability, so vertices it visits often are close to the origin in many
+ * ways, even three or more edges away. The walks are split into chunks that
+ * run in parallel. Each chunk has its own random generator and its own visit
+ * counts, so the chunks share nothing until the counts are added up.
+ * The walks run on a snapshot, or directly on a graph that nobody changes
+ * meanwhile, which saves building a snapshot after every change.
+ *
+ * @param <T> our generic.
+ * @author Rahima Adnan
+ */
+public class RandomWalkRecommender<T> {
+    /**
+     * The chance that a step jumps back to the origin.
+     */
+    public static final double RESTART_PROBABILITY = 0.15;
+
+    /**
+     * How many walks a single task runs before it splits.
+     */
+    private static final int CHUNK = 256;
+
+    /**
+     * The snapshot to walk, null when walking a graph.
+     */
+    private final GraphSnapshot<T> snapshot;
+
+    /**
+     * The graph to walk, null when walking a snapshot.
+     */
+    private final Graph<T> graph;
+
+    /**
+     * How many walks to run for each recommendation.
+     */
+    private final int walks;
+
+    /**
+     * How many steps each walk takes.
+     */
+    private final int walkLength;
+
+    /**
+     * Simple constructor. More and longer walks give better suggestions but take
+     * longer.
+     *
+     * @param snapshot   the graph to walk.
+     * @param walks      how many walks to run for each recommendation.
+     * @param walkLength how many steps each walk takes.
+     */
+    public RandomWalkRecommender(GraphSnapshot<T> snapshot, int walks, int walkLength) {
+        this.snapshot = snapshot;
+        this.graph = null;
+        this.walks = walks;
+        this.walkLength = walkLength;
+    }
+
+    /**
+     * Constructor that walks a graph directly. The graph must not change while a
+     * recommendation is made.
+     *
+     * @param graph      the graph to walk.
+     * @param walks      how many walks to run for each recommendation.
+     * @param walkLength how many steps each walk takes.
+     */
+    public RandomWalkRecommender(Graph<T> graph, int walks, int walkLength) {
+        this.snapshot = null;
+        this.graph = graph;
+        this.walks = walks;
+        this.walkLength = walkLength;
+    }
+
+    /**
+     * Gets the vertices the walks visited the most, leaving out the origin and its
+     * neighbors.
+     *
+     * @param origin where the walks start.
+     * @param k      how many vertices to return at most.
+     * @return the vertices, the most visited first. Empty if the origin does not
+     *         exist or no other vertex was visited.
+     */
+    public List<T> recommend(T origin, int k) {
+        List<T> result = new ArrayList<>();
+        int start = (graph == null) ? snapshot.idOf(origin) : graph.idOf(origin);
+        if (start == -1 || k <= 0 || walks <= 0) {
+            return result;
+        }
+
+        IntIntHashMap visits = ForkJoinPool.commonPool()
+                .invoke(new WalkTask(start, 0, walks, new SplittableRandom()));
+
+        IntHashSet skip = new IntHashSet(); // the origin and its neighbors are not suggestions
+        skip.add(start);
+        for (int i = 0; i < degreeOf(start); i++) {
+            skip.add(neighborOf(start, i));
+        }
+
+        TopK best = new TopK(k);
+        for (int slot = 0; slot < visits.slots(); slot++) {
+            int id = visits.keyAt(slot);
+            if (id != -1 && skip.contains(id) == false) {
+                best.offer(id, visits.valueAt(slot));
+            }
+        }
+        for (int id : best.drainBestFirst()) {
+            result.add((graph == null) ? snapshot.labelOf(id) : graph.labelOf(id));
+        }
+        return result;
+    }
+
+    /**
+     * Gets the number of neighbors of an id.
+     *
+     * @param id the id.
+     * @return the number of neighbors.
+     */
+    private int degreeOf(int id) {
+        if (graph == null) {
+            int[] offsets = snapshot.offsets();
+            return offsets[id + 1] - offsets[id];
+        }
+        return graph.vertexAt(id).getNumberOfNeighbors();
+    }
+
+    /**
+     * Gets one neighbor of an id.
+     *
+     * @param id    the id.
+     * @param index which neighbor, from 0 to the number of neighbors.
+     * @return the id of the neighbor.
+     */
+    private int neighborOf(int id, int index) {
+        if (graph == null) {
+            return snapshot.neighbors()[snapshot.offsets()[id] + index];
+        }
+        return graph.vertexAt(id).neighborIds()[index];
+    }
+
+    // INNER CLASS BELOW
+    // ___________________________________________________________________________________
+    /**
+     * Runs a range of walks and counts the visits.
+     */
+    @SuppressWarnings("serial")
+    private class WalkTask extends RecursiveTask<IntIntHashMap> {
+        /**
+         * The id the walks start from.
+         */
+        private final int start;
+
+        /**
+         * The first walk of this task.
+         */
+        private final int low;
+
+        /**
+         * One past the last walk of this task.
+         */
+        private final int high;
+
+        /**
+         * The random generator of this task, not shared with any other task.
+         */
+        private final SplittableRandom random;
+
+        /**
+         * Simple constructor.
+         *
+         * @param start  the id the walks start from.
+         * @param low    the first walk.
+         * @param high   one past the last walk.
+         * @param random the random generator of this task.
+         */
+        private WalkTask(int start, int low, int high, SplittableRandom random) {
+            this.start = start;
+            this.low = low;
+            this.high = high;
+            this.random = random;
+        }
+
+        /**
+         * Splits in half until the range is small, then walks.
+         *
+         * @return the visit count of every id.
+         */
+        protected IntIntHashMap compute() {
+            if (high - low > CHUNK) {
+                int middle = (low + high) >>> 1;
+                WalkTask right = new WalkTask(start, middle, high, random.split()); // split before forking
+                WalkTask left = new WalkTask(start, low, middle, random);
+                right.fork();
+                IntIntHashMap counts = left.compute();
+                counts.addAll(right.join());
+                return counts;
+            }
+
+            IntIntHashMap counts = new IntIntHashMap();
+            for (int walk = low; walk < high; walk++) {
+                int current = start;
+                for (int step = 0; step < walkLength; step++) {
+                    int degree = degreeOf(current);
+                    if (degree == 0 || random.nextDouble() < RESTART_PROBABILITY) { // back to the origin
+                        current = start;
+                        continue;
+                    }
+                    current = neighborOf(current, random.nextInt(degree));
+                    counts.addTo(current, 1);
+                }
+            }
+            return counts;
+        }
+    }
+
+}
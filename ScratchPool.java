@@ -0,0 +1,84 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Reusable scratch memory, like the traversal arrays of a graph, shared by the
+ * threads that need it. A thread takes one for a single call and gives it back
+ * when done, so there are never more than the calls running at once, and at most
+ * a few per processor are kept while nobody uses them. Unlike a ThreadLocal this
+ * also works for virtual threads, where every request has a thread of its own
+ * that would otherwise build and then drop its own scratch.
+ *
+ * @param <S> our generic.
+ * @author Rahima Adnan
+ */
+class ScratchPool<S> {
+    /**
+     * The scratches nobody is using.
+     */
+    private final ConcurrentLinkedQueue<S> idle = new ConcurrentLinkedQueue<>();
+
+    /**
+     * How many scratches are in idle.
+     */
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    /**
+     * The most scratches kept in idle.
+     */
+    private final int limit;
+
+    /**
+     * Makes a new scratch when none is idle.
+     */
+    private final Supplier<S> factory;
+
+    /**
+     * Constructor that keeps two idle scratches per processor.
+     *
+     * @param factory makes a new scratch.
+     */
+    ScratchPool(Supplier<S> factory) {
+        this(factory, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Simple constructor.
+     *
+     * @param factory makes a new scratch.
+     * @param limit   the most scratches kept while nobody uses them.
+     */
+    ScratchPool(Supplier<S> factory, int limit) {
+        this.factory = factory;
+        this.limit = limit;
+    }
+
+    /**
+     * Takes an idle scratch, or makes a new one.
+     *
+     * @return the scratch, only for the caller until it is given back.
+     */
+    S take() {
+        S scratch = idle.poll();
+        if (scratch == null) {
+            return factory.get();
+        }
+        idleCount.decrementAndGet();
+        return scratch;
+    }
+
+    /**
+     * Gives a scratch back, or drops it if enough are kept already.
+     *
+     * @param scratch the scratch, not used by the caller anymore.
+     */
+    void give(S scratch) {
+        if (idleCount.incrementAndGet() <= limit) {
+            idle.offer(scratch);
+        } else {
+            idleCount.decrementAndGet();
+        }
+    }
+
+}
@@ -0,0 +1,1678 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.Stack;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A graph split into shards by the hash of the vertex labels. Every shard owns
+ * its vertices and their edges and runs on a thread of its own, and the only
+ * way to reach a shard is to put a request in its inbox and wait for the reply.
+ * An edge is kept by both of its ends, and an end on another shard is kept as a
+ * reference, the number of that shard and the label, so no shard ever holds an
+ * object of another. The requests carry only labels, numbers and batches of
+ * those, so a shard could later run in another process with the inbox replaced
+ * by a connection.
+ * Breadth-first traversals and shortest paths run one level at a time: the
+ * shards owning the frontier list its neighbors, grouped by the shard that owns
+ * each neighbor, and the owners mark which ones they see for the first time,
+ * which become the next frontier. Each neighbor is ranked by where it was found
+ * (its parent's place in the frontier, then its place among the parent's
+ * neighbors), and the lowest rank wins, so a traversal comes out in exactly the
+ * order Graph gives.
+ * Queries about a few vertices, such as the neighbors of one, go to their
+ * shards alone, and the degree queries are answered by every shard for its own
+ * vertices and merged. Nothing ever gathers the whole graph in one place.
+ * Like Graph, the sharded graph does no locking across shards: a change to an
+ * edge or a vertex is a few requests in a row, so callers making changes from
+ * several threads lock around them, as MasonConnect does. Queries may run at
+ * the same time as each other.
+ *
+ * @param <T> our generic.
+ * @author Rahima Adnan
+ */
+public class ShardedGraph<T> implements GraphInterface<T>, AutoCloseable {
+    /**
+     * Adds a vertex, replies whether it was added.
+     */
+    private static final int ADD_VERTEX = 0;
+
+    /**
+     * Removes a vertex, replies with its edges or null.
+     */
+    private static final int REMOVE_VERTEX = 1;
+
+    /**
+     * Removes the edges other shards' vertices had to a removed vertex.
+     */
+    private static final int DETACH = 2;
+
+    /**
+     * Sees whether a vertex is there.
+     */
+    private static final int CONTAINS = 3;
+
+    /**
+     * Adds one end of an edge, replies whether it was added.
+     */
+    private static final int LINK = 4;
+
+    /**
+     * Removes one end of an edge, replies with its weight or null.
+     */
+    private static final int UNLINK = 5;
+
+    /**
+     * Sees whether a vertex has an edge to another.
+     */
+    private static final int HAS_EDGE = 6;
+
+    /**
+     * Replies with the number of vertices and of edge ends.
+     */
+    private static final int COUNT = 7;
+
+    /**
+     * Replies with the labels of the vertices.
+     */
+    private static final int LABELS = 8;
+
+    /**
+     * Removes everything.
+     */
+    private static final int CLEAR = 9;
+
+    /**
+     * Starts a search at a vertex, replies whether it is there.
+     */
+    private static final int START = 10;
+
+    /**
+     * Lists the neighbors of part of a frontier, grouped by owner.
+     */
+    private static final int EXPAND = 11;
+
+    /**
+     * Marks the neighbors a search reaches for the first time.
+     */
+    private static final int CLAIM = 12;
+
+    /**
+     * Replies with the vertex a search reached a vertex from.
+     */
+    private static final int PARENT = 13;
+
+    /**
+     * Forgets a search.
+     */
+    private static final int FINISH = 14;
+
+    /**
+     * Replies with the neighbors of a vertex.
+     */
+    private static final int NEIGHBORS = 15;
+
+    /**
+     * Replies with the vertices of the shard with the most neighbors.
+     */
+    private static final int TOP_DEGREES = 16;
+
+    /**
+     * Replies with the degree histogram of the shard.
+     */
+    private static final int HISTOGRAM = 17;
+
+    /**
+     * Stops the thread of the shard.
+     */
+    private static final int STOP = 18;
+
+    /**
+     * The shards.
+     */
+    private final Shard<T>[] shards;
+
+    /**
+     * The number the next search gets.
+     */
+    private final AtomicLong searches = new AtomicLong();
+
+    /**
+     * Simple constructor, starts the thread of every shard.
+     *
+     * @param shards how many shards to split the graph into.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ShardedGraph(int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("at least one shard is needed");
+        }
+        this.shards = new Shard[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new Shard<>(i, shards);
+        }
+    }
+
+    /**
+     * Gets how many shards the graph is split into.
+     *
+     * @return the number of shards.
+     */
+    public int getNumberOfShards() {
+        return shards.length;
+    }
+
+    /**
+     * Gets the shard that owns a vertex.
+     *
+     * @param vertexLabel the label of the vertex.
+     * @return the number of the shard.
+     */
+    public int shardOf(T vertexLabel) {
+        int hash = vertexLabel.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+    }
+
+    /**
+     * Adds a given vertex to this graph. If vertexLabel is null, it returns false.
+     *
+     * @param vertexLabel the label of the vertex we are adding.
+     * @return boolean to see if it was added sucessfully.
+     */
+    public boolean addVertex(T vertexLabel) {
+        if (vertexLabel == null) { // the label cant be null
+            return false;
+        }
+        Request request = new Request(ADD_VERTEX);
+        request.label = vertexLabel;
+        return (Boolean) ask(shardOf(vertexLabel), request);
+    }
+
+    /**
+     * Removes a vertex with the given vertexLabel from this graph, and its edges
+     * from the shards of its neighbors.
+     *
+     * @param vertexLabel the label of the vertex we are removing.
+     * @return the removed vertex, which only carries the label, or null if it
+     *         does not exist.
+     */
+    public VertexInterface<T> removeVertex(T vertexLabel) {
+        if (vertexLabel == null) { // cant remove a null value
+            return null;
+        }
+        Request request = new Request(REMOVE_VERTEX);
+        request.label = vertexLabel;
+        Edges edges = (Edges) ask(shardOf(vertexLabel), request);
+        if (edges == null) { // its not in the graph in the first place
+            return null;
+        }
+
+        Edges[] byShard = new Edges[shards.length];
+        for (int i = 0; i < edges.size; i++) { // in order, as Graph removes them
+            int shard = edges.shards[i];
+            if (byShard[shard] == null) {
+                byShard[shard] = new Edges();
+            }
+            byShard[shard].add(edges.labels[i], shard, edges.weights[i]);
+        }
+        List<Request> detaching = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            if (byShard[i] != null) {
+                Request detach = new Request(DETACH);
+                detach.label = vertexLabel;
+                detach.edges = byShard[i];
+                detaching.add(send(i, detach));
+            }
+        }
+        for (Request detach : detaching) {
+            await(detach);
+        }
+        return new Vertex<>(vertexLabel);
+    }
+
+    /**
+     * Adds a weighted edge between two given distinct vertices that are currently
+     * in this graph. The end owned by the first vertex's shard is added first, and
+     * taken back if the second vertex turns out not to exist.
+     *
+     * @param begin      where to start.
+     * @param end        where to end.
+     * @param edgeWeight weight of the edge.
+     * @return boolean to see if it was added sucessfully.
+     */
+    public boolean addEdge(T begin, T end, double edgeWeight) {
+        return link(begin, end, edgeWeight, false);
+    }
+
+    /**
+     * Adds an unweighted edge between two given distinct vertices that are
+     * currently in this graph. The desired edge must not already be in the graph.
+     *
+     * @param begin where to start.
+     * @param end   where to end.
+     * @return boolean to see if it was added sucessfully.
+     */
+    public boolean addEdge(T begin, T end) {
+        return link(begin, end, 0, true);
+    }
+
+    /**
+     * Removes a weighted edge between two given distinct vertices that are
+     * currently in this graph. The desired edge must already be in the graph.
+     *
+     * @param begin      where to start.
+     * @param end        where to end.
+     * @param edgeWeight weight of the edge.
+     * @return true if the removal is successful, false otherwise.
+     */
+    public boolean removeEdge(T begin, T end, double edgeWeight) {
+        return unlink(begin, end, edgeWeight, false);
+    }
+
+    /**
+     * Removes an edge of any weight between two given distinct vertices that are
+     * currently in this graph. The desired edge must already be in the graph.
+     *
+     * @param begin where to start.
+     * @param end   where to end.
+     * @return true if the removal is successful, false otherwise.
+     */
+    public boolean removeEdge(T begin, T end) {
+        return unlink(begin, end, 0, true);
+    }
+
+    /**
+     * Sees whether an undirected edge exists between two given vertices. Only the
+     * shard of the first vertex is asked.
+     *
+     * @param begin where to start.
+     * @param end   where to end.
+     * @return true if it exists, false if not.
+     */
+    public boolean hasEdge(T begin, T end) {
+        if (begin == null || end == null) {
+            return false;
+        }
+        Request request = new Request(HAS_EDGE);
+        request.label = begin;
+        request.other = end;
+        return (Boolean) ask(shardOf(begin), request);
+    }
+
+    /**
+     * Sees whether a vertex is in this graph.
+     *
+     * @param vertexLabel the label of the vertex.
+     * @return true if it is, false if not.
+     */
+    public boolean contains(T vertexLabel) {
+        if (vertexLabel == null) {
+            return false;
+        }
+        Request request = new Request(CONTAINS);
+        request.label = vertexLabel;
+        return (Boolean) ask(shardOf(vertexLabel), request);
+    }
+
+    /**
+     * This method gets the number of vertices in this graph, adding up the
+     * shards.
+     *
+     * @return the number of vertices
+     */
+    public int getNumberOfVertices() {
+        return (int) count()[0];
+    }
+
+    /**
+     * This method gets the number of edges in this graph, counted the same way as
+     * Graph counts them (both ends).
+     *
+     * @return the number of edges.
+     */
+    public int getNumberOfEdges() {
+        return (int) count()[1];
+    }
+
+    /**
+     * Check if empty.
+     *
+     * @return this method returns true, if this graph is empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return getNumberOfVertices() == 0;
+    }
+
+    /**
+     * Gets vertices, shard by shard. They only carry the labels, the edges stay
+     * in the shards.
+     *
+     * @return the list of all vertices in the graph. If the graph is empty, it
+     *         returns null.
+     */
+    @SuppressWarnings("unchecked")
+    public List<VertexInterface<T>> getVertices() {
+        List<Request> asking = broadcast(LABELS);
+        List<VertexInterface<T>> holder = new ArrayList<>();
+        for (Request request : asking) {
+            for (T label : (List<T>) await(request)) {
+                holder.add(new Vertex<>(label));
+            }
+        }
+        if (holder.size() == 0) { // there is nothing in the graph
+            return null;
+        }
+        return holder;
+    }
+
+    /**
+     * Gets the neighbors of a vertex from its shard, one for every edge, in the
+     * order the edges are kept.
+     *
+     * @param vertexLabel the label of the vertex.
+     * @return the neighbors, empty if the vertex does not exist.
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> getNeighbors(T vertexLabel) {
+        if (vertexLabel == null) {
+            return new ArrayList<>();
+        }
+        Request request = new Request(NEIGHBORS);
+        request.label = vertexLabel;
+        return (List<T>) ask(shardOf(vertexLabel), request);
+    }
+
+    /**
+     * Gets the vertices with the most neighbors. Every shard sends its own best k
+     * and the best k of those are kept. Vertices with the same number of
+     * neighbors come in no particular order.
+     *
+     * @param k how many vertices to return at most.
+     * @return the vertices, the most neighbors first.
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> topByDegree(int k) {
+        List<T> result = new ArrayList<>();
+        if (k <= 0) {
+            return result;
+        }
+        List<Request> asking = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            Request request = new Request(TOP_DEGREES);
+            request.depth = k;
+            asking.add(send(i, request));
+        }
+        List<Batch> runs = new ArrayList<>();
+        for (Request request : asking) { // each is ranked by minus the degree, so the most come first
+            runs.add((Batch) await(request));
+        }
+        Batch best = merge(runs);
+        for (int i = 0; i < Math.min(k, best.size); i++) {
+            result.add((T) best.labels[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the degree histogram of the graph, adding up those of the shards.
+     *
+     * @return the number of vertices with each number of neighbors, from 0 up to
+     *         the biggest one. Empty if the graph is empty.
+     */
+    public int[] getDegreeHistogram() {
+        int[] result = new int[0];
+        for (Request request : broadcast(HISTOGRAM)) {
+            int[] part = (int[]) await(request);
+            if (part.length > result.length) {
+                result = Arrays.copyOf(result, part.length);
+            }
+            for (int i = 0; i < part.length; i++) {
+                result[i] += part[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * This method clears the graph.
+     */
+    public void clear() {
+        for (Request request : broadcast(CLEAR)) {
+            await(request);
+        }
+    }
+
+    /**
+     * Performs a breadth- first traversal of the graph, one level at a time.
+     *
+     * @param origin where to start.
+     * @return the queue that contains the result, empty if the origin does not
+     *         exist.
+     */
+    @SuppressWarnings("unchecked")
+    public Queue<T> getBreadthFirstTraversal(T origin) {
+        Queue<T> result = new ArrayDeque<>();
+        if (origin == null) {
+            return result;
+        }
+
+        long search = searches.getAndIncrement();
+        try {
+            if ((Boolean) await(send(shardOf(origin), start(search, origin))) == false) {
+                return result; // empty queue
+            }
+            Batch frontier = new Batch(1);
+            frontier.add(0, origin, null);
+            for (int depth = 1; frontier.size > 0; depth++) {
+                for (int i = 0; i < frontier.size; i++) {
+                    result.add((T) frontier.labels[i]);
+                }
+                frontier = nextLevel(search, -1, depth, frontier).reached;
+            }
+            return result;
+        } finally {
+            finish(search);
+        }
+    }
+
+    /**
+     * Get the shortest distance between the origin and destination. Searches from
+     * both ends at once, one whole level at a time, always growing the side with
+     * the smaller frontier, and stops in the level where the two searches meet.
+     * The path is then followed back one request per vertex.
+     *
+     * @param origin      where to start.
+     * @param destination where we want to go.
+     * @param path        filled with the vertices on the path, the origin on top.
+     * @return the shortest distance between the origin and destination. If a path
+     *         does not exist, it returns the maximum integer (to simulate
+     *         infinity).
+     */
+    @SuppressWarnings("unchecked")
+    public int getShortestPath(T origin, T destination, Stack<T> path) {
+        if (origin == null || destination == null) {
+            return Integer.MAX_VALUE;
+        }
+
+        long forward = searches.getAndAdd(2);
+        long backward = forward + 1;
+        try {
+            Request startForward = send(shardOf(origin), start(forward, origin));
+            Request startBackward = send(shardOf(destination), start(backward, destination));
+            if ((Boolean) await(startForward) == false | (Boolean) await(startBackward) == false) {
+                return Integer.MAX_VALUE; // does not exist
+            }
+            if (origin.equals(destination)) { // already there
+                path.push(origin);
+                return 0;
+            }
+
+            Batch forwardFrontier = new Batch(1);
+            forwardFrontier.add(0, origin, null);
+            Batch backwardFrontier = new Batch(1);
+            backwardFrontier.add(0, destination, null);
+            int forwardDepth = 0;
+            int backwardDepth = 0;
+
+            while (forwardFrontier.size > 0 && backwardFrontier.size > 0) {
+                boolean growForward = forwardFrontier.size <= backwardFrontier.size; // smaller frontier first
+                Level level;
+                if (growForward) {
+                    level = nextLevel(forward, backward, ++forwardDepth, forwardFrontier);
+                    forwardFrontier = level.reached;
+                } else {
+                    level = nextLevel(backward, forward, ++backwardDepth, backwardFrontier);
+                    backwardFrontier = level.reached;
+                }
+
+                if (level.best != Integer.MAX_VALUE) { // the searches meet in this level
+                    T meetForward = (T) (growForward ? level.meetFrom : level.meetTo);
+                    T meetBackward = (T) (growForward ? level.meetTo : level.meetFrom);
+                    // the destination goes in first so the origin ends up on top
+                    ArrayList<T> toDestination = new ArrayList<>();
+                    for (T at = meetBackward; at != null; at = parentOf(backward, at)) {
+                        toDestination.add(at);
+                    }
+                    for (int i = toDestination.size() - 1; i >= 0; i--) {
+                        path.push(toDestination.get(i));
+                    }
+                    for (T at = meetForward; at != null; at = parentOf(forward, at)) {
+                        path.push(at);
+                    }
+                    return level.best;
+                }
+            }
+            return Integer.MAX_VALUE; // the searches never met
+        } finally {
+            finish(forward);
+            finish(backward);
+        }
+    }
+
+    /**
+     * Stops the threads of the shards. The graph can not be used afterwards.
+     */
+    @Override
+    public void close() {
+        broadcast(STOP);
+    }
+
+    /**
+     * Adds both ends of an edge.
+     *
+     * @param begin      where to start.
+     * @param end        where to end.
+     * @param edgeWeight weight of the edge.
+     * @param any        true to refuse if there is an edge of any weight already.
+     * @return true if the edge was added.
+     */
+    private boolean link(T begin, T end, double edgeWeight, boolean any) {
+        if (begin == null || end == null || begin.equals(end)) { // a vertex cannot create an edge with itself
+            return false;
+        }
+        int beginShard = shardOf(begin);
+        int endShard = shardOf(end);
+        if ((Boolean) ask(beginShard, linkRequest(begin, end, endShard, edgeWeight, any)) == false) {
+            return false;
+        }
+        if ((Boolean) ask(endShard, linkRequest(end, begin, beginShard, edgeWeight, any)) == false) {
+            ask(beginShard, unlinkRequest(begin, end, edgeWeight, false)); // the end does not exist, take it back
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Removes both ends of an edge.
+     *
+     * @param begin      where to start.
+     * @param end        where to end.
+     * @param edgeWeight weight of the edge.
+     * @param any        true to remove the first edge of any weight.
+     * @return true if an edge was removed.
+     */
+    private boolean unlink(T begin, T end, double edgeWeight, boolean any) {
+        if (begin == null || end == null) {
+            return false;
+        }
+        Double removed = (Double) ask(shardOf(begin), unlinkRequest(begin, end, edgeWeight, any));
+        if (removed == null) { // an edge doesnt exist between them so we cant remove anything
+            return false;
+        }
+        ask(shardOf(end), unlinkRequest(end, begin, removed, false)); // remove the same edge on the other side too
+        return true;
+    }
+
+    /**
+     * Makes a request to add one end of an edge.
+     *
+     * @param owner      the vertex keeping this end.
+     * @param other      the other vertex.
+     * @param otherShard the shard of the other vertex.
+     * @param edgeWeight weight of the edge.
+     * @param any        true to refuse if there is an edge of any weight already.
+     * @return the request.
+     */
+    private static Request linkRequest(Object owner, Object other, int otherShard, double edgeWeight, boolean any) {
+        Request request = new Request(LINK);
+        request.label = owner;
+        request.other = other;
+        request.otherShard = otherShard;
+        request.weight = edgeWeight;
+        request.any = any;
+        return request;
+    }
+
+    /**
+     * Makes a request to remove one end of an edge.
+     *
+     * @param owner      the vertex keeping this end.
+     * @param other      the other vertex.
+     * @param edgeWeight weight of the edge.
+     * @param any        true to remove the first edge of any weight.
+     * @return the request.
+     */
+    private static Request unlinkRequest(Object owner, Object other, double edgeWeight, boolean any) {
+        Request request = new Request(UNLINK);
+        request.label = owner;
+        request.other = other;
+        request.weight = edgeWeight;
+        request.any = any;
+        return request;
+    }
+
+    /**
+     * Makes a request to start a search.
+     *
+     * @param search the number of the search.
+     * @param origin where it starts.
+     * @return the request.
+     */
+    private static Request start(long search, Object origin) {
+        Request request = new Request(START);
+        request.search = search;
+        request.label = origin;
+        return request;
+    }
+
+    /**
+     * Grows a search by one level. The frontier is split among the shards that
+     * own it, their neighbors are sent to the shards that own those, and what
+     * those reach for the first time, merged in rank order, is the next frontier.
+     *
+     * @param search      the number of the search.
+     * @param otherSearch the number of the search from the other end, -1 if none.
+     * @param depth       the depth of the new level.
+     * @param frontier    the current level, in order.
+     * @return the new level and where it meets the other search, if it does.
+     */
+    private Level nextLevel(long search, long otherSearch, int depth, Batch frontier) {
+        Batch[] slices = new Batch[shards.length];
+        for (int i = 0; i < frontier.size; i++) {
+            int shard = shardOf(label(frontier, i));
+            if (slices[shard] == null) {
+                slices[shard] = new Batch(16);
+            }
+            slices[shard].add(i, frontier.labels[i], null); // the rank is the place in the frontier
+        }
+
+        List<Request> expanding = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            if (slices[i] != null) {
+                Request expand = new Request(EXPAND);
+                expand.search = search;
+                expand.batch = slices[i];
+                expanding.add(send(i, expand));
+            }
+        }
+        List<List<Batch>> inbound = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            inbound.add(new ArrayList<>());
+        }
+        for (Request expand : expanding) {
+            Batch[] outbound = (Batch[]) await(expand);
+            for (int i = 0; i < shards.length; i++) {
+                if (outbound[i] != null) {
+                    inbound.get(i).add(outbound[i]);
+                }
+            }
+        }
+
+        List<Request> claiming = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            if (inbound.get(i).isEmpty() == false) {
+                Request claim = new Request(CLAIM);
+                claim.search = search;
+                claim.otherSearch = otherSearch;
+                claim.depth = depth;
+                claim.runs = inbound.get(i);
+                claiming.add(send(i, claim));
+            }
+        }
+        Level result = new Level();
+        List<Batch> reached = new ArrayList<>();
+        for (Request claim : claiming) {
+            Level part = (Level) await(claim);
+            reached.add(part.reached);
+            if (part.best < result.best || (part.best == result.best && part.meetRank < result.meetRank)) {
+                result.best = part.best; // the first meeting in rank order, as Graph finds it
+                result.meetRank = part.meetRank;
+                result.meetFrom = part.meetFrom;
+                result.meetTo = part.meetTo;
+            }
+        }
+        result.reached = merge(reached);
+        return result;
+    }
+
+    /**
+     * Asks the shard of a vertex where a search reached it from.
+     *
+     * @param search      the number of the search.
+     * @param vertexLabel the vertex.
+     * @return the vertex before it, null if it is where the search started.
+     */
+    @SuppressWarnings("unchecked")
+    private T parentOf(long search, T vertexLabel) {
+        Request request = new Request(PARENT);
+        request.search = search;
+        request.label = vertexLabel;
+        return (T) ask(shardOf(vertexLabel), request);
+    }
+
+    /**
+     * Tells every shard to forget a search, without waiting.
+     *
+     * @param search the number of the search.
+     */
+    private void finish(long search) {
+        for (int i = 0; i < shards.length; i++) {
+            Request request = new Request(FINISH);
+            request.search = search;
+            send(i, request);
+        }
+    }
+
+    /**
+     * Asks every shard for the number of vertices and edge ends and adds them up.
+     *
+     * @return the number of vertices, then of edge ends.
+     */
+    private long[] count() {
+        long[] total = new long[2];
+        for (Request request : broadcast(COUNT)) {
+            long[] part = (long[]) await(request);
+            total[0] += part[0];
+            total[1] += part[1];
+        }
+        return total;
+    }
+
+    /**
+     * Sends a request without anything else in it to every shard.
+     *
+     * @param kind what to ask.
+     * @return the requests, to wait for.
+     */
+    private List<Request> broadcast(int kind) {
+        List<Request> result = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            result.add(send(i, new Request(kind)));
+        }
+        return result;
+    }
+
+    /**
+     * Puts a request in the inbox of a shard.
+     *
+     * @param shard   the number of the shard.
+     * @param request the request.
+     * @return the request, to wait for.
+     */
+    private Request send(int shard, Request request) {
+        shards[shard].inbox.add(request);
+        return request;
+    }
+
+    /**
+     * Sends a request to a shard and waits for the reply.
+     *
+     * @param shard   the number of the shard.
+     * @param request the request.
+     * @return the reply.
+     */
+    private Object ask(int shard, Request request) {
+        return await(send(shard, request));
+    }
+
+    /**
+     * Waits for the reply of a request.
+     *
+     * @param request the request.
+     * @return the reply.
+     */
+    private static Object await(Request request) {
+        try {
+            return request.reply.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) { // fail the same way Graph would
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Gets a label out of a batch.
+     *
+     * @param batch the batch.
+     * @param index where it is.
+     * @return the label.
+     */
+    @SuppressWarnings("unchecked")
+    private T label(Batch batch, int index) {
+        return (T) batch.labels[index];
+    }
+
+    /**
+     * Merges batches that are each in rank order into one in rank order.
+     *
+     * @param runs the batches.
+     * @return the merged batch.
+     */
+    private static Batch merge(List<Batch> runs) {
+        if (runs.size() == 1) {
+            return runs.get(0);
+        }
+        int total = 0;
+        for (Batch run : runs) {
+            total += run.size;
+        }
+        Batch result = new Batch(Math.max(total, 1));
+        int[] heads = new int[runs.size()];
+        while (result.size < total) {
+            int pick = -1;
+            long least = Long.MAX_VALUE;
+            for (int r = 0; r < runs.size(); r++) { // there are only as many runs as shards
+                Batch run = runs.get(r);
+                if (heads[r] < run.size && run.ranks[heads[r]] < least) {
+                    least = run.ranks[heads[r]];
+                    pick = r;
+                }
+            }
+            Batch run = runs.get(pick);
+            result.add(least, run.labels[heads[pick]], run.parents[heads[pick]]);
+            heads[pick]++;
+        }
+        return result;
+    }
+
+    // INNER CLASSES BELOW
+    // ___________________________________________________________________________________
+    /**
+     * One shard: the vertices it owns, their edges, and what its part of every
+     * running search has seen. Only its own thread ever touches these.
+     *
+     * @param <T> our generic.
+     */
+    private static class Shard<T> implements Runnable {
+        /**
+         * The number of this shard.
+         */
+        private final int index;
+
+        /**
+         * How many shards there are.
+         */
+        private final int count;
+
+        /**
+         * The edges of every vertex this shard owns, in the order they were made.
+         */
+        private final HashMap<T, Edges> adjacency = new HashMap<>();
+
+        /**
+         * How many edge ends this shard keeps.
+         */
+        private long edgeEnds;
+
+        /**
+         * The vertices every search has reached on this shard.
+         */
+        private final HashMap<Long, HashMap<T, Visit<T>>> visited = new HashMap<>();
+
+        /**
+         * The requests waiting to be handled.
+         */
+        private final BlockingQueue<Request> inbox = new LinkedBlockingQueue<>();
+
+        /**
+         * Simple constructor, starts the thread.
+         *
+         * @param index the number of this shard.
+         * @param count how many shards there are.
+         */
+        private Shard(int index, int count) {
+            this.index = index;
+            this.count = count;
+            Thread thread = new Thread(this, "shard-" + index);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * Handles requests one at a time until told to stop.
+         */
+        @Override
+        public void run() {
+            while (true) {
+                Request request;
+                try {
+                    request = inbox.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (request.kind == STOP) {
+                    request.reply.complete(null);
+                    return;
+                }
+                try {
+                    request.reply.complete(handle(request));
+                } catch (RuntimeException e) {
+                    request.reply.completeExceptionally(e);
+                }
+            }
+        }
+
+        /**
+         * Handles one request.
+         *
+         * @param request the request.
+         * @return the reply.
+         */
+        @SuppressWarnings("unchecked")
+        private Object handle(Request request) {
+            T label = (T) request.label;
+            Edges edges;
+            switch (request.kind) {
+                case ADD_VERTEX:
+                    if (adjacency.containsKey(label)) { // already here, keep its edges
+                        return false;
+                    }
+                    adjacency.put(label, new Edges());
+                    return true;
+                case REMOVE_VERTEX:
+                    edges = adjacency.remove(label);
+                    if (edges != null) {
+                        edgeEnds -= edges.size;
+                    }
+                    return edges;
+                case DETACH:
+                    Edges detached = request.edges; // each points from the removed vertex
+                    for (int i = 0; i < detached.size; i++) {
+                        Edges neighbor = adjacency.get(detached.labels[i]);
+                        neighbor.removeAt(neighbor.indexOf(label, detached.weights[i], false));
+                        edgeEnds--;
+                    }
+                    return null;
+                case CONTAINS:
+                    return adjacency.containsKey(label);
+                case LINK:
+                    edges = adjacency.get(label);
+                    if (edges == null || edges.indexOf(request.other, request.weight, request.any) != -1) {
+                        return false;
+                    }
+                    edges.add(request.other, request.otherShard, request.weight);
+                    edgeEnds++;
+                    return true;
+                case UNLINK:
+                    edges = adjacency.get(label);
+                    int edge = (edges == null) ? -1 : edges.indexOf(request.other, request.weight, request.any);
+                    if (edge == -1) {
+                        return null;
+                    }
+                    double weight = edges.weights[edge];
+                    edges.removeAt(edge);
+                    edgeEnds--;
+                    return weight;
+                case HAS_EDGE:
+                    edges = adjacency.get(label);
+                    return edges != null && edges.indexOf(request.other, 0, true) != -1;
+                case COUNT:
+                    return new long[] {adjacency.size(), edgeEnds};
+                case LABELS:
+                    return new ArrayList<>(adjacency.keySet());
+                case CLEAR:
+                    adjacency.clear();
+                    edgeEnds = 0;
+                    return null;
+                case NEIGHBORS:
+                    edges = adjacency.get(label);
+                    List<Object> neighbors = new ArrayList<>();
+                    for (int i = 0; edges != null && i < edges.size; i++) {
+                        neighbors.add(edges.labels[i]);
+                    }
+                    return neighbors;
+                case TOP_DEGREES:
+                    return topDegrees(request.depth);
+                case HISTOGRAM:
+                    int most = -1;
+                    for (Edges each : adjacency.values()) {
+                        most = Math.max(most, each.size);
+                    }
+                    int[] histogram = new int[most + 1];
+                    for (Edges each : adjacency.values()) {
+                        histogram[each.size]++;
+                    }
+                    return histogram;
+                case START:
+                    if (adjacency.containsKey(label) == false) {
+                        return false;
+                    }
+                    HashMap<T, Visit<T>> seen = new HashMap<>();
+                    seen.put(label, new Visit<>(null, 0));
+                    visited.put(request.search, seen);
+                    return true;
+                case EXPAND:
+                    return expand(request.search, request.batch);
+                case CLAIM:
+                    return claim(request.search, request.otherSearch, request.depth, request.runs);
+                case PARENT:
+                    return visited.get(request.search).get(label).parent;
+                case FINISH:
+                    visited.remove(request.search);
+                    return null;
+                default:
+                    throw new IllegalArgumentException("unknown request " + request.kind);
+            }
+        }
+
+        /**
+         * Finds the vertices of this shard with the most neighbors, keeping only
+         * the best k on a heap.
+         *
+         * @param k how many vertices to find at most.
+         * @return the vertices, the most neighbors first, each ranked by minus its
+         *         number of neighbors.
+         */
+        private Batch topDegrees(int k) {
+            PriorityQueue<Map.Entry<T, Edges>> heap = new PriorityQueue<>(
+                    (x, y) -> Integer.compare(x.getValue().size, y.getValue().size)); // the fewest on top
+            for (Map.Entry<T, Edges> entry : adjacency.entrySet()) {
+                if (heap.size() < k) {
+                    heap.add(entry);
+                } else if (entry.getValue().size > heap.peek().getValue().size) {
+                    heap.poll();
+                    heap.add(entry);
+                }
+            }
+            Batch result = new Batch(Math.max(heap.size(), 1));
+            result.size = heap.size();
+            for (int i = result.size - 1; i >= 0; i--) { // the fewest come off first
+                Map.Entry<T, Edges> entry = heap.poll();
+                result.ranks[i] = -entry.getValue().size;
+                result.labels[i] = entry.getKey();
+            }
+            return result;
+        }
+
+        /**
+         * Lists the neighbors of this shard's part of a frontier, grouped by the
+         * shard that owns them. Neighbors on this shard that the search has already
+         * reached are left out, the others are for their owners to decide.
+         *
+         * @param search the number of the search.
+         * @param slice  the part of the frontier, ranked by its place in the whole.
+         * @return a batch of ranked neighbors for every shard, null where there are
+         *         none.
+         */
+        private Batch[] expand(long search, Batch slice) {
+            Batch[] outbound = new Batch[count];
+            HashMap<T, Visit<T>> seen = visited.get(search);
+            for (int i = 0; i < slice.size; i++) {
+                @SuppressWarnings("unchecked")
+                T parent = (T) slice.labels[i];
+                Edges edges = adjacency.get(parent);
+                long place = slice.ranks[i] << 32;
+                for (int j = 0; j < edges.size; j++) {
+                    int shard = edges.shards[j];
+                    if (shard == index && seen != null && seen.containsKey(edges.labels[j])) {
+                        continue;
+                    }
+                    if (outbound[shard] == null) {
+                        outbound[shard] = new Batch(16);
+                    }
+                    outbound[shard].add(place | j, edges.labels[j], parent);
+                }
+            }
+            return outbound;
+        }
+
+        /**
+         * Marks the neighbors of a level that this shard owns, lowest rank first,
+         * and notes where the level touches the search from the other end.
+         *
+         * @param search      the number of the search.
+         * @param otherSearch the number of the search from the other end, -1 if
+         *                    none.
+         * @param depth       the depth of the new level.
+         * @param runs        the ranked neighbors, one batch from every shard that
+         *                    expanded.
+         * @return the neighbors reached for the first time, in rank order, and the
+         *         first shortest meeting.
+         */
+        @SuppressWarnings("unchecked")
+        private Level claim(long search, long otherSearch, int depth, List<Batch> runs) {
+            Batch candidates = merge(runs);
+            HashMap<T, Visit<T>> seen = visited.computeIfAbsent(search, key -> new HashMap<>());
+            HashMap<T, Visit<T>> other = (otherSearch == -1) ? null : visited.get(otherSearch);
+            Level result = new Level();
+            result.reached = new Batch(Math.max(candidates.size, 1));
+            for (int i = 0; i < candidates.size; i++) {
+                T next = (T) candidates.labels[i];
+                T parent = (T) candidates.parents[i];
+                if (other != null) {
+                    Visit<T> met = other.get(next);
+                    if (met != null && depth + met.depth < result.best) { // the searches meet here
+                        result.best = depth + met.depth;
+                        result.meetRank = candidates.ranks[i];
+                        result.meetFrom = parent;
+                        result.meetTo = next;
+                    }
+                }
+                if (seen.containsKey(next) == false) {
+                    seen.put(next, new Visit<>(parent, depth));
+                    result.reached.add(candidates.ranks[i], next, null);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A request to a shard. Only the fields the kind needs are set, and they hold
+     * labels, numbers and batches, nothing that belongs to another shard.
+     */
+    private static class Request {
+        /**
+         * What is asked.
+         */
+        private final int kind;
+
+        /**
+         * The vertex the request is about.
+         */
+        private Object label;
+
+        /**
+         * The other end of an edge.
+         */
+        private Object other;
+
+        /**
+         * The shard of the other end.
+         */
+        private int otherShard;
+
+        /**
+         * The weight of an edge.
+         */
+        private double weight;
+
+        /**
+         * True to match an edge of any weight.
+         */
+        private boolean any;
+
+        /**
+         * The number of a search.
+         */
+        private long search;
+
+        /**
+         * The number of the search from the other end, -1 if none.
+         */
+        private long otherSearch = -1;
+
+        /**
+         * The depth of the level being claimed, or how many vertices to find.
+         */
+        private int depth;
+
+        /**
+         * The part of a frontier to expand.
+         */
+        private Batch batch;
+
+        /**
+         * The ranked neighbors to claim, one batch from every shard that expanded.
+         */
+        private List<Batch> runs;
+
+        /**
+         * The edges of a removed vertex that end on the shard.
+         */
+        private Edges edges;
+
+        /**
+         * Where the reply goes.
+         */
+        private final CompletableFuture<Object> reply = new CompletableFuture<>();
+
+        /**
+         * Simple constructor.
+         *
+         * @param kind what is asked.
+         */
+        private Request(int kind) {
+            this.kind = kind;
+        }
+    }
+
+    /**
+     * Vertices with a rank each, in rank order, and the vertex each was found
+     * from where that matters.
+     */
+    private static class Batch {
+        /**
+         * The rank of every vertex.
+         */
+        private long[] ranks;
+
+        /**
+         * The label of every vertex.
+         */
+        private Object[] labels;
+
+        /**
+         * The vertex each was found from.
+         */
+        private Object[] parents;
+
+        /**
+         * How many vertices there are.
+         */
+        private int size;
+
+        /**
+         * Simple constructor.
+         *
+         * @param capacity how many vertices to make room for.
+         */
+        private Batch(int capacity) {
+            ranks = new long[capacity];
+            labels = new Object[capacity];
+            parents = new Object[capacity];
+        }
+
+        /**
+         * Adds a vertex at the end.
+         *
+         * @param rank   its rank.
+         * @param label  its label.
+         * @param parent the vertex it was found from.
+         */
+        private void add(long rank, Object label, Object parent) {
+            if (size == ranks.length) {
+                ranks = Arrays.copyOf(ranks, size * 2);
+                labels = Arrays.copyOf(labels, size * 2);
+                parents = Arrays.copyOf(parents, size * 2);
+            }
+            ranks[size] = rank;
+            labels[size] = label;
+            parents[size] = parent;
+            size++;
+        }
+    }
+
+    /**
+     * What a shard found in one level of a search.
+     */
+    private static class Level {
+        /**
+         * The vertices reached for the first time.
+         */
+        private Batch reached;
+
+        /**
+         * The length of the shortest path through a meeting, the maximum integer
+         * if the searches did not meet.
+         */
+        private int best = Integer.MAX_VALUE;
+
+        /**
+         * The rank of the meeting.
+         */
+        private long meetRank = Long.MAX_VALUE;
+
+        /**
+         * The vertex on the growing side where the searches meet.
+         */
+        private Object meetFrom;
+
+        /**
+         * Its neighbor reached by the other side.
+         */
+        private Object meetTo;
+    }
+
+    /**
+     * The edge ends a shard keeps for one vertex, in the order they were made, as
+     * parallel arrays: the label and the shard of every neighbor and the weight of
+     * every edge. The neighbor is named by its label and its shard, never by an
+     * object, so it may live anywhere. Like Vertex, above INDEX_THRESHOLD edges it
+     * keeps a hash index of its neighbors, so an edge of a very popular user is
+     * found without scanning them all.
+     */
+    private static class Edges {
+        /**
+         * How many edge slots a new vertex starts with.
+         */
+        private static final int INITIAL_CAPACITY = 4;
+
+        /**
+         * The label of every neighbor. Only the first size slots are edges.
+         */
+        private Object[] labels = new Object[INITIAL_CAPACITY];
+
+        /**
+         * The shard that owns every neighbor, parallel to labels.
+         */
+        private int[] shards = new int[INITIAL_CAPACITY];
+
+        /**
+         * The weight of every edge, parallel to labels.
+         */
+        private double[] weights = new double[INITIAL_CAPACITY];
+
+        /**
+         * How many edges there are.
+         */
+        private int size;
+
+        /**
+         * Open-addressing index from neighbor label to edge position, or null while
+         * there are few edges. Each slot holds the edge position plus one, 0 means
+         * empty. Edges to the same neighbor with different weights get one slot each.
+         */
+        private int[] index;
+
+        /**
+         * Finds an edge to a neighbor.
+         *
+         * @param neighbor   the label of the neighbor.
+         * @param edgeWeight the weight of the edge, unless any.
+         * @param any        true to find an edge of any weight.
+         * @return the place of such an edge, -1 if there is none.
+         */
+        private int indexOf(Object neighbor, double edgeWeight, boolean any) {
+            if (index != null) { // many edges, use the index
+                int mask = index.length - 1;
+                for (int slot = slotOf(neighbor, mask); index[slot] != 0; slot = (slot + 1) & mask) {
+                    int edge = index[slot] - 1;
+                    if (labels[edge].equals(neighbor) && (any || weights[edge] == edgeWeight)) {
+                        return edge;
+                    }
+                }
+                return -1;
+            }
+            for (int i = 0; i < size; i++) {
+                if (labels[i].equals(neighbor) && (any || weights[i] == edgeWeight)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Adds an edge at the end without any checks.
+         *
+         * @param neighbor   the label of the neighbor.
+         * @param shard      the shard that owns the neighbor.
+         * @param edgeWeight the weight of the edge.
+         */
+        private void add(Object neighbor, int shard, double edgeWeight) {
+            if (size == labels.length) { // full, so double it
+                labels = Arrays.copyOf(labels, size * 2);
+                shards = Arrays.copyOf(shards, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            labels[size] = neighbor;
+            shards[size] = shard;
+            weights[size] = edgeWeight;
+            size++;
+
+            if (index != null && size * 2 > index.length) { // keep the index at most half full
+                buildIndex();
+            } else if (index != null) {
+                insertSlot(size - 1);
+            } else if (size > Vertex.INDEX_THRESHOLD) { // just became big
+                buildIndex();
+            }
+        }
+
+        /**
+         * Removes an edge by moving the last edge into its place, as Vertex does,
+         * so the neighbors stay in the same order as in Graph.
+         *
+         * @param edge the place of the edge to remove.
+         */
+        private void removeAt(int edge) {
+            int last = size - 1;
+            if (index != null) {
+                deleteSlot(findSlot(edge));
+                if (edge != last) { // the last edge is moving to edge
+                    index[findSlot(last)] = edge + 1;
+                }
+            }
+            labels[edge] = labels[last];
+            shards[edge] = shards[last];
+            weights[edge] = weights[last];
+            labels[last] = null;
+            size--;
+
+            if (index != null && size <= Vertex.INDEX_THRESHOLD / 2) { // small again, a scan is cheaper
+                index = null;
+            }
+        }
+
+        /**
+         * Picks the first slot to look at for a neighbor.
+         *
+         * @param neighbor the label of the neighbor.
+         * @param mask     the length of the index minus one.
+         * @return the slot.
+         */
+        private static int slotOf(Object neighbor, int mask) {
+            int h = neighbor.hashCode() * 0x9E3779B9; // spread close hashes apart
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        /**
+         * Builds the index from scratch, sized for the current number of edges.
+         */
+        private void buildIndex() {
+            index = new int[Integer.highestOneBit(Math.max(size, Vertex.INDEX_THRESHOLD) * 4 - 1)];
+            for (int i = 0; i < size; i++) {
+                insertSlot(i);
+            }
+        }
+
+        /**
+         * Puts an edge into the index.
+         *
+         * @param edge the place of the edge.
+         */
+        private void insertSlot(int edge) {
+            int mask = index.length - 1;
+            int slot = slotOf(labels[edge], mask);
+            while (index[slot] != 0) { // find an empty slot
+                slot = (slot + 1) & mask;
+            }
+            index[slot] = edge + 1;
+        }
+
+        /**
+         * Finds the slot that holds an edge.
+         *
+         * @param edge the place of the edge.
+         * @return the slot.
+         */
+        private int findSlot(int edge) {
+            int mask = index.length - 1;
+            int slot = slotOf(labels[edge], mask);
+            while (index[slot] != edge + 1) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /**
+         * Empties a slot, shifting later slots of the same probe run back so that
+         * lookups never stop early.
+         *
+         * @param slot the slot to empty.
+         */
+        private void deleteSlot(int slot) {
+            int mask = index.length - 1;
+            int hole = slot;
+            int next = (hole + 1) & mask;
+            while (index[next] != 0) {
+                int home = slotOf(labels[index[next] - 1], mask);
+                // move it back if its home is not between the hole and where it sits
+                boolean canMove = hole <= next ? (home <= hole || home > next) : (home <= hole && home > next);
+                if (canMove) {
+                    index[hole] = index[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            index[hole] = 0;
+        }
+    }
+
+    /**
+     * How a search reached a vertex.
+     *
+     * @param <T> our generic.
+     */
+    private static class Visit<T> {
+        /**
+         * The vertex it was reached from, null where the search started.
+         */
+        private final T parent;
+
+        /**
+         * How many edges from where the search started.
+         */
+        private final int depth;
+
+        /**
+         * Simple constructor.
+         *
+         * @param parent the vertex it was reached from.
+         * @param depth  how many edges from where the search started.
+         */
+        private Visit(T parent, int depth) {
+            this.parent = parent;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * Just for checking. Makes the same random graph as a Graph and as a
+     * ShardedGraph, with edges added and removed and vertices removed, checks that
+     * the counts, edges, traversals and shortest distances all agree, and times
+     * the traversals of both. Then does the same for a MasonConnect on each.
+     *
+     * @param args optional number of shards, vertices and edges.
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int vertices = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int edges = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+
+        Graph<Integer> graph = new Graph<>();
+        SplittableRandom random = new SplittableRandom(7);
+        int wrong = 0;
+        try (ShardedGraph<Integer> sharded = new ShardedGraph<>(count)) {
+            for (int i = 0; i < vertices; i++) {
+                graph.addVertex(i);
+                sharded.addVertex(i);
+            }
+            for (int i = 0; i < edges; i++) {
+                int a = random.nextInt(vertices + 10); // a few do not exist
+                int b = random.nextInt(vertices + 10);
+                int choice = random.nextInt(10);
+                boolean expected;
+                boolean actual;
+                if (choice < 6) {
+                    expected = graph.addEdge(a, b);
+                    actual = sharded.addEdge(a, b);
+                } else if (choice < 8) {
+                    double weight = random.nextInt(3);
+                    expected = graph.addEdge(a, b, weight);
+                    actual = sharded.addEdge(a, b, weight);
+                } else if (choice < 9) {
+                    expected = graph.removeEdge(a, b);
+                    actual = sharded.removeEdge(a, b);
+                } else {
+                    expected = graph.hasEdge(a, b);
+                    actual = sharded.hasEdge(a, b);
+                }
+                if (expected != actual) {
+                    wrong++;
+                }
+            }
+            for (int i = 0; i < vertices / 100; i++) {
+                int gone = random.nextInt(vertices);
+                if ((graph.removeVertex(gone) == null) != (sharded.removeVertex(gone) == null)) {
+                    wrong++;
+                }
+            }
+            if (graph.getNumberOfVertices() != sharded.getNumberOfVertices()
+                    || graph.getNumberOfEdges() != sharded.getNumberOfEdges()) {
+                wrong++;
+            }
+
+            long graphTime = 0;
+            long shardedTime = 0;
+            for (int i = 0; i < 20; i++) {
+                int origin = random.nextInt(vertices);
+                long begin = System.nanoTime();
+                Queue<Integer> expected = graph.getBreadthFirstTraversal(origin);
+                graphTime += System.nanoTime() - begin;
+                begin = System.nanoTime();
+                Queue<Integer> actual = sharded.getBreadthFirstTraversal(origin);
+                shardedTime += System.nanoTime() - begin;
+                if (new ArrayList<>(expected).equals(new ArrayList<>(actual)) == false) {
+                    wrong++;
+                }
+            }
+            for (int i = 0; i < 200; i++) {
+                int a = random.nextInt(vertices);
+                int b = random.nextInt(vertices);
+                Stack<Integer> path = new Stack<>();
+                int expected = graph.getShortestPath(a, b, new Stack<>());
+                int actual = sharded.getShortestPath(a, b, path);
+                if (expected != actual) {
+                    wrong++;
+                } else if (actual != Integer.MAX_VALUE) { // the path must really be one
+                    if (path.size() != actual + 1 || path.peek() != a || path.get(0) != b) {
+                        wrong++;
+                    }
+                    for (int j = 1; j < path.size(); j++) {
+                        if (graph.hasEdge(path.get(j - 1), path.get(j)) == false) {
+                            wrong++;
+                        }
+                    }
+                }
+            }
+
+            MasonConnect plain = new MasonConnect(); // the same users on both
+            ShardedGraph<Profile> profiles = new ShardedGraph<>(count);
+            MasonConnect spread = new MasonConnect(profiles);
+            Profile[] users = new Profile[1000];
+            for (int i = 0; i < users.length; i++) {
+                users[i] = new Profile("user" + i, "status " + i);
+                plain.addUser(users[i]);
+            }
+            Profile[] others = new Profile[users.length]; // profiles keep their friends, so a copy each
+            for (int i = 0; i < users.length; i++) {
+                others[i] = new Profile("user" + i, "status " + i);
+                spread.addUser(others[i]);
+            }
+            for (int i = 0; i < 5000; i++) {
+                int a = random.nextInt(users.length);
+                int b = random.nextInt(users.length);
+                if (plain.createFriendship(users[a], users[b]) != spread.createFriendship(others[a], others[b])) {
+                    wrong++;
+                }
+                a = random.nextInt(users.length);
+                b = random.nextInt(users.length);
+                if (plain.friendshipDistance(users[a], users[b]) != spread.friendshipDistance(others[a], others[b])) {
+                    wrong++;
+                }
+            }
+            if (spread.checkFriendships() == false) {
+                wrong++;
+            }
+            profiles.close();
+            System.out.println(count + " shards, " + graph.getNumberOfVertices() + " vertices, "
+                    + graph.getNumberOfEdges() / 2 + " edges, " + wrong + " wrong");
+            System.out.printf("traversal %.1f ms in Graph, %.1f ms sharded%n", graphTime / 20 / 1e6,
+                    shardedTime / 20 / 1e6);
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+import java.util.Arrays;
+
+/**
+ * Counters indexed by vertex id that remember which ones were touched, so
+ * resetting them costs as much as the last use and not the size of the graph.
+ *
+ * @author Rahima Adnan
+ */
+class SparseCounter {
+    /**
+     * The count of each id, 0 for ids that were not touched.
+     */
+    private int[] counts;
+
+    /**
+     * The ids that were touched, in the order they were first touched.
+     */
+    private int[] touched;
+
+    /**
+     * How many ids are in touched.
+     */
+    private int size;
+
+    /**
+     * Simple constructor.
+     */
+    SparseCounter() {
+        counts = new int[0];
+        touched = new int[0];
+        size = 0;
+    }
+
+    /**
+     * Sets every touched counter back to 0 and makes room for the given ids.
+     *
+     * @param capacity every id is smaller than this.
+     */
+    void begin(int capacity) {
+        for (int i = 0; i < size; i++) {
+            counts[touched[i]] = 0;
+        }
+        size = 0;
+        if (counts.length < capacity) { // the graph grew
+            int bigger = Math.max(capacity, counts.length * 2);
+            counts = Arrays.copyOf(counts, bigger);
+            touched = new int[bigger];
+        }
+    }
+
+    /**
+     * Adds to a counter.
+     *
+     * @param id     the id.
+     * @param amount how much to add.
+     */
+    void add(int id, int amount) {
+        if (counts[id] == 0) { // first touch, or back at 0 which is harmless to record again
+            if (size == touched.length) {
+                touched = Arrays.copyOf(touched, Math.max(16, size * 2));
+            }
+            touched[size++] = id;
+        }
+        counts[id] += amount;
+    }
+
+    /**
+     * Gets a counter.
+     *
+     * @param id the id.
+     * @return the count.
+     */
+    int get(int id) {
+        return counts[id];
+    }
+
+    /**
+     * Gets how many ids were touched. Some ids may be listed twice if their
+     * counter went back to 0 in between.
+     *
+     * @return the number of touched ids.
+     */
+    int touchedCount() {
+        return size;
+    }
+
+    /**
+     * Gets a touched id.
+     *
+     * @param index which one, from 0 to touchedCount() - 1.
+     * @return the id.
+     */
+    int touchedAt(int index) {
+        return touched[index];
+    }
+
+}
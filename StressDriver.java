@@ -0,0 +1,112 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Just for checking. Many threads create and remove friendships, look them up
+ * and add and remove users on one MasonConnect at the same time, then every
+ * friendship is checked to be known to both users and to the network.
+ *
+ * @author Rahima Adnan
+ */
+public class StressDriver {
+    /**
+     * Runs the threads and checks the network.
+     *
+     * @param args optional number of threads, users and operations per thread.
+     * @throws InterruptedException if interrupted while waiting for the threads.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int users = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        int operations = args.length > 2 ? Integer.parseInt(args[2]) : 50_000;
+
+        MasonConnect network = new MasonConnect(threads * 4);
+        List<Profile> profiles = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            Profile user = new Profile("user" + i, "status " + i);
+            profiles.add(user);
+            network.addUser(user);
+        }
+        System.out.println(threads + " threads, " + users + " users, " + operations + " operations each");
+
+        AtomicLong created = new AtomicLong();
+        AtomicLong removed = new AtomicLong();
+        AtomicLong dropped = new AtomicLong(); // users removed, with all their friendships
+        AtomicInteger failures = new AtomicInteger();
+        Thread[] pool = new Thread[threads];
+        long begin = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            pool[t] = new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(worker);
+                for (int i = 0; i < operations; i++) {
+                    Profile a = profiles.get(random.nextInt(users));
+                    Profile b = profiles.get(random.nextInt(users));
+                    int choice = random.nextInt(100);
+                    if (choice < 35) {
+                        if (network.createFriendship(a, b)) {
+                            created.incrementAndGet();
+                        }
+                    } else if (choice < 70) {
+                        if (network.removeFriendship(a, b)) {
+                            removed.incrementAndGet();
+                        }
+                    } else if (choice < 90) {
+                        network.hasFriendship(a, b);
+                        network.mutualFriendCount(a, b);
+                    } else if (choice < 99) {
+                        network.friendSuggestion(a, 5);
+                    } else if (worker == 0 && i % 10_000 == 0) { // now and then, a check while the others keep going
+                        if (network.checkFriendships() == false) {
+                            failures.incrementAndGet();
+                        }
+                    } else if (choice == 99 && i % 2 == 0) {
+                        if (network.removeUser(a) != null) {
+                            dropped.incrementAndGet();
+                            network.addUser(a); // back without friends, so the checks below still cover it
+                        }
+                    } else {
+                        network.addUser(new Profile("new" + worker + "-" + i, "new"));
+                    }
+                }
+            }, "stress-" + t);
+            pool[t].start();
+        }
+        for (Thread thread : pool) {
+            thread.join();
+        }
+        System.out.printf("%.1f ms, %d created, %d removed, %d users removed%n", (System.nanoTime() - begin) / 1e6,
+                created.get(), removed.get(), dropped.get());
+
+        boolean symmetric = network.checkFriendships();
+        for (Profile a : profiles) {
+            for (Profile b : a.getFriendProfiles()) {
+                if (network.hasFriendship(b, a) == false) {
+                    symmetric = false;
+                }
+            }
+        }
+        int friendships = 0;
+        for (Profile a : profiles) {
+            friendships += a.getFriendProfiles().size();
+        }
+        // removing a user takes an unknown number of friendships with it, so the
+        // lists are counted against the network instead of against the changes
+        int[] histogram = network.friendCountHistogram();
+        long ends = 0;
+        for (int n = 0; n < histogram.length; n++) {
+            ends += (long) n * histogram[n];
+        }
+        boolean counted = friendships == ends && friendships / 2 <= created.get() - removed.get();
+        System.out.println("failed checks while running: " + failures.get());
+        System.out.println("friendships symmetric: " + symmetric);
+        System.out.println("friendship count matches: " + counted);
+        if (failures.get() > 0 || symmetric == false || counted == false) {
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,130 @@
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A fixed number of StampedLocks shared by all vertex ids, so two threads only
+ * wait for each other when their vertices land on the same stripe. Whenever
+ * more than one stripe is locked, the stripes are always taken from the lowest
+ * number to the highest, so two threads can never each hold a stripe the other
+ * one is waiting for.
+ *
+ * @author Rahima Adnan
+ */
+class StripedLocks {
+    /**
+     * The locks.
+     */
+    private final StampedLock[] stripes;
+
+    /**
+     * The number of stripes minus one, the number of stripes is a power of two.
+     */
+    private final int mask;
+
+    /**
+     * Simple constructor.
+     *
+     * @param count how many stripes at least, rounded up to a power of two.
+     */
+    StripedLocks(int count) {
+        int size = Integer.highestOneBit(Math.max(count, 1) * 2 - 1);
+        stripes = new StampedLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new StampedLock();
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Gets the stripe of a vertex id.
+     *
+     * @param id the id.
+     * @return the stripe number.
+     */
+    int stripeOf(int id) {
+        int h = id * 0x9E3779B9; // neighbors often have close ids, spread them
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Gets the lock of a stripe.
+     *
+     * @param stripe the stripe number.
+     * @return the lock.
+     */
+    StampedLock get(int stripe) {
+        return stripes[stripe];
+    }
+
+    /**
+     * Locks two stripes for writing, the lower one first. The same stripe is
+     * only locked once.
+     *
+     * @param a the first stripe.
+     * @param b the second stripe.
+     */
+    void writePair(int a, int b) {
+        stripes[Math.min(a, b)].asWriteLock().lock();
+        if (a != b) {
+            stripes[Math.max(a, b)].asWriteLock().lock();
+        }
+    }
+
+    /**
+     * Unlocks two stripes locked with writePair.
+     *
+     * @param a the first stripe.
+     * @param b the second stripe.
+     */
+    void unwritePair(int a, int b) {
+        if (a != b) {
+            stripes[Math.max(a, b)].asWriteLock().unlock();
+        }
+        stripes[Math.min(a, b)].asWriteLock().unlock();
+    }
+
+    /**
+     * Locks two stripes for reading, the lower one first.
+     *
+     * @param a the first stripe.
+     * @param b the second stripe.
+     */
+    void readPair(int a, int b) {
+        stripes[Math.min(a, b)].asReadLock().lock();
+        if (a != b) {
+            stripes[Math.max(a, b)].asReadLock().lock();
+        }
+    }
+
+    /**
+     * Unlocks two stripes locked with readPair.
+     *
+     * @param a the first stripe.
+     * @param b the second stripe.
+     */
+    void unreadPair(int a, int b) {
+        if (a != b) {
+            stripes[Math.max(a, b)].asReadLock().unlock();
+        }
+        stripes[Math.min(a, b)].asReadLock().unlock();
+    }
+
+    /**
+     * Locks every stripe for reading, in order, so nothing changes while a query
+     * looks at many vertices. Other readers are not blocked.
+     */
+    void readAll() {
+        for (StampedLock stripe : stripes) {
+            stripe.asReadLock().lock();
+        }
+    }
+
+    /**
+     * Unlocks every stripe locked with readAll.
+     */
+    void unreadAll() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].asReadLock().unlock();
+        }
+    }
+
+}
@@ -0,0 +1,481 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the number of mutual neighbors of every pair of vertices two edges
+ * apart, and the k best suggestions of every vertex, up to date as edges come
+ * and go. Adding or removing an edge only touches the neighborhoods of its two
+ * ends, so reading the suggestions of a vertex costs O(k) instead of a walk
+ * over its friends of friends. The ranking is the same as
+ * Graph.getMostMutualNeighbors: more mutual neighbors first, then the smaller
+ * id. The graph must tell the index about every change through the
+ * vertexAdded, edgeAdded, edgeRemoved and vertexRemoving methods. Every method
+ * is synchronized, because reading a stale ranking rebuilds it.
+ *
+ * @param <T> our generic.
+ * @author Rahima Adnan
+ */
+class SuggestionIndex<T> {
+    /**
+     * The graph being indexed.
+     */
+    private final Graph<T> graph;
+
+    /**
+     * How many suggestions to keep for every vertex.
+     */
+    private final int k;
+
+    /**
+     * For every vertex id, the number of mutual neighbors with every vertex it
+     * shares at least one neighbor with. Neighbors are counted too, so they can
+     * become suggestions again when the edge is removed.
+     */
+    private IntIntHashMap[] counts;
+
+    /**
+     * The best suggestions of every vertex id.
+     */
+    private Ranking[] rankings;
+
+    /**
+     * Builds the index for every vertex already in the graph.
+     *
+     * @param graph the graph to index.
+     * @param k     how many suggestions to keep for every vertex.
+     */
+    SuggestionIndex(Graph<T> graph, int k) {
+        this.graph = graph;
+        this.k = Math.max(k, 0);
+        counts = new IntIntHashMap[Math.max(graph.idCapacity(), 16)];
+        rankings = new Ranking[counts.length];
+        for (int id = 0; id < graph.idCapacity(); id++) {
+            if (graph.vertexAt(id) != null) {
+                counts[id] = recount(id);
+                rankings[id] = new Ranking(this.k);
+                rankings[id].stale = true; // built on the first read
+            }
+        }
+    }
+
+    /**
+     * Starts indexing a new vertex, which has no neighbors yet.
+     *
+     * @param id the id of the vertex.
+     */
+    synchronized void vertexAdded(int id) {
+        if (id >= counts.length) { // grow
+            int bigger = Math.max(id + 1, counts.length * 2);
+            counts = Arrays.copyOf(counts, bigger);
+            rankings = Arrays.copyOf(rankings, bigger);
+        }
+        counts[id] = new IntIntHashMap();
+        rankings[id] = new Ranking(k);
+    }
+
+    /**
+     * Updates the counts after an edge was added. Every neighbor of one end now
+     * shares a neighbor with the other end.
+     *
+     * @param a one end of the edge.
+     * @param b the other end.
+     */
+    synchronized void edgeAdded(int a, int b) {
+        shareThrough(a, b, 1);
+        shareThrough(b, a, 1);
+        forget(a, b); // they are friends now, not suggestions
+        forget(b, a);
+    }
+
+    /**
+     * Updates the counts after an edge was removed.
+     *
+     * @param a one end of the edge.
+     * @param b the other end.
+     */
+    synchronized void edgeRemoved(int a, int b) {
+        shareThrough(a, b, -1);
+        shareThrough(b, a, -1);
+        if (graph.hasEdgeById(a, b) == false) { // they can be suggestions again
+            offer(a, b, counts[a].get(b));
+            offer(b, a, counts[b].get(a));
+        }
+    }
+
+    /**
+     * Forgets a vertex that is about to be removed, while its edges are still
+     * there.
+     *
+     * @param id the id of the vertex.
+     */
+    synchronized void vertexRemoving(int id) {
+        Vertex<T> vertex = graph.vertexAt(id);
+        int[] neighborIds = vertex.neighborIds();
+        int degree = vertex.getNumberOfNeighbors();
+        for (int i = 0; i < degree; i++) {
+            int x = neighborIds[i];
+            for (int j = 0; j < degree; j++) { // the neighbors lose a mutual neighbor
+                if (neighborIds[j] != x && neighborIds[j] != id) {
+                    change(x, neighborIds[j], -1);
+                }
+            }
+        }
+        IntIntHashMap own = counts[id];
+        for (int slot = 0; slot < own.slots(); slot++) { // nobody can be suggested this vertex anymore
+            int other = own.keyAt(slot);
+            if (other != -1 && counts[other] != null && counts[other].remove(id) != 0) {
+                forget(other, id);
+            }
+        }
+        counts[id] = null;
+        rankings[id] = null;
+    }
+
+    /**
+     * Gets the best suggestions of a vertex.
+     *
+     * @param id the id of the vertex.
+     * @return the ids of at most k vertices that are not neighbors, the most
+     *         mutual neighbors first.
+     */
+    synchronized int[] suggestionsOf(int id) {
+        Ranking ranking = rankings[id];
+        if (ranking.stale) {
+            rebuild(id);
+        }
+        return Arrays.copyOf(ranking.ids, ranking.size);
+    }
+
+    /**
+     * Compares everything the index holds against a recomputation from the graph.
+     * Slow, meant for checking.
+     *
+     * @return true if the counts and the kept suggestions of every vertex are
+     *         right, false otherwise.
+     */
+    synchronized boolean isConsistent() {
+        for (int id = 0; id < graph.idCapacity(); id++) {
+            if (graph.vertexAt(id) == null) {
+                if (id < counts.length && counts[id] != null) { // a removed vertex is still indexed
+                    return false;
+                }
+                continue;
+            }
+            IntIntHashMap expected = recount(id);
+            IntIntHashMap actual = counts[id];
+            if (actual == null || actual.size() != expected.size()) {
+                return false;
+            }
+            for (int slot = 0; slot < expected.slots(); slot++) {
+                int other = expected.keyAt(slot);
+                if (other != -1 && actual.get(other) != expected.valueAt(slot)) {
+                    return false;
+                }
+            }
+
+            Ranking ranking = rankings[id];
+            if (ranking.stale == false) { // a stale ranking is rebuilt before it is read
+                List<T> best = graph.getMostMutualNeighbors(graph.labelOf(id), k);
+                if (best.size() != ranking.size) {
+                    return false;
+                }
+                for (int i = 0; i < ranking.size; i++) {
+                    if (graph.idOf(best.get(i)) != ranking.ids[i] || ranking.counts[i] != actual.get(ranking.ids[i])) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Changes the count between one end of an edge and every other neighbor of
+     * the other end.
+     *
+     * @param hub    the end whose neighbors are changed.
+     * @param other  the end that gains or loses them as mutual neighbors.
+     * @param amount 1 or -1.
+     */
+    private void shareThrough(int hub, int other, int amount) {
+        Vertex<T> vertex = graph.vertexAt(hub);
+        int[] neighborIds = vertex.neighborIds();
+        int degree = vertex.getNumberOfNeighbors();
+        for (int i = 0; i < degree; i++) {
+            int x = neighborIds[i];
+            if (x != other && x != hub) {
+                change(other, x, amount);
+                change(x, other, amount);
+            }
+        }
+    }
+
+    /**
+     * Changes the number of mutual neighbors of one vertex with another and fixes
+     * the ranking of the first.
+     *
+     * @param id     the vertex whose count changes.
+     * @param other  the vertex it is counted against.
+     * @param amount how much to add.
+     */
+    private void change(int id, int other, int amount) {
+        int count = counts[id].addTo(other, amount);
+        if (count == 0) { // nothing shared anymore
+            counts[id].remove(other);
+        }
+        if (graph.hasEdgeById(id, other)) { // a neighbor is never a suggestion
+            return;
+        }
+        if (amount > 0) {
+            offer(id, other, count);
+        } else {
+            lower(id, other, count);
+        }
+    }
+
+    /**
+     * Lets a vertex with a higher count into a ranking if it belongs there.
+     *
+     * @param id    the vertex whose ranking it is.
+     * @param other the candidate.
+     * @param count its new count.
+     */
+    private void offer(int id, int other, int count) {
+        Ranking ranking = rankings[id];
+        if (ranking.stale || count <= 0 || k == 0) {
+            return;
+        }
+        int at = ranking.indexOf(other);
+        if (at == -1) {
+            if (ranking.size < k) { // every candidate fits
+                ranking.ensureCapacity(ranking.size + 1);
+                at = ranking.size++;
+            } else if (before(other, count, ranking.ids[k - 1], ranking.counts[k - 1])) { // replaces the last one
+                at = k - 1;
+            } else {
+                return;
+            }
+            ranking.ids[at] = other;
+        }
+        ranking.counts[at] = count;
+        while (at > 0 && before(other, count, ranking.ids[at - 1], ranking.counts[at - 1])) { // move it up
+            ranking.swap(at, at - 1);
+            at--;
+        }
+    }
+
+    /**
+     * Fixes a ranking after the count of a vertex went down.
+     *
+     * @param id    the vertex whose ranking it is.
+     * @param other the candidate.
+     * @param count its new count.
+     */
+    private void lower(int id, int other, int count) {
+        Ranking ranking = rankings[id];
+        if (ranking.stale) {
+            return;
+        }
+        int at = ranking.indexOf(other);
+        if (at == -1) { // it was not good enough before either
+            return;
+        }
+        if (ranking.size == k) { // someone outside may beat it now
+            ranking.stale = true;
+            return;
+        }
+        // every candidate is kept, so only the order changes
+        ranking.counts[at] = count;
+        while (at + 1 < ranking.size && before(ranking.ids[at + 1], ranking.counts[at + 1], other, count)) {
+            ranking.swap(at, at + 1);
+            at++;
+        }
+        if (count == 0) { // it is last now
+            ranking.size--;
+        }
+    }
+
+    /**
+     * Takes a vertex out of a ranking. A full ranking has to be rebuilt because
+     * the next best vertex is not known.
+     *
+     * @param id    the vertex whose ranking it is.
+     * @param other the vertex to take out.
+     */
+    private void forget(int id, int other) {
+        Ranking ranking = rankings[id];
+        if (ranking.stale) {
+            return;
+        }
+        int at = ranking.indexOf(other);
+        if (at == -1) {
+            return;
+        }
+        if (ranking.size == k) {
+            ranking.stale = true;
+            return;
+        }
+        for (int i = at; i + 1 < ranking.size; i++) { // close the gap
+            ranking.swap(i, i + 1);
+        }
+        ranking.size--;
+    }
+
+    /**
+     * Builds the ranking of a vertex from its counts.
+     *
+     * @param id the vertex.
+     */
+    private void rebuild(int id) {
+        IntIntHashMap own = counts[id];
+        TopK best = new TopK(k);
+        for (int slot = 0; slot < own.slots(); slot++) {
+            int other = own.keyAt(slot);
+            if (other != -1 && graph.hasEdgeById(id, other) == false) {
+                best.offer(other, own.valueAt(slot));
+            }
+        }
+        Ranking ranking = rankings[id];
+        int[] bestIds = best.drainBestFirst();
+        ranking.size = 0;
+        ranking.ensureCapacity(bestIds.length);
+        for (int other : bestIds) {
+            ranking.ids[ranking.size] = other;
+            ranking.counts[ranking.size] = own.get(other);
+            ranking.size++;
+        }
+        ranking.stale = false;
+    }
+
+    /**
+     * Counts the mutual neighbors of a vertex with every other vertex from
+     * scratch.
+     *
+     * @param id the vertex.
+     * @return the counts.
+     */
+    private IntIntHashMap recount(int id) {
+        IntIntHashMap result = new IntIntHashMap();
+        Vertex<T> vertex = graph.vertexAt(id);
+        int[] neighborIds = vertex.neighborIds();
+        int degree = vertex.getNumberOfNeighbors();
+        for (int i = 0; i < degree; i++) {
+            Vertex<T> neighbor = graph.vertexAt(neighborIds[i]);
+            int[] secondIds = neighbor.neighborIds();
+            int secondDegree = neighbor.getNumberOfNeighbors();
+            for (int j = 0; j < secondDegree; j++) {
+                if (secondIds[j] != id) {
+                    result.addTo(secondIds[j], 1);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sees whether one candidate ranks before another.
+     *
+     * @param idA    the first id.
+     * @param countA its count.
+     * @param idB    the second id.
+     * @param countB its count.
+     * @return true if the first one ranks before.
+     */
+    private static boolean before(int idA, int countA, int idB, int countB) {
+        if (countA != countB) {
+            return countA > countB;
+        }
+        return idA < idB;
+    }
+
+    // INNER CLASS BELOW
+    // ___________________________________________________________________________________
+    /**
+     * The best suggestions of one vertex, the best first. While it is not stale
+     * it holds exactly the best min(k, candidates) of them. The arrays grow with
+     * the candidates, so a vertex with few of them does not cost k.
+     */
+    private static class Ranking {
+        /**
+         * The most suggestions kept.
+         */
+        private final int k;
+
+        /**
+         * The suggested ids.
+         */
+        private int[] ids;
+
+        /**
+         * The count of each suggested id.
+         */
+        private int[] counts;
+
+        /**
+         * How many are kept.
+         */
+        private int size;
+
+        /**
+         * True when the ranking has to be rebuilt before it is read.
+         */
+        private boolean stale;
+
+        /**
+         * Simple constructor.
+         *
+         * @param k how many to keep at most.
+         */
+        private Ranking(int k) {
+            this.k = k;
+            ids = new int[0];
+            counts = new int[0];
+            size = 0;
+            stale = false;
+        }
+
+        /**
+         * Makes room for a number of suggestions, at most k.
+         *
+         * @param capacity how many have to fit.
+         */
+        private void ensureCapacity(int capacity) {
+            if (capacity > ids.length) { // grow
+                int bigger = Math.min(Math.max(capacity, Math.max(ids.length * 2, 4)), k);
+                ids = Arrays.copyOf(ids, bigger);
+                counts = Arrays.copyOf(counts, bigger);
+            }
+        }
+
+        /**
+         * Finds a suggested id.
+         *
+         * @param id the id.
+         * @return its position, -1 if it is not kept.
+         */
+        private int indexOf(int id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Swaps two entries.
+         *
+         * @param a the first position.
+         * @param b the second position.
+         */
+        private void swap(int a, int b) {
+            int id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+            int count = counts[a];
+            counts[a] = counts[b];
+            counts[b] = count;
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+import java.util.Arrays;
+
+/**
+ * Keeps the k ids with the highest scores out of everything offered, using a
+ * min heap of size k so the weakest kept id can be replaced in O(log k).
+ * Ties are broken in favor of the smaller id. The heap grows as ids are
+ * offered, so a huge k costs no more than the number of candidates.
+ *
+ * @author Rahima Adnan
+ */
+class TopK {
+    /**
+     * How many ids to keep at most.
+     */
+    private final int k;
+
+    /**
+     * The ids in heap order, the weakest on top.
+     */
+    private int[] ids;
+
+    /**
+     * The score of each entry, parallel to ids.
+     */
+    private double[] scores;
+
+    /**
+     * How many entries are kept.
+     */
+    private int size;
+
+    /**
+     * Simple constructor.
+     *
+     * @param k how many ids to keep.
+     */
+    TopK(int k) {
+        this.k = Math.max(k, 0);
+        ids = new int[Math.min(this.k, 16)];
+        scores = new double[ids.length];
+        size = 0;
+    }
+
+    /**
+     * Offers an id. It is kept if it beats the weakest kept id or there is room.
+     *
+     * @param id    the id.
+     * @param score its score.
+     */
+    void offer(int id, double score) {
+        if (size < k) { // still room
+            if (size == ids.length) { // grow, but never past k
+                int bigger = (int) Math.min(k, ids.length * 2L);
+                ids = Arrays.copyOf(ids, bigger);
+                scores = Arrays.copyOf(scores, bigger);
+            }
+            ids[size] = id;
+            scores[size] = score;
+            size++;
+            siftUp(size - 1);
+        } else if (size > 0 && weaker(ids[0], scores[0], id, score)) { // replace the weakest
+            ids[0] = id;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Gets how many ids are kept.
+     *
+     * @return the number of ids.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets the kept ids, the best first. The heap is left empty.
+     *
+     * @return the ids.
+     */
+    int[] drainBestFirst() {
+        int[] result = new int[size];
+        for (int i = size - 1; i >= 0; i--) { // the weakest comes out first
+            result[i] = ids[0];
+            size--;
+            ids[0] = ids[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        return result;
+    }
+
+    /**
+     * Sees whether the first entry is worse than the second.
+     *
+     * @param idA    the first id.
+     * @param scoreA the first score.
+     * @param idB    the second id.
+     * @param scoreB the second score.
+     * @return true if A is worse.
+     */
+    private static boolean weaker(int idA, double scoreA, int idB, double scoreB) {
+        if (scoreA != scoreB) {
+            return scoreA < scoreB;
+        }
+        return idA > idB;
+    }
+
+    /**
+     * Moves an entry up while it is weaker than its parent.
+     *
+     * @param at the position of the entry.
+     */
+    private void siftUp(int at) {
+        while (at > 0) {
+            int parent = (at - 1) >>> 1;
+            if (weaker(ids[parent], scores[parent], ids[at], scores[at])) {
+                break;
+            }
+            swap(at, parent);
+            at = parent;
+        }
+    }
+
+    /**
+     * Moves an entry down while a child is weaker.
+     *
+     * @param at the position of the entry.
+     */
+    private void siftDown(int at) {
+        while (true) {
+            int child = 2 * at + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && weaker(ids[child + 1], scores[child + 1], ids[child], scores[child])) {
+                child++;
+            }
+            if (weaker(ids[at], scores[at], ids[child], scores[child])) {
+                break;
+            }
+            swap(at, child);
+            at = child;
+        }
+    }
+
+    /**
+     * Swaps two entries.
+     *
+     * @param a the first position.
+     * @param b the second position.
+     */
+    private void swap(int a, int b) {
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        double score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+
+}
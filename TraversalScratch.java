@@ -0,0 +1,121 @@
+import java.util.Arrays;
+
+/**
+ * Working memory for one traversal at a time, indexed by vertex id.
+ * A vertex is visited when its stamp equals the current epoch, so starting a new
+ * traversal is just moving to the next epoch instead of unvisiting every vertex.
+ * Each thread uses its own scratch, which is what lets traversals of the same
+ * graph run at the same time.
+ *
+ * @author Rahima Adnan
+ */
+class TraversalScratch {
+    /**
+     * The epoch in which each vertex was last visited.
+     */
+    private int[] stamps;
+
+    /**
+     * The epoch of the current traversal.
+     */
+    private int epoch;
+
+    /**
+     * A queue of vertex ids. Every vertex is queued at most once per traversal.
+     */
+    private int[] queue;
+
+    /**
+     * The vertex each vertex was reached from, only valid for visited vertices.
+     */
+    private int[] predecessors;
+
+    /**
+     * How many edges each vertex is from where the traversal started, only valid
+     * for visited vertices.
+     */
+    private int[] depths;
+
+    /**
+     * Simple constructor.
+     */
+    TraversalScratch() {
+        stamps = new int[0];
+        queue = new int[0];
+        predecessors = new int[0];
+        depths = new int[0];
+        epoch = 0;
+    }
+
+    /**
+     * Starts a new traversal, forgetting every visit of the previous one.
+     *
+     * @param capacity every vertex id is smaller than this.
+     */
+    void begin(int capacity) {
+        if (stamps.length < capacity) { // the graph grew
+            int size = Math.max(capacity, stamps.length * 2);
+            stamps = Arrays.copyOf(stamps, size);
+            queue = new int[size];
+            predecessors = new int[size];
+            depths = new int[size];
+        }
+        if (epoch == Integer.MAX_VALUE) { // ran out of epochs, start over
+            Arrays.fill(stamps, 0);
+            epoch = 0;
+        }
+        epoch++;
+    }
+
+    /**
+     * Marks a vertex as visited.
+     *
+     * @param id the id of the vertex.
+     * @return true if it was not visited yet, false otherwise.
+     */
+    boolean visit(int id) {
+        if (stamps[id] == epoch) {
+            return false;
+        }
+        stamps[id] = epoch;
+        return true;
+    }
+
+    /**
+     * Check if is visited in the current traversal.
+     *
+     * @param id the id of the vertex.
+     * @return true if the vertex is visited, false otherwise.
+     */
+    boolean isVisited(int id) {
+        return stamps[id] == epoch;
+    }
+
+    /**
+     * Gets the queue array.
+     *
+     * @return the queue, at least as long as the capacity.
+     */
+    int[] queue() {
+        return queue;
+    }
+
+    /**
+     * Gets the predecessor array.
+     *
+     * @return the predecessors, at least as long as the capacity.
+     */
+    int[] predecessors() {
+        return predecessors;
+    }
+
+    /**
+     * Gets the depth array.
+     *
+     * @return the depths, at least as long as the capacity.
+     */
+    int[] depths() {
+        return depths;
+    }
+
+}
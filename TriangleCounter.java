@@ -0,0 +1,516 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts triangles and clustering coefficients of a graph snapshot in parallel.
+ * Every edge is pointed from the end with the smaller degree to the one with
+ * the larger degree (ties by id), and each vertex keeps only its forward
+ * neighbors, sorted. A triangle is then found exactly once, at its lowest
+ * vertex, by intersecting the forward neighbors of the two ends of a forward
+ * edge, and no vertex has more than about sqrt(2m) forward neighbors even in a
+ * graph with very popular vertices. Building the forward arrays and counting
+ * are both split over vertex ranges in a ForkJoinPool. Parallel edges and
+ * weights are ignored. The work is done on the first query.
+ *
+ * @param <T> our generic.
+ * @author Rahima Adnan
+ */
+public class TriangleCounter<T> {
+    /**
+     * How many vertices a single task handles before it splits.
+     */
+    private static final int CHUNK = 1024;
+
+    /**
+     * The graph to count in.
+     */
+    private final GraphSnapshot<T> snapshot;
+
+    /**
+     * The pool the work runs in.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * The number of distinct neighbors of every vertex, by snapshot id.
+     */
+    private int[] degrees;
+
+    /**
+     * The number of triangles each vertex is in, by snapshot id. Null until the
+     * first query.
+     */
+    private long[] triangles;
+
+    /**
+     * The number of triangles in the graph.
+     */
+    private long total;
+
+    /**
+     * Constructor that uses the common pool.
+     *
+     * @param snapshot the graph to count in.
+     */
+    public TriangleCounter(GraphSnapshot<T> snapshot) {
+        this(snapshot, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Simple constructor.
+     *
+     * @param snapshot the graph to count in.
+     * @param pool     the pool to run in.
+     */
+    public TriangleCounter(GraphSnapshot<T> snapshot, ForkJoinPool pool) {
+        this.snapshot = snapshot;
+        this.pool = pool;
+    }
+
+    /**
+     * Gets the snapshot this counter works on.
+     *
+     * @return the snapshot.
+     */
+    public GraphSnapshot<T> getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Gets the number of triangles, sets of three vertices that are all
+     * neighbors of each other.
+     *
+     * @return the number of triangles.
+     */
+    public long triangleCount() {
+        count();
+        return total;
+    }
+
+    /**
+     * Gets how close the neighbors of a vertex are to all knowing each other:
+     * the number of edges between them over the number there could be.
+     *
+     * @param label the vertex.
+     * @return the local clustering coefficient between 0 and 1, 0 if the vertex
+     *         has fewer than two neighbors or does not exist.
+     */
+    public double localClustering(T label) {
+        int id = snapshot.idOf(label);
+        if (id == -1) {
+            return 0;
+        }
+        count();
+        return clusteringOf(id);
+    }
+
+    /**
+     * Gets the local clustering coefficient averaged over every vertex, vertices
+     * with fewer than two neighbors counting as 0.
+     *
+     * @return the average clustering coefficient, 0 for an empty graph.
+     */
+    public double averageClustering() {
+        count();
+        if (triangles.length == 0) {
+            return 0;
+        }
+        double sum = 0;
+        for (int id = 0; id < triangles.length; id++) {
+            sum += clusteringOf(id);
+        }
+        return sum / triangles.length;
+    }
+
+    /**
+     * Computes the local clustering coefficient of an id.
+     *
+     * @param id the snapshot id.
+     * @return the coefficient.
+     */
+    private double clusteringOf(int id) {
+        long d = degrees[id];
+        if (d < 2) {
+            return 0;
+        }
+        return 2.0 * triangles[id] / (d * (d - 1));
+    }
+
+    /**
+     * Does the counting the first time it is needed.
+     */
+    private synchronized void count() {
+        if (triangles != null) {
+            return;
+        }
+        int size = snapshot.getNumberOfVertices();
+        int[] offsets = snapshot.offsets();
+
+        // the rows sorted with duplicates removed, in place of a copy of the neighbors
+        int[] sorted = Arrays.copyOf(snapshot.neighbors(), offsets[size]);
+        int[] distinct = new int[size];
+        pool.invoke(new SortStep(0, size, offsets, sorted, distinct));
+
+        int[] forwardOffsets = new int[size + 1];
+        pool.invoke(new ForwardStep(0, size, offsets, sorted, distinct, forwardOffsets, null));
+        for (int id = 0; id < size; id++) { // counts to starting points
+            forwardOffsets[id + 1] += forwardOffsets[id];
+        }
+        int[] forward = new int[forwardOffsets[size]];
+        pool.invoke(new ForwardStep(0, size, offsets, sorted, distinct, forwardOffsets, forward));
+
+        AtomicLongArray perVertex = new AtomicLongArray(size);
+        total = pool.invoke(new CountStep(0, size, forwardOffsets, forward, perVertex));
+        long[] result = new long[size];
+        for (int id = 0; id < size; id++) {
+            result[id] = perVertex.get(id);
+        }
+        degrees = distinct;
+        triangles = result;
+    }
+
+    /**
+     * Sees whether the edge from u to v points forward.
+     *
+     * @param degrees the distinct degree of every vertex.
+     * @param u       one end.
+     * @param v       the other end.
+     * @return true if v comes after u in degree order.
+     */
+    private static boolean isForward(int[] degrees, int u, int v) {
+        return degrees[v] > degrees[u] || (degrees[v] == degrees[u] && v > u);
+    }
+
+    // INNER CLASSES BELOW
+    // ___________________________________________________________________________________
+    /**
+     * Sorts every row of a range of vertices and removes duplicate neighbors.
+     */
+    @SuppressWarnings("serial")
+    private static class SortStep extends RecursiveAction {
+        /**
+         * The first vertex.
+         */
+        private final int low;
+
+        /**
+         * One past the last vertex.
+         */
+        private final int high;
+
+        /**
+         * Where each row starts.
+         */
+        private final int[] offsets;
+
+        /**
+         * The rows, sorted in place. The distinct neighbors of a row end up at its
+         * start.
+         */
+        private final int[] sorted;
+
+        /**
+         * The number of distinct neighbors of each row, filled here.
+         */
+        private final int[] distinct;
+
+        /**
+         * Simple constructor.
+         *
+         * @param low      the first vertex.
+         * @param high     one past the last vertex.
+         * @param offsets  where each row starts.
+         * @param sorted   the rows.
+         * @param distinct the number of distinct neighbors of each row.
+         */
+        private SortStep(int low, int high, int[] offsets, int[] sorted, int[] distinct) {
+            this.low = low;
+            this.high = high;
+            this.offsets = offsets;
+            this.sorted = sorted;
+            this.distinct = distinct;
+        }
+
+        /**
+         * Splits in half until the range is small, then sorts.
+         */
+        protected void compute() {
+            if (high - low > CHUNK) {
+                int middle = (low + high) >>> 1;
+                invokeAll(new SortStep(low, middle, offsets, sorted, distinct),
+                        new SortStep(middle, high, offsets, sorted, distinct));
+                return;
+            }
+            for (int u = low; u < high; u++) {
+                int start = offsets[u];
+                int end = offsets[u + 1];
+                Arrays.sort(sorted, start, end);
+                int kept = 0;
+                for (int e = start; e < end; e++) {
+                    if (kept == 0 || sorted[e] != sorted[start + kept - 1]) { // skip parallel edges
+                        sorted[start + kept++] = sorted[e];
+                    }
+                }
+                distinct[u] = kept;
+            }
+        }
+    }
+
+    /**
+     * Counts or fills the forward neighbors of a range of vertices. With no
+     * forward array it only stores the counts, one slot later, so a running sum
+     * turns them into starting points.
+     */
+    @SuppressWarnings("serial")
+    private static class ForwardStep extends RecursiveAction {
+        /**
+         * The first vertex.
+         */
+        private final int low;
+
+        /**
+         * One past the last vertex.
+         */
+        private final int high;
+
+        /**
+         * Where each sorted row starts.
+         */
+        private final int[] offsets;
+
+        /**
+         * The sorted rows.
+         */
+        private final int[] sorted;
+
+        /**
+         * The number of distinct neighbors of each row.
+         */
+        private final int[] distinct;
+
+        /**
+         * Where each forward row starts, or the counts on the first pass.
+         */
+        private final int[] forwardOffsets;
+
+        /**
+         * The forward rows, or null on the first pass.
+         */
+        private final int[] forward;
+
+        /**
+         * Simple constructor.
+         *
+         * @param low            the first vertex.
+         * @param high           one past the last vertex.
+         * @param offsets        where each sorted row starts.
+         * @param sorted         the sorted rows.
+         * @param distinct       the number of distinct neighbors of each row.
+         * @param forwardOffsets where each forward row starts.
+         * @param forward        the forward rows, null to only count.
+         */
+        private ForwardStep(int low, int high, int[] offsets, int[] sorted, int[] distinct, int[] forwardOffsets,
+                int[] forward) {
+            this.low = low;
+            this.high = high;
+            this.offsets = offsets;
+            this.sorted = sorted;
+            this.distinct = distinct;
+            this.forwardOffsets = forwardOffsets;
+            this.forward = forward;
+        }
+
+        /**
+         * Splits in half until the range is small, then counts or fills.
+         */
+        protected void compute() {
+            if (high - low > CHUNK) {
+                int middle = (low + high) >>> 1;
+                invokeAll(new ForwardStep(low, middle, offsets, sorted, distinct, forwardOffsets, forward),
+                        new ForwardStep(middle, high, offsets, sorted, distinct, forwardOffsets, forward));
+                return;
+            }
+            for (int u = low; u < high; u++) {
+                int at = (forward == null) ? 0 : forwardOffsets[u];
+                for (int e = offsets[u]; e < offsets[u] + distinct[u]; e++) {
+                    int v = sorted[e];
+                    if (isForward(distinct, u, v)) {
+                        if (forward != null) {
+                            forward[at] = v; // stays sorted by id
+                        }
+                        at++;
+                    }
+                }
+                if (forward == null) {
+                    forwardOffsets[u + 1] = at;
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the triangles whose lowest vertex is in a range.
+     */
+    @SuppressWarnings("serial")
+    private static class CountStep extends RecursiveTask<Long> {
+        /**
+         * The first vertex.
+         */
+        private final int low;
+
+        /**
+         * One past the last vertex.
+         */
+        private final int high;
+
+        /**
+         * Where each forward row starts.
+         */
+        private final int[] forwardOffsets;
+
+        /**
+         * The forward rows.
+         */
+        private final int[] forward;
+
+        /**
+         * The number of triangles of each vertex, added to by every task.
+         */
+        private final AtomicLongArray perVertex;
+
+        /**
+         * Simple constructor.
+         *
+         * @param low            the first vertex.
+         * @param high           one past the last vertex.
+         * @param forwardOffsets where each forward row starts.
+         * @param forward        the forward rows.
+         * @param perVertex      the number of triangles of each vertex.
+         */
+        private CountStep(int low, int high, int[] forwardOffsets, int[] forward, AtomicLongArray perVertex) {
+            this.low = low;
+            this.high = high;
+            this.forwardOffsets = forwardOffsets;
+            this.forward = forward;
+            this.perVertex = perVertex;
+        }
+
+        /**
+         * Splits in half until the range is small, then counts.
+         *
+         * @return the number of triangles found.
+         */
+        protected Long compute() {
+            if (high - low > CHUNK) {
+                int middle = (low + high) >>> 1;
+                CountStep right = new CountStep(middle, high, forwardOffsets, forward, perVertex);
+                right.fork();
+                long left = new CountStep(low, middle, forwardOffsets, forward, perVertex).compute();
+                return left + right.join();
+            }
+            long found = 0;
+            IntIntHashMap others = new IntIntHashMap(); // triangles of the vertices past the range, added once at the end
+            for (int u = low; u < high; u++) {
+                long ofU = 0;
+                for (int e = forwardOffsets[u]; e < forwardOffsets[u + 1]; e++) {
+                    int v = forward[e];
+                    long ofV = 0;
+                    // merge the two forward rows, every shared w closes a triangle u v w
+                    int i = forwardOffsets[u];
+                    int j = forwardOffsets[v];
+                    while (i < forwardOffsets[u + 1] && j < forwardOffsets[v + 1]) {
+                        if (forward[i] < forward[j]) {
+                            i++;
+                        } else if (forward[i] > forward[j]) {
+                            j++;
+                        } else {
+                            others.addTo(forward[i], 1);
+                            ofV++;
+                            i++;
+                            j++;
+                        }
+                    }
+                    if (ofV > 0) {
+                        others.addTo(v, (int) ofV);
+                        ofU += ofV;
+                    }
+                }
+                if (ofU > 0) { // only this task counts for u
+                    perVertex.addAndGet(u, ofU);
+                    found += ofU;
+                }
+            }
+            for (int slot = 0; slot < others.slots(); slot++) {
+                if (others.keyAt(slot) != -1) {
+                    perVertex.addAndGet(others.keyAt(slot), others.valueAt(slot));
+                }
+            }
+            return found;
+        }
+    }
+
+    /**
+     * Scaling benchmark. Builds a random graph with a few very popular vertices,
+     * checks the count against a slow one on a small graph, and times the count
+     * with more and more threads.
+     *
+     * @param args optional number of vertices and number of edges.
+     */
+    public static void main(String[] args) {
+        Graph<Integer> small = new Graph<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 60; i++) {
+            small.addVertex(i);
+        }
+        for (int i = 0; i < 400; i++) {
+            small.addEdge(random.nextInt(60), random.nextInt(60));
+        }
+        long slow = 0;
+        for (int a = 0; a < 60; a++) {
+            for (int b = a + 1; b < 60; b++) {
+                for (int c = b + 1; c < 60; c++) {
+                    if (small.hasEdge(a, b) && small.hasEdge(b, c) && small.hasEdge(a, c)) {
+                        slow++;
+                    }
+                }
+            }
+        }
+        long fast = new TriangleCounter<>(small.snapshot()).triangleCount();
+        System.out.println("small graph: " + fast + " triangles, expected " + slow);
+
+        int vertices = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int edges = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+        Graph<Integer> graph = new Graph<>();
+        for (int i = 0; i < vertices; i++) {
+            graph.addVertex(i);
+        }
+        for (int i = 0; i < edges; i++) {
+            // squaring skews the ends towards small ids, so they become hubs
+            double skew = random.nextDouble();
+            int a = (int) (skew * skew * vertices);
+            int b = random.nextInt(vertices);
+            graph.addEdgeById(graph.idOf(a), graph.idOf(b));
+        }
+        GraphSnapshot<Integer> snapshot = graph.snapshot();
+        System.out.println("vertices " + snapshot.getNumberOfVertices() + ", edges " + graph.getNumberOfEdges() / 2);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            long best = Long.MAX_VALUE;
+            long count = 0;
+            for (int run = 0; run < 5; run++) {
+                long begin = System.nanoTime();
+                count = new TriangleCounter<>(snapshot, pool).triangleCount();
+                best = Math.min(best, System.nanoTime() - begin);
+            }
+            System.out.printf("%d threads: %.2f ms, %d triangles%n", threads, best / 1e6, count);
+            pool.shutdown();
+        }
+    }
+
+}
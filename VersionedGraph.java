@@ -0,0 +1,815 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * A graph that keeps versions instead of changing in place. Changes are
+ * collected in a Batch, and committing the batch makes a new GraphVersion with
+ * all of them at once. Readers pin the newest version without locking and see
+ * it unchanged for as long as they like, while writers keep committing. A commit
+ * copies only the chunks of rows it touches, see GraphVersion, so a version
+ * costs about as much as the changes in it. Old versions are let go as soon as
+ * a newer one is committed and their last pin is closed.
+ * <p>
+ * Edges work the same as in Graph: undirected, no edge from a vertex to itself,
+ * and two edges between the same vertices only if their weights differ. A
+ * removed vertex keeps its id while a version that has it can still be read,
+ * and gets it back if it is added again meanwhile. Once every such version was
+ * let go, the id is handed to the next new vertex, so the ids stay as many as
+ * the vertices.
+ *
+ * @param <T> our generic.
+ * @author Rahima Adnan
+ */
+public class VersionedGraph<T> {
+    /**
+     * The id of every label in a version that can still be read. An id is only
+     * handed out again once no such version has its old label, so a version can
+     * share this with every other version.
+     */
+    private final ConcurrentHashMap<T, Integer> ids = new ConcurrentHashMap<>();
+
+    /**
+     * The id the next new label gets when there are no free ids. Only changed
+     * while committing.
+     */
+    private int nextId;
+
+    /**
+     * Ids that no version uses anymore, handed out again. Only changed while
+     * committing.
+     */
+    private int[] freeIds = new int[16];
+
+    /**
+     * How many ids are in freeIds.
+     */
+    private int freeCount;
+
+    /**
+     * The ids of removed labels that older versions may still read, the oldest
+     * removal first. Only changed while committing.
+     */
+    private final LinkedHashMap<Integer, Removal> removals = new LinkedHashMap<>();
+
+    /**
+     * The numbers of the versions that were not let go yet.
+     */
+    private final ConcurrentSkipListSet<Long> liveNumbers = new ConcurrentSkipListSet<>();
+
+    /**
+     * The newest version.
+     */
+    private final AtomicReference<GraphVersion<T>> current;
+
+    /**
+     * How many versions were not let go yet.
+     */
+    private final AtomicInteger liveVersions = new AtomicInteger(1);
+
+    /**
+     * Simple constructor, version 0 is empty.
+     */
+    public VersionedGraph() {
+        liveNumbers.add(0L);
+        current = new AtomicReference<>(new GraphVersion<>(0, this, new int[0][][], new double[0][][],
+                new Object[0][], 0, 0, 0));
+    }
+
+    /**
+     * Constructor that starts from a copy of a snapshot, as version 0.
+     *
+     * @param start the snapshot to copy.
+     */
+    public VersionedGraph(GraphSnapshot<T> start) {
+        this();
+        int size = start.getNumberOfVertices();
+        Draft draft = new Draft(current.get());
+        if (size > 0) {
+            draft.reserve(size - 1);
+        }
+        int[] offsets = start.offsets();
+        int[] neighbors = start.neighbors();
+        double[] weights = start.weights();
+        for (int id = 0; id < size; id++) { // same ids as the snapshot
+            T label = start.labelOf(id);
+            ids.put(label, id);
+            draft.labelChunk(id >>> GraphVersion.CHUNK_BITS)[id & (GraphVersion.CHUNK - 1)] = label;
+            draft.setRow(id, Arrays.copyOfRange(neighbors, offsets[id], offsets[id + 1]),
+                    Arrays.copyOfRange(weights, offsets[id], offsets[id + 1]));
+        }
+        nextId = size;
+        draft.idBound = size;
+        draft.vertices = size;
+        draft.edges = start.getNumberOfEdges();
+        current.set(draft.finish(0));
+    }
+
+    /**
+     * Pins the newest version, without waiting for writers. The version must be
+     * closed when done, best with try-with-resources.
+     *
+     * @return the newest version.
+     */
+    public GraphVersion<T> pin() {
+        while (true) {
+            GraphVersion<T> newest = current.get();
+            if (newest.retain()) {
+                return newest;
+            }
+            // a commit replaced it and its last pin closed in between, take the new one
+        }
+    }
+
+    /**
+     * Gets the number of the newest version.
+     *
+     * @return the version number.
+     */
+    public long getVersion() {
+        return current.get().getVersion();
+    }
+
+    /**
+     * Gets how many versions are still kept, the newest one and every older one
+     * that is still pinned.
+     *
+     * @return the number of versions.
+     */
+    public int getLiveVersions() {
+        return liveVersions.get();
+    }
+
+    /**
+     * Starts collecting changes for one commit.
+     *
+     * @return an empty batch.
+     */
+    public Batch batch() {
+        return new Batch();
+    }
+
+    /**
+     * Adds a vertex in a commit of its own.
+     *
+     * @param vertexLabel the label of the vertex.
+     * @return true if it was added, false if it was already there or is null.
+     */
+    public boolean addVertex(T vertexLabel) {
+        return batch().addVertex(vertexLabel).commit() > 0;
+    }
+
+    /**
+     * Removes a vertex and its edges in a commit of its own.
+     *
+     * @param vertexLabel the label of the vertex.
+     * @return true if it was removed, false if it was not there.
+     */
+    public boolean removeVertex(T vertexLabel) {
+        return batch().removeVertex(vertexLabel).commit() > 0;
+    }
+
+    /**
+     * Adds an unweighted edge in a commit of its own.
+     *
+     * @param begin where to start.
+     * @param end   where to end.
+     * @return true if it was added, false otherwise.
+     */
+    public boolean addEdge(T begin, T end) {
+        return batch().addEdge(begin, end).commit() > 0;
+    }
+
+    /**
+     * Adds a weighted edge in a commit of its own.
+     *
+     * @param begin      where to start.
+     * @param end        where to end.
+     * @param edgeWeight weight of the edge.
+     * @return true if it was added, false otherwise.
+     */
+    public boolean addEdge(T begin, T end, double edgeWeight) {
+        return batch().addEdge(begin, end, edgeWeight).commit() > 0;
+    }
+
+    /**
+     * Removes an edge of any weight in a commit of its own.
+     *
+     * @param begin where to start.
+     * @param end   where to end.
+     * @return true if it was removed, false otherwise.
+     */
+    public boolean removeEdge(T begin, T end) {
+        return batch().removeEdge(begin, end).commit() > 0;
+    }
+
+    /**
+     * Gets the id of a label in every version.
+     *
+     * @param label the label.
+     * @return the id, -1 if it was never added.
+     */
+    int idOf(T label) {
+        if (label == null) {
+            return -1;
+        }
+        Integer id = ids.get(label);
+        return (id == null) ? -1 : id;
+    }
+
+    /**
+     * Called by a version when it is let go.
+     *
+     * @param number the number of the version.
+     */
+    void versionReclaimed(long number) {
+        liveVersions.decrementAndGet();
+        liveNumbers.remove(number);
+    }
+
+    /**
+     * Frees the ids of removed labels that no version can read anymore, the ones
+     * removed no later than the oldest version still kept.
+     */
+    private void reclaimIds() {
+        long oldest = liveNumbers.first(); // the newest version is always there
+        Iterator<Map.Entry<Integer, Removal>> pending = removals.entrySet().iterator();
+        while (pending.hasNext()) {
+            Map.Entry<Integer, Removal> entry = pending.next();
+            if (entry.getValue().version > oldest) { // still in a version someone may read
+                break;
+            }
+            ids.remove(entry.getValue().label, entry.getKey());
+            if (freeCount == freeIds.length) {
+                freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+            }
+            freeIds[freeCount++] = entry.getKey();
+            pending.remove();
+        }
+    }
+
+    /**
+     * Gets an id for a new label, a free one if there is one.
+     *
+     * @return the id.
+     */
+    private int newId() {
+        return (freeCount > 0) ? freeIds[--freeCount] : nextId++;
+    }
+
+    /**
+     * Applies changes on top of the newest version and makes the result the
+     * newest version. Commits run one at a time; readers are never blocked.
+     *
+     * @param changes the changes, in order.
+     * @return how many of the changes did something. No version is made if none.
+     */
+    private synchronized int commit(List<Predicate<Draft>> changes) {
+        GraphVersion<T> base = current.get();
+        reclaimIds();
+        Draft draft = new Draft(base);
+        int applied = 0;
+        for (Predicate<Draft> change : changes) {
+            if (change.test(draft)) {
+                applied++;
+            }
+        }
+        if (applied == 0) {
+            return 0;
+        }
+        liveVersions.incrementAndGet();
+        liveNumbers.add(draft.number);
+        current.set(draft.finish(draft.number));
+        base.close(); // it is not the newest anymore
+        return applied;
+    }
+
+    // INNER CLASSES BELOW
+    // ___________________________________________________________________________________
+    /**
+     * Changes collected for one commit. Nothing is seen by readers until commit
+     * is called. Each change is checked against the changes before it in the same
+     * batch, so adding a vertex and then its edges works.
+     */
+    public class Batch {
+        /**
+         * The changes, in order.
+         */
+        private final List<Predicate<Draft>> changes = new ArrayList<>();
+
+        /**
+         * Adds a vertex.
+         *
+         * @param vertexLabel the label of the vertex.
+         * @return this batch.
+         */
+        public Batch addVertex(T vertexLabel) {
+            changes.add(draft -> draft.addVertex(vertexLabel));
+            return this;
+        }
+
+        /**
+         * Removes a vertex and its edges.
+         *
+         * @param vertexLabel the label of the vertex.
+         * @return this batch.
+         */
+        public Batch removeVertex(T vertexLabel) {
+            changes.add(draft -> draft.removeVertex(vertexLabel));
+            return this;
+        }
+
+        /**
+         * Adds an unweighted edge, unless the vertices already have one.
+         *
+         * @param begin where to start.
+         * @param end   where to end.
+         * @return this batch.
+         */
+        public Batch addEdge(T begin, T end) {
+            changes.add(draft -> draft.addEdge(begin, end, 0, false));
+            return this;
+        }
+
+        /**
+         * Adds a weighted edge, unless the vertices already have one with the same
+         * weight.
+         *
+         * @param begin      where to start.
+         * @param end        where to end.
+         * @param edgeWeight weight of the edge.
+         * @return this batch.
+         */
+        public Batch addEdge(T begin, T end, double edgeWeight) {
+            changes.add(draft -> draft.addEdge(begin, end, edgeWeight, true));
+            return this;
+        }
+
+        /**
+         * Removes an edge of any weight.
+         *
+         * @param begin where to start.
+         * @param end   where to end.
+         * @return this batch.
+         */
+        public Batch removeEdge(T begin, T end) {
+            changes.add(draft -> draft.removeEdge(begin, end));
+            return this;
+        }
+
+        /**
+         * Makes a new version with every change of this batch.
+         *
+         * @return how many of the changes did something, changes that could not
+         *         be made (like an edge that is already there) are skipped.
+         */
+        public int commit() {
+            return VersionedGraph.this.commit(changes);
+        }
+    }
+
+    /**
+     * A label that was removed, and the version it was removed in.
+     */
+    private class Removal {
+        /**
+         * The label.
+         */
+        private final T label;
+
+        /**
+         * The number of the first version without it.
+         */
+        private final long version;
+
+        /**
+         * Simple constructor.
+         *
+         * @param label   the label.
+         * @param version the number of the first version without it.
+         */
+        private Removal(T label, long version) {
+            this.label = label;
+            this.version = version;
+        }
+    }
+
+    /**
+     * The next version while a commit builds it. Starts out sharing every chunk
+     * with the version it is based on and copies a chunk the first time it
+     * changes. Rows are never changed in place, a changed row is a new array.
+     */
+    private class Draft {
+        /**
+         * The number the version will get.
+         */
+        private final long number;
+
+        /**
+         * The neighbor ids by chunk.
+         */
+        private int[][][] neighborChunks;
+
+        /**
+         * The edge weights by chunk.
+         */
+        private double[][][] weightChunks;
+
+        /**
+         * The labels by chunk.
+         */
+        private Object[][] labelChunks;
+
+        /**
+         * Which row chunks were already copied by this draft.
+         */
+        private boolean[] ownRows;
+
+        /**
+         * Which label chunks were already copied by this draft.
+         */
+        private boolean[] ownLabels;
+
+        /**
+         * One more than the biggest id used.
+         */
+        private int idBound;
+
+        /**
+         * The number of vertices.
+         */
+        private int vertices;
+
+        /**
+         * The number of edges.
+         */
+        private int edges;
+
+        /**
+         * Simple constructor.
+         *
+         * @param base the version to start from.
+         */
+        private Draft(GraphVersion<T> base) {
+            number = base.getVersion() + 1;
+            neighborChunks = base.neighborChunks().clone();
+            weightChunks = base.weightChunks().clone();
+            labelChunks = base.labelChunks().clone();
+            ownRows = new boolean[neighborChunks.length];
+            ownLabels = new boolean[labelChunks.length];
+            idBound = base.idBound();
+            vertices = base.getNumberOfVertices();
+            edges = base.getNumberOfEdges();
+        }
+
+        /**
+         * Makes sure there is room for an id.
+         *
+         * @param id the id.
+         */
+        private void reserve(int id) {
+            int needed = (id >>> GraphVersion.CHUNK_BITS) + 1;
+            if (needed > neighborChunks.length) { // grow
+                int bigger = Math.max(needed, neighborChunks.length * 2);
+                neighborChunks = Arrays.copyOf(neighborChunks, bigger);
+                weightChunks = Arrays.copyOf(weightChunks, bigger);
+                labelChunks = Arrays.copyOf(labelChunks, bigger);
+                ownRows = Arrays.copyOf(ownRows, bigger);
+                ownLabels = Arrays.copyOf(ownLabels, bigger);
+            }
+        }
+
+        /**
+         * Gets a label chunk that this draft may change.
+         *
+         * @param chunk the chunk number.
+         * @return the chunk.
+         */
+        private Object[] labelChunk(int chunk) {
+            if (ownLabels[chunk] == false) { // copy on first write
+                Object[] shared = labelChunks[chunk];
+                labelChunks[chunk] = (shared == null) ? new Object[GraphVersion.CHUNK] : shared.clone();
+                ownLabels[chunk] = true;
+            }
+            return labelChunks[chunk];
+        }
+
+        /**
+         * Gets the label of an id.
+         *
+         * @param id the id.
+         * @return the label, null if the id is not in use.
+         */
+        private Object labelOf(int id) {
+            Object[] chunk = labelChunks[id >>> GraphVersion.CHUNK_BITS];
+            return (chunk == null) ? null : chunk[id & (GraphVersion.CHUNK - 1)];
+        }
+
+        /**
+         * Gets the id of a label in this draft.
+         *
+         * @param label the label.
+         * @return the id, -1 if the label is not in this draft.
+         */
+        private int idOf(T label) {
+            int id = VersionedGraph.this.idOf(label);
+            if (id == -1 || id >= idBound || labelOf(id) == null) {
+                return -1;
+            }
+            return id;
+        }
+
+        /**
+         * Gets the neighbor ids of an id.
+         *
+         * @param id the id.
+         * @return the neighbor ids, must not be changed.
+         */
+        private int[] row(int id) {
+            int[][] chunk = neighborChunks[id >>> GraphVersion.CHUNK_BITS];
+            int[] row = (chunk == null) ? null : chunk[id & (GraphVersion.CHUNK - 1)];
+            return (row == null) ? GraphVersion.NO_NEIGHBORS : row;
+        }
+
+        /**
+         * Gets the edge weights of an id.
+         *
+         * @param id the id.
+         * @return the weights, must not be changed.
+         */
+        private double[] weightRow(int id) {
+            double[][] chunk = weightChunks[id >>> GraphVersion.CHUNK_BITS];
+            double[] row = (chunk == null) ? null : chunk[id & (GraphVersion.CHUNK - 1)];
+            return (row == null) ? GraphVersion.NO_WEIGHTS : row;
+        }
+
+        /**
+         * Replaces the row of an id.
+         *
+         * @param id        the id.
+         * @param neighbors the new neighbor ids, null for none.
+         * @param weights   the new weights, null for none.
+         */
+        private void setRow(int id, int[] neighbors, double[] weights) {
+            int chunk = id >>> GraphVersion.CHUNK_BITS;
+            if (ownRows[chunk] == false) { // copy on first write
+                int[][] sharedNeighbors = neighborChunks[chunk];
+                double[][] sharedWeights = weightChunks[chunk];
+                neighborChunks[chunk] = (sharedNeighbors == null) ? new int[GraphVersion.CHUNK][]
+                        : sharedNeighbors.clone();
+                weightChunks[chunk] = (sharedWeights == null) ? new double[GraphVersion.CHUNK][]
+                        : sharedWeights.clone();
+                ownRows[chunk] = true;
+            }
+            neighborChunks[chunk][id & (GraphVersion.CHUNK - 1)] = neighbors;
+            weightChunks[chunk][id & (GraphVersion.CHUNK - 1)] = weights;
+        }
+
+        /**
+         * Adds an edge to the end of a row.
+         *
+         * @param id       the id.
+         * @param neighbor the other end.
+         * @param weight   the weight.
+         */
+        private void append(int id, int neighbor, double weight) {
+            int[] neighbors = row(id);
+            double[] weights = weightRow(id);
+            int[] longer = Arrays.copyOf(neighbors, neighbors.length + 1);
+            double[] longerWeights = Arrays.copyOf(weights, weights.length + 1);
+            longer[neighbors.length] = neighbor;
+            longerWeights[neighbors.length] = weight;
+            setRow(id, longer, longerWeights);
+        }
+
+        /**
+         * Takes an edge out of a row, keeping the others in order.
+         *
+         * @param id    the id.
+         * @param index where the edge is in the row.
+         */
+        private void removeAt(int id, int index) {
+            int[] neighbors = row(id);
+            double[] weights = weightRow(id);
+            int[] shorter = new int[neighbors.length - 1];
+            double[] shorterWeights = new double[shorter.length];
+            System.arraycopy(neighbors, 0, shorter, 0, index);
+            System.arraycopy(neighbors, index + 1, shorter, index, shorter.length - index);
+            System.arraycopy(weights, 0, shorterWeights, 0, index);
+            System.arraycopy(weights, index + 1, shorterWeights, index, shorter.length - index);
+            setRow(id, shorter, shorterWeights);
+        }
+
+        /**
+         * Finds an edge in a row.
+         *
+         * @param id       the id.
+         * @param neighbor the other end.
+         * @param weight   the weight.
+         * @param anyWeight whether the weight does not matter.
+         * @return where the first such edge is, -1 if there is none.
+         */
+        private int indexOf(int id, int neighbor, double weight, boolean anyWeight) {
+            int[] neighbors = row(id);
+            double[] weights = weightRow(id);
+            for (int i = 0; i < neighbors.length; i++) {
+                if (neighbors[i] == neighbor && (anyWeight || weights[i] == weight)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Adds a vertex.
+         *
+         * @param label the label.
+         * @return true if it was added.
+         */
+        private boolean addVertex(T label) {
+            if (label == null || idOf(label) != -1) {
+                return false;
+            }
+            int id = ids.computeIfAbsent(label, key -> newId()); // a removed label gets its old id back
+            removals.remove(id); // so it is not freed
+            reserve(id);
+            labelChunk(id >>> GraphVersion.CHUNK_BITS)[id & (GraphVersion.CHUNK - 1)] = label;
+            idBound = Math.max(idBound, id + 1);
+            vertices++;
+            return true;
+        }
+
+        /**
+         * Removes a vertex and every edge it has.
+         *
+         * @param label the label.
+         * @return true if it was removed.
+         */
+        private boolean removeVertex(T label) {
+            int id = idOf(label);
+            if (id == -1) {
+                return false;
+            }
+            for (int neighbor : row(id)) { // the neighbors should not keep an edge to a vertex that is gone
+                removeAt(neighbor, indexOf(neighbor, id, 0, true));
+                edges -= 2;
+            }
+            setRow(id, null, null);
+            labelChunk(id >>> GraphVersion.CHUNK_BITS)[id & (GraphVersion.CHUNK - 1)] = null;
+            vertices--;
+            removals.remove(id); // removed again, it goes to the end
+            removals.put(id, new Removal(label, number));
+            return true;
+        }
+
+        /**
+         * Adds an edge.
+         *
+         * @param begin    where to start.
+         * @param end      where to end.
+         * @param weight   the weight.
+         * @param weighted false if any edge between the two already counts.
+         * @return true if it was added.
+         */
+        private boolean addEdge(T begin, T end, double weight, boolean weighted) {
+            int b = idOf(begin);
+            int e = idOf(end);
+            if (b == -1 || e == -1 || b == e) { // a vertex cannot create an edge with itself
+                return false;
+            }
+            if (indexOf(b, e, weight, weighted == false) != -1) { // already there
+                return false;
+            }
+            append(b, e, weight); // it goes both ways
+            append(e, b, weight);
+            edges += 2;
+            return true;
+        }
+
+        /**
+         * Removes an edge of any weight.
+         *
+         * @param begin where to start.
+         * @param end   where to end.
+         * @return true if it was removed.
+         */
+        private boolean removeEdge(T begin, T end) {
+            int b = idOf(begin);
+            int e = idOf(end);
+            if (b == -1 || e == -1) {
+                return false;
+            }
+            int index = indexOf(b, e, 0, true);
+            if (index == -1) {
+                return false;
+            }
+            double weight = weightRow(b)[index];
+            removeAt(b, index); // the same edge on the other side too
+            removeAt(e, indexOf(e, b, weight, false));
+            edges -= 2;
+            return true;
+        }
+
+        /**
+         * Freezes the draft into a version. The draft must not be used after.
+         *
+         * @param number the number of the version.
+         * @return the version.
+         */
+        private GraphVersion<T> finish(long number) {
+            return new GraphVersion<>(number, VersionedGraph.this, neighborChunks, weightChunks, labelChunks,
+                    idBound, vertices, edges);
+        }
+    }
+
+    /**
+     * Just for checking. One thread commits batches of random edge changes while
+     * reader threads pin versions and check that each one stays the same and
+     * adds up, and times both.
+     *
+     * @param args optional number of vertices, readers and commits.
+     * @throws InterruptedException if interrupted while waiting for the readers.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int readers = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int commits = args.length > 2 ? Integer.parseInt(args[2]) : 2_000;
+
+        VersionedGraph<Integer> graph = new VersionedGraph<>();
+        VersionedGraph<Integer>.Batch load = graph.batch();
+        for (int i = 0; i < size; i++) {
+            load.addVertex(i);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < size * 5; i++) {
+            load.addEdge(random.nextInt(size), random.nextInt(size));
+        }
+        load.commit();
+        try (GraphVersion<Integer> version = graph.pin()) {
+            System.out.println("vertices " + size + ", edges " + version.getNumberOfEdges() / 2);
+        }
+
+        AtomicInteger failures = new AtomicInteger();
+        AtomicLong reads = new AtomicLong();
+        AtomicInteger done = new AtomicInteger();
+        Thread[] pool = new Thread[readers];
+        for (int r = 0; r < readers; r++) {
+            int reader = r;
+            pool[r] = new Thread(() -> {
+                Random mine = new Random(reader);
+                while (done.get() == 0) {
+                    try (GraphVersion<Integer> version = graph.pin()) {
+                        int origin = mine.nextInt(size);
+                        int first = version.getBreadthFirstTraversal(origin).size();
+                        int ends = 0;
+                        for (int v = 0; v < size; v++) {
+                            ends += version.getNumberOfNeighbors(v);
+                        }
+                        int second = version.getBreadthFirstTraversal(origin).size();
+                        if (ends != version.getNumberOfEdges() || first != second) {
+                            failures.incrementAndGet(); // it changed while pinned
+                        }
+                        reads.incrementAndGet();
+                    }
+                }
+            }, "reader-" + r);
+            pool[r].start();
+        }
+
+        long begin = System.nanoTime();
+        for (int c = 0; c < commits; c++) {
+            VersionedGraph<Integer>.Batch batch = graph.batch();
+            try (GraphVersion<Integer> version = graph.pin()) {
+                for (int i = 0; i < 50; i++) {
+                    int a = random.nextInt(size);
+                    List<Integer> friends = version.getNeighbors(a);
+                    if (random.nextBoolean() || friends.isEmpty()) {
+                        batch.addEdge(a, random.nextInt(size));
+                    } else {
+                        batch.removeEdge(a, friends.get(0));
+                    }
+                }
+            }
+            batch.commit();
+        }
+        double millis = (System.nanoTime() - begin) / 1e6;
+        done.set(1);
+        for (Thread thread : pool) {
+            thread.join();
+        }
+        System.out.printf("%d commits of 50 changes in %.1f ms (%.1f us each), %d versions read%n", commits,
+                millis, millis * 1000 / commits, reads.get());
+        System.out.println("live versions " + graph.getLiveVersions() + ", failed checks " + failures.get());
+    }
+
+}
@@ -6,6 +6,7 @@ import java.util.ArrayDeque;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Stack;
+import java.util.Arrays;
 
 import java.util.NoSuchElementException; // Professor said this was allowed 
 
@@ -37,71 +38,93 @@ public class Vertex<T> implements VertexInterface<T> {
      */
     private double cost;
     /**
-     * List of edges to neighbors. Note that there is an Edge class used.
+     * The id of this vertex. It is the index of this vertex in table.
      */
-    private List<Edge> edgeList;
+    private int id;
 
-    // INNER CLASS BELOW
-    // ___________________________________________________________________________________
     /**
-     * Private Inner Edge class.
+     * Turns a neighbor id back into its vertex. Every vertex of a graph shares
+     * the same table.
      */
-    private class Edge {
-        /**
-         * This is the weight of edge.
-         */
-        private double weightOfEdge;
+    private List<VertexInterface<T>> table;
 
-        /**
-         * Used to get the vertex.
-         */
-        private VertexInterface<T> vertex;
+    /**
+     * True if the table belongs to this vertex alone, false if it is the table of
+     * a graph.
+     */
+    private boolean ownTable;
 
-        /**
-         * This is a simple constructor. Just intializing.
-         * 
-         * @param weightOfEdge the weight.
-         * @param vertex       the end vertex.
-         */
-        private Edge(double weightOfEdge, VertexInterface<T> vertex) {
-            this.vertex = vertex;
-            this.weightOfEdge = weightOfEdge;
-        }
+    /**
+     * The ids of the neighbors. Only the first degree slots are used.
+     */
+    private int[] neighborIds;
 
-        /**
-         * Simple get method for the edges weight.
-         * 
-         * @return the weight.
-         */
-        private double getterEdgeWeight() {
-            return weightOfEdge;
-        }
+    /**
+     * The weight of the edge to each neighbor, parallel to neighborIds.
+     */
+    private double[] neighborWeights;
 
-        /**
-         * Simple get method for the end Vertex.
-         * 
-         * @return the end vertex.
-         */
-        private VertexInterface<T> getterEndVertex() {
-            return vertex;
-        }
+    /**
+     * How many edges begin at this vertex.
+     */
+    private int degree;
 
-    }
-    // ___________________________________________________________________________________
+    /**
+     * How many edge slots a new vertex starts with.
+     */
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * Above this many edges the vertex keeps a hash index of its neighbors, so a
+     * friend of a very popular user is found without scanning every edge.
+     */
+    static final int INDEX_THRESHOLD = 16;
+
+    /**
+     * Open-addressing index from neighbor id to edge position, or null while the
+     * vertex is small. Each slot holds the edge position plus one, 0 means empty.
+     * Edges to the same neighbor with different weights get one slot each.
+     */
+    private int[] neighborIndex;
+
+    /**
+     * The distinct neighbor ids in increasing order, or null when an edge was
+     * added or removed since it was last built.
+     */
+    private volatile int[] sortedNeighbors;
 
     /**
      * Simple constructor.
      * Initializes label to the given value, visited → false, cost → 0.0,
-     * previousVertex →null, and the edgeList to a default list.
+     * previousVertex →null, and no edges. The vertex is not part of a graph, so
+     * it gets a table of its own with itself as id 0.
      * 
      * @param vertexLabel what we are setting the label value to.
      */
     public Vertex(T vertexLabel) {
+        this(vertexLabel, 0, new ArrayList<>());
+        table.add(this);
+        ownTable = true;
+    }
+
+    /**
+     * Constructor used by a graph. The graph puts this vertex in the table at
+     * the given id.
+     * 
+     * @param vertexLabel what we are setting the label value to.
+     * @param id          the id the graph gave this vertex.
+     * @param table       the table of the graph.
+     */
+    Vertex(T vertexLabel, int id, List<VertexInterface<T>> table) {
         label = vertexLabel;
         visted = false;
         cost = 0.0;
         previousVertex = null;
-        edgeList = new LinkedList<Edge>();
+        this.id = id;
+        this.table = table;
+        neighborIds = new int[INITIAL_CAPACITY];
+        neighborWeights = new double[INITIAL_CAPACITY];
+        degree = 0;
     }
 
     /**
@@ -147,15 +170,15 @@ public class Vertex<T> implements VertexInterface<T> {
     private class NeightborIterator implements Iterator<VertexInterface<T>> {
 
         /**
-         * created to iterate over.
+         * The index of the next edge.
          */
-        private Iterator<Edge> goer; // created to iterate over
+        private int goer; // created to iterate over
 
         /**
          * Simple constructor.
          */
         private NeightborIterator() {
-            goer = edgeList.iterator();// intialize
+            goer = 0;// intialize
         }
 
         /**
@@ -164,7 +187,7 @@ public class Vertex<T> implements VertexInterface<T> {
          * @return a boolean true or false.
          */
         public boolean hasNext() {
-            return goer.hasNext(); // see java doc above
+            return goer < degree; // see java doc above
         }
 
         /**
@@ -174,15 +197,15 @@ public class Vertex<T> implements VertexInterface<T> {
          */
         public VertexInterface<T> next() {
             VertexInterface<T> nexty = null; // holds the next value
-            boolean caller = goer.hasNext(); // calling to check if there is next
+            boolean caller = hasNext(); // calling to check if there is next
 
             if (caller == false) { // nothing is next
                 throw new NoSuchElementException(); // end and throw an error
             }
 
             else { // this means there is a next value
-                Edge nextNeighEdge = goer.next(); // go to the next
-                nexty = nextNeighEdge.getterEndVertex(); // grab the value
+                nexty = table.get(neighborIds[goer]); // grab the value
+                goer++; // go to the next
             }
 
             return nexty;
@@ -202,44 +225,274 @@ public class Vertex<T> implements VertexInterface<T> {
 
     // ___________________________________________________________________________________________________________________
     /**
-     * Helper method to check if there is an edge between two unweigheted vertices.
-     * @param endVertex where to end. 
-     * @return true or false to see if it was sucessful.
+     * Finds the id of a vertex in the table of this vertex.
+     * A vertex from another table is added to this table if add is true, but only
+     * when this vertex is used without a graph. A vertex of a graph never takes
+     * vertices of another graph, as the graph would not know their ids.
      * 
+     * @param other the vertex.
+     * @param add   true to add the vertex if it is not in the table.
+     * @return the id, or -1 if it is not in the table and can not be added.
      */
-    private boolean unWeightedhelper(VertexInterface<T> endVertex) {
-        boolean result = false;
-        Iterator<VertexInterface<T>> newIterator = getNeighborIterator(); // get the iterator
-        while (newIterator.hasNext() && !result) { // keep going till the we reach the end
-            VertexInterface<T> nextDoor = newIterator.next(); // grab the vertex
-            if (endVertex.equals(nextDoor)) { // FOUND AN EXISTING EDGE
-                result = true; // result becomes true as a path already exists
-                break;
+    @SuppressWarnings("unchecked")
+    private int idFor(VertexInterface<T> other, boolean add) {
+        if (other instanceof Vertex && ((Vertex<T>) other).table == table) { // same graph, the usual case
+            return ((Vertex<T>) other).id;
+        }
+        if (ownTable == false) { // from another graph
+            return -1;
+        }
+        int found = table.indexOf(other);
+        if (found == -1 && add) {
+            table.add(other);
+            found = table.size() - 1;
+        }
+        return found;
+    }
+
+    /**
+     * Makes sure there is room for one more edge.
+     */
+    private void ensureCapacity() {
+        if (degree == neighborIds.length) { // full, so double it
+            int bigger = Math.max(INITIAL_CAPACITY, neighborIds.length * 2);
+            neighborIds = Arrays.copyOf(neighborIds, bigger);
+            neighborWeights = Arrays.copyOf(neighborWeights, bigger);
+        }
+    }
+
+    /**
+     * Gets the id of this vertex in its graph.
+     * 
+     * @return the id.
+     */
+    int getId() {
+        return id;
+    }
+
+    /**
+     * Gets the array of neighbor ids. Only the first getNumberOfNeighbors() slots
+     * are edges, and the array must not be changed.
+     * 
+     * @return the neighbor ids.
+     */
+    int[] neighborIds() {
+        return neighborIds;
+    }
+
+    /**
+     * Gets the array of edge weights, parallel to neighborIds(). Only the first
+     * getNumberOfNeighbors() slots are edges, and the array must not be changed.
+     * 
+     * @return the edge weights.
+     */
+    double[] neighborWeights() {
+        return neighborWeights;
+    }
+
+    /**
+     * Gets the distinct neighbor ids in increasing order. It is built when first
+     * needed after a change and kept until the next one, and must not be changed.
+     * 
+     * @return the sorted neighbor ids, exactly as long as the number of distinct
+     *         neighbors.
+     */
+    int[] sortedNeighborIds() {
+        int[] sorted = sortedNeighbors;
+        if (sorted == null) {
+            sorted = Arrays.copyOf(neighborIds, degree);
+            Arrays.sort(sorted);
+            int distinct = 0;
+            for (int i = 0; i < sorted.length; i++) { // parallel edges share a neighbor
+                if (distinct == 0 || sorted[i] != sorted[distinct - 1]) {
+                    sorted[distinct++] = sorted[i];
+                }
             }
+            sorted = (distinct == sorted.length) ? sorted : Arrays.copyOf(sorted, distinct);
+            sortedNeighbors = sorted;
         }
-        return result;
+        return sorted;
     }
+
     /**
-     * Helper method to check if there is an edge between two weigheted vertices.
-     * @param endVertex where to end.
-     * @param edgeWeight the weight. 
-     * @return true or false to see if it was sucessful.
+     * Finds an edge to a neighbor.
+     * 
+     * @param neighborId the id of the neighbor.
+     * @return the index of an edge to it, or -1 if there is none.
      */
-    private boolean weightedhelper(VertexInterface<T> endVertex, double edgeWeight) {
-        boolean result = false;
-        Iterator<VertexInterface<T>> newIterator = getNeighborIterator(); // get the iterator
-        Iterator<Double> weightIt = getWeightIterator(); // get the iterator
+    int indexOfNeighbor(int neighborId) {
+        if (neighborIndex != null) { // big vertex, use the index
+            int mask = neighborIndex.length - 1;
+            for (int slot = slotOf(neighborId, mask); neighborIndex[slot] != 0; slot = (slot + 1) & mask) {
+                int edge = neighborIndex[slot] - 1;
+                if (neighborIds[edge] == neighborId) {
+                    return edge;
+                }
+            }
+            return -1;
+        }
+        for (int i = 0; i < degree; i++) {
+            if (neighborIds[i] == neighborId) {
+                return i;
+            }
+        }
+        return -1;
+    }
 
-        while (newIterator.hasNext() && weightIt.hasNext() && !result) { // keep going till the we reach the end
-            VertexInterface<T> nextDoor = newIterator.next(); // grab the vertex
-            Double nextDoorweight = weightIt.next();
+    /**
+     * Finds an edge with the given weight to a neighbor.
+     * 
+     * @param neighborId the id of the neighbor.
+     * @param edgeWeight the weight of the edge.
+     * @return the index of the edge, or -1 if there is none.
+     */
+    int indexOfNeighbor(int neighborId, double edgeWeight) {
+        if (neighborIndex != null) { // big vertex, use the index
+            int mask = neighborIndex.length - 1;
+            for (int slot = slotOf(neighborId, mask); neighborIndex[slot] != 0; slot = (slot + 1) & mask) {
+                int edge = neighborIndex[slot] - 1;
+                if (neighborIds[edge] == neighborId && neighborWeights[edge] == edgeWeight) {
+                    return edge;
+                }
+            }
+            return -1;
+        }
+        for (int i = 0; i < degree; i++) {
+            if (neighborIds[i] == neighborId && neighborWeights[i] == edgeWeight) {
+                return i;
+            }
+        }
+        return -1;
+    }
 
-            if (endVertex.equals(nextDoor) && edgeWeight == nextDoorweight) { // FOUND AN EXISTING EDGE
-                result = true; // result becomes true as a path already exists
-                break;
+    /**
+     * Adds an edge to a neighbor without any checks.
+     * 
+     * @param neighborId the id of the neighbor.
+     * @param edgeWeight the weight of the edge.
+     */
+    void addNeighbor(int neighborId, double edgeWeight) {
+        ensureCapacity();
+        neighborIds[degree] = neighborId;
+        neighborWeights[degree] = edgeWeight;
+        degree++;
+        sortedNeighbors = null;
+
+        if (neighborIndex != null && degree * 2 > neighborIndex.length) { // keep the index at most half full
+            buildIndex();
+        } else if (neighborIndex != null) {
+            insertSlot(degree - 1);
+        } else if (degree > INDEX_THRESHOLD) { // just became big
+            buildIndex();
+        }
+    }
+
+    /**
+     * Removes the edge at the given index in constant time. The last edge is
+     * moved into its place, so the order of the edges can change.
+     * 
+     * @param index the index of the edge.
+     */
+    void removeNeighborAt(int index) {
+        int last = degree - 1;
+        if (neighborIndex != null) {
+            deleteSlot(findSlot(index));
+            if (index != last) { // the last edge is moving to index
+                neighborIndex[findSlot(last)] = index + 1;
             }
         }
-        return result;
+        neighborIds[index] = neighborIds[last];
+        neighborWeights[index] = neighborWeights[last];
+        degree--;
+        sortedNeighbors = null;
+
+        if (neighborIndex != null && degree <= INDEX_THRESHOLD / 2) { // small again, a scan is cheaper
+            neighborIndex = null;
+        }
+    }
+
+    /**
+     * Picks the first slot to look at for a neighbor id.
+     * 
+     * @param neighborId the id of the neighbor.
+     * @param mask       the length of the index minus one.
+     * @return the slot.
+     */
+    private static int slotOf(int neighborId, int mask) {
+        int h = neighborId * 0x9E3779B9; // spread consecutive ids apart
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Builds the neighbor index from scratch, sized for the current degree.
+     */
+    private void buildIndex() {
+        int size = Integer.highestOneBit(Math.max(degree, INDEX_THRESHOLD) * 4 - 1);
+        neighborIndex = new int[size];
+        for (int i = 0; i < degree; i++) {
+            insertSlot(i);
+        }
+    }
+
+    /**
+     * Puts an edge into the neighbor index.
+     * 
+     * @param edge the index of the edge.
+     */
+    private void insertSlot(int edge) {
+        int mask = neighborIndex.length - 1;
+        int slot = slotOf(neighborIds[edge], mask);
+        while (neighborIndex[slot] != 0) { // find an empty slot
+            slot = (slot + 1) & mask;
+        }
+        neighborIndex[slot] = edge + 1;
+    }
+
+    /**
+     * Finds the slot that holds an edge.
+     * 
+     * @param edge the index of the edge.
+     * @return the slot.
+     */
+    private int findSlot(int edge) {
+        int mask = neighborIndex.length - 1;
+        int slot = slotOf(neighborIds[edge], mask);
+        while (neighborIndex[slot] != edge + 1) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Empties a slot, shifting later slots of the same probe run back so that
+     * lookups never stop early. No tombstones are needed.
+     * 
+     * @param slot the slot to empty.
+     */
+    private void deleteSlot(int slot) {
+        int mask = neighborIndex.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (neighborIndex[next] != 0) {
+            int home = slotOf(neighborIds[neighborIndex[next] - 1], mask);
+            // move it back if its home is not between the hole and where it sits
+            boolean canMove = hole <= next ? (home <= hole || home > next) : (home <= hole && home > next);
+            if (canMove) {
+                neighborIndex[hole] = neighborIndex[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        neighborIndex[hole] = 0;
+    }
+
+    /**
+     * Removes every edge that begins at this vertex.
+     */
+    void removeAllNeighbors() {
+        degree = 0;
+        neighborIndex = null;
+        sortedNeighbors = null;
     }
 
     // ___________________________________________________________________________________________________________________
@@ -260,12 +513,12 @@ public class Vertex<T> implements VertexInterface<T> {
             return false;
         }
 
-        boolean ans = false;
-        boolean helps = weightedhelper(endVertex, edgeWeight); // check if the path exists
-        if (helps == false) { // the path doesnt exist
-            edgeList.add(new Edge(edgeWeight, endVertex)); // create a new edge and add!
+        int endId = idFor(endVertex, true);
+        if (endId == -1 || indexOfNeighbor(endId, edgeWeight) != -1) { // another graph, or the path already exists
+            return false;
         }
-        return ans;
+        addNeighbor(endId, edgeWeight); // create a new edge and add!
+        return true;
 
     }
 
@@ -282,12 +535,12 @@ public class Vertex<T> implements VertexInterface<T> {
             return false;
         }
 
-        boolean ans = false;
-        boolean helps = unWeightedhelper(endVertex); // check if the path exists
-        if (helps == false) { // the path doesnt exist
-            edgeList.add(new Edge(0, endVertex)); // create a new edge and add!
+        int endId = idFor(endVertex, true);
+        if (endId == -1 || indexOfNeighbor(endId) != -1) { // another graph, or the path already exists
+            return false;
         }
-        return ans;
+        addNeighbor(endId, 0); // create a new edge and add!
+        return true;
     }
 
     /**
@@ -296,7 +549,7 @@ public class Vertex<T> implements VertexInterface<T> {
      * @return true or false.
      */
     public boolean hasNeighbor() {
-        boolean ans = !edgeList.isEmpty(); // as long as the list isnt empty there must be a neighbor
+        boolean ans = degree > 0; // as long as there is an edge there must be a neighbor
         return ans;
     }
 
@@ -336,15 +589,15 @@ public class Vertex<T> implements VertexInterface<T> {
      */
     private class WeightIterator implements Iterator<Double> {
         /**
-         * Created to loop over the edgelist.
+         * The index of the next edge.
          */
-        private Iterator<Edge> goer; // created to iterate over
+        private int goer; // created to iterate over
 
         /**
          * Simple constructor.
          */
         private WeightIterator() {
-            goer = edgeList.iterator();// intialize
+            goer = 0;// intialize
         }
 
         /**
@@ -353,7 +606,7 @@ public class Vertex<T> implements VertexInterface<T> {
          * @return a boolean true or false
          */
         public boolean hasNext() {
-            return goer.hasNext(); // see java doc above
+            return goer < degree; // see java doc above
         }
 
         /**
@@ -363,15 +616,15 @@ public class Vertex<T> implements VertexInterface<T> {
          */
         public Double next() {
             Double nexty = 0.0; // holds the next value
-            boolean caller = goer.hasNext(); // calling to check if there is next
+            boolean caller = hasNext(); // calling to check if there is next
 
             if (caller == false) { // nothing is next
                 throw new NoSuchElementException(); // end and throw an error
             }
 
             else { // this means there is a next value
-                Edge nextNeighEdge = goer.next(); // go to the next
-                nexty = nextNeighEdge.getterEdgeWeight(); // grab the value
+                nexty = neighborWeights[goer]; // grab the value
+                goer++; // go to the next
             }
 
             return nexty;
@@ -446,16 +699,13 @@ public class Vertex<T> implements VertexInterface<T> {
         // return false;
         // }
 
-        for (int i = 0; i < edgeList.size(); i++) { // loop through the edgelist
-            Edge current = edgeList.get(i); // grab the speciifc node
-            if (current.getterEdgeWeight() == edgeWeight && current.getterEndVertex().equals(endVertex)) { // see if its in it and matches  etc.
-                                                                                                          
-                                                                                                           
-                edgeList.remove(i); // if so simply remove
-                return true; // remove was sucessful
-            }
+        int endId = idFor(endVertex, false);
+        int index = indexOfNeighbor(endId, edgeWeight); // see if its in it and matches etc.
+        if (endId == -1 || index == -1) {
+            return false;
         }
-        return false;
+        removeNeighborAt(index); // if so simply remove
+        return true; // remove was sucessful
     }
 
     /**
@@ -471,14 +721,13 @@ public class Vertex<T> implements VertexInterface<T> {
         // return false;
         // }
 
-        for (int i = 0; i < edgeList.size(); i++) { // loop through the edgelist
-            Edge current = edgeList.get(i); // grab the speciifc node
-            if (current.getterEndVertex().equals(endVertex)) { // see if its in it and matches etc.
-                edgeList.remove(i); // if so simply remove
-                return true; // remove was sucessful
-            }
+        int endId = idFor(endVertex, false);
+        int index = indexOfNeighbor(endId); // see if its in it and matches etc.
+        if (endId == -1 || index == -1) {
+            return false;
         }
-        return false;
+        removeNeighborAt(index); // if so simply remove
+        return true; // remove was sucessful
     }
 
     /**
@@ -487,7 +736,7 @@ public class Vertex<T> implements VertexInterface<T> {
      * @return the number of neighbors of this vertex.
      */
     public int getNumberOfNeighbors() {
-        return edgeList.size(); // just the sizwe
+        return degree; // just the sizwe
     }
 
     /**